@@ -0,0 +1,69 @@
+package sample;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pie chart aggregation of a single day with 10 to 1000 entries:
+ * mass-aware nutrient totals, converted into grams.
+ * */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AggregationBenchmark {
+    @Param({"10", "100", "1000"})
+    public int entriesPerDay;
+
+    private NutrientAggregator aggregator;
+    private List<RecordEntry>  day;
+
+    private final double[] grams = new double[SourceDB.NUTRIENT_AMOUNT];
+
+    @Setup
+    public void setUp() throws IOException {
+        SourceDB sourceDB = SourceDBSnapshot.load(
+            new File(System.getProperty("sourceDB", "SourceDB.csv"))
+        );
+
+        aggregator = new NutrientAggregator(sourceDB);
+        day        = new ArrayList<>(entriesPerDay);
+
+        Random random = new Random(1);
+
+        for (int i = 0; i < entriesPerDay; i++) {
+            day.add(new RecordEntry(
+                sourceDB.getId(SyntheticDiary.popularRow(random, sourceDB.size())),
+                10 + random.nextInt(491),
+                SyntheticDiary.FIRST_DAY,
+                i
+            ));
+        }
+    }
+
+    @Benchmark
+    public double[] aggregateDay() {
+        aggregator.reset();
+        aggregator.addAll(day);
+
+        return aggregator.toGrams(aggregator.getTotals(), grams);
+    }
+}
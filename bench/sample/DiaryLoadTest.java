@@ -0,0 +1,253 @@
+package sample;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * `DiaryLoadTest` class is a closed-loop load generator for
+ * `DiaryServer`. Every client thread sends requests back to back
+ * over a keep-alive connection for the given time, and the
+ * throughput and latency percentiles of all the requests are
+ * printed at the end.
+ *
+ * The request mix is 40% auto-complete suggestions, 20% typo
+ * tolerant searches, 20% rolled up totals and 20% minus the
+ * write share range statistics of the last recorded day; the
+ * write share logs one entry of a sampled food option per
+ * request. Food names and ids are sampled from the local
+ * Source DB.
+ *
+ * Usage: `java sample.DiaryLoadTest <base URL> [threads] [seconds]
+ * [write %]`, e.g. `java sample.DiaryLoadTest http://localhost:8080`.
+ * `-DsourceDB=<path>` selects another Source DB file.
+ * */
+public class DiaryLoadTest {
+    private static final int NAME_AMOUNT = 1024;
+
+    /**
+     * Share of the run, not measured, for JIT warm up
+     * */
+    private static final double WARMUP_SHARE = 0.2;
+
+    private final String   baseURL;
+    private final String[] prefixes;
+    private final String[] misspelledNames;
+    private final int[]    foodIds;
+    private final int      writePercent;
+
+    private final AtomicLong errors = new AtomicLong();
+
+    private DiaryLoadTest(String baseURL, SourceDB sourceDB, int writePercent) {
+        this.baseURL      = baseURL;
+        this.writePercent = writePercent;
+
+        String[] names = SyntheticDiary.sampleNames(sourceDB, NAME_AMOUNT, 0, 1);
+
+        prefixes        = new String[NAME_AMOUNT];
+        misspelledNames = SyntheticDiary.sampleNames(sourceDB, NAME_AMOUNT, 2, 1);
+        foodIds         = new int[NAME_AMOUNT];
+
+        Random random = new Random(SyntheticDiary.DEFAULT_SEED);
+
+        for (int i = 0; i < NAME_AMOUNT; i++) {
+            prefixes[i] = names[i].substring(0, Math.min(3, names[i].length()));
+            foodIds[i]  = sourceDB.getId(SyntheticDiary.popularRow(random, sourceDB.size()));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println(
+                "Usage: java sample.DiaryLoadTest <base URL> [threads] [seconds] [write %]"
+            );
+            System.exit(1);
+        }
+
+        int threads      = (args.length > 1) ? Integer.parseInt(args[1]) : 16;
+        int seconds      = (args.length > 2) ? Integer.parseInt(args[2]) : 30;
+        int writePercent = (args.length > 3) ? Integer.parseInt(args[3]) : 5;
+
+        SourceDB sourceDB = SourceDBSnapshot.load(
+            new File(System.getProperty("sourceDB", "SourceDB.csv"))
+        );
+
+        new DiaryLoadTest(args[0], sourceDB, writePercent).run(threads, seconds);
+    }
+
+    private void run(int threads, int seconds) throws InterruptedException {
+        long start        = System.nanoTime();
+        long measureStart = start + (long) (seconds * WARMUP_SHARE * 1e9);
+        long end          = start + seconds * 1_000_000_000L;
+
+        long[][]       latencies = new long[threads][];
+        CountDownLatch done      = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+
+            Thread thread = new Thread(() -> {
+                try {
+                    latencies[index] = runClient(index, measureStart, end);
+                } finally {
+                    done.countDown();
+                }
+            }, "load-test-" + t);
+
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        done.await();
+
+        // Merging latencies of all the clients
+        int requests = 0;
+
+        for (long[] clientLatencies : latencies)
+            requests += clientLatencies.length;
+
+        long[] all    = new long[requests];
+        int    offset = 0;
+
+        for (long[] clientLatencies : latencies) {
+            System.arraycopy(clientLatencies, 0, all, offset, clientLatencies.length);
+            offset += clientLatencies.length;
+        }
+
+        Arrays.sort(all);
+
+        double measuredSeconds = (end - measureStart) / 1e9;
+
+        System.out.printf("Threads:      %d%n", threads);
+        System.out.printf("Write share:  %d%%%n", writePercent);
+        System.out.printf("Requests:     %d in %.1f s%n", requests, measuredSeconds);
+        System.out.printf("Throughput:   %.0f req/s%n", requests / measuredSeconds);
+        System.out.printf("Errors:       %d%n", errors.get());
+
+        if (requests > 0) {
+            System.out.printf(
+                "Latency (ms): p50 %.2f, p90 %.2f, p99 %.2f, max %.2f%n",
+                percentile(all, 0.50),
+                percentile(all, 0.90),
+                percentile(all, 0.99),
+                all[all.length - 1] / 1e6
+            );
+        }
+    }
+
+    /**
+     * @return Latencies of the requests, sent after
+     *         `measureStart`, in nanoseconds.
+     */
+    private long[] runClient(int client, long measureStart, long end) {
+        Random random    = new Random(client);
+        long[] latencies = new long[1024];
+        int    amount    = 0;
+        long   now;
+
+        while ((now = System.nanoTime()) < end) {
+            int  i       = random.nextInt(NAME_AMOUNT);
+            int  percent = random.nextInt(100);
+            long before  = now;
+
+            try {
+                if (percent < 40) {
+                    get("/api/foods/suggest?q=" + encode(prefixes[i]));
+                } else if (percent < 60) {
+                    get("/api/foods/search?limit=5&q=" + encode(misspelledNames[i]));
+                } else if (percent < 80) {
+                    get("/api/totals");
+                } else if (percent < 100 - writePercent) {
+                    get("/api/statistics");
+                } else {
+                    post(
+                        "/api/entries",
+                        "{\"foodId\":" + foodIds[i] + ",\"mass\":" + (10 + random.nextInt(490)) + "}"
+                    );
+                }
+            } catch (IOException e) {
+                errors.incrementAndGet();
+                continue;
+            }
+
+            if (before >= measureStart) {
+                if (amount == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, amount * 2);
+                }
+
+                latencies[amount++] = System.nanoTime() - before;
+            }
+        }
+
+        return Arrays.copyOf(latencies, amount);
+    }
+
+    private void get(String path) throws IOException {
+        HttpURLConnection connection =
+            (HttpURLConnection) new URL(baseURL + path).openConnection();
+
+        complete(connection);
+    }
+
+    private void post(String path, String json) throws IOException {
+        HttpURLConnection connection =
+            (HttpURLConnection) new URL(baseURL + path).openConnection();
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(body.length);
+        connection.setRequestProperty("Content-Type", "application/json");
+
+        try (OutputStream output = connection.getOutputStream()) {
+            output.write(body);
+        }
+
+        complete(connection);
+    }
+
+    /**
+     * Reads the whole response, so the connection returns
+     * to the keep-alive pool.
+     */
+    private void complete(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+
+        InputStream input = (status < 400)
+            ? connection.getInputStream()
+            : connection.getErrorStream();
+
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        byte[]                buffer   = new byte[8192];
+        int                   read;
+
+        if (input != null) {
+            try (InputStream in = input) {
+                while ((read = in.read(buffer)) != -1)
+                    response.write(buffer, 0, read);
+            }
+        }
+
+        if (status >= 400) {
+            throw new IOException("HTTP " + status + ": " + response.toString("UTF-8"));
+        }
+    }
+
+    private static String encode(String value) throws IOException {
+        return URLEncoder.encode(value, "UTF-8");
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        return sorted[(int) Math.min(sorted.length - 1, (long) (sorted.length * fraction))] / 1e6;
+    }
+}
@@ -0,0 +1,168 @@
+package sample;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetching and querying of synthetic Record DB files with
+ * 10k to 10M entries, see `SyntheticDiary`.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class RecordDBBenchmark {
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int rows;
+
+    private SourceDB          sourceDB;
+    private File              recordDBFile;
+    private RecordDBDateIndex dateIndex;
+    private DailyRollups      rollups;
+    private List<RecordEntry> entries;
+
+    @Setup
+    public void setUp() throws IOException {
+        sourceDB     = SourceDBSnapshot.load(
+            new File(System.getProperty("sourceDB", "SourceDB.csv"))
+        );
+        recordDBFile = SyntheticDiary.cached(sourceDB, rows);
+
+        dateIndex = new RecordDBDateIndex(recordDBFile);
+        dateIndex.update();
+
+        rollups = new DailyRollups(recordDBFile, sourceDB);
+        rollups.update();
+
+        entries = RecordDB.read(recordDBFile);
+    }
+
+    /**
+     * Reads and parses the whole file into `RecordEntry`
+     * objects.
+     */
+    @Benchmark
+    public List<RecordEntry> readAll() throws IOException {
+        return RecordDB.read(recordDBFile);
+    }
+
+    /**
+     * Reads and parses the whole file into a `RecordStore`,
+     * as done by the first refresh of the "View records" tab.
+     */
+    @Benchmark
+    public RecordStore readAllIntoStore() throws IOException {
+        return new RecordDBReader(recordDBFile, sourceDB).refresh();
+    }
+
+    /**
+     * Reads one entry at a random index of the binary,
+     * memory-mapped copy of the file.
+     */
+    @Benchmark
+    public RecordEntry readRandomEntryMapped(MappedState state) {
+        return state.recordDB.getEntry(state.random.nextInt(state.recordDB.size()));
+    }
+
+    /**
+     * Refreshes an up to date reader, i.e. a refresh
+     * without new entries.
+     */
+    @Benchmark
+    public int refreshUnchanged(ReaderState state) throws IOException {
+        return state.reader.refresh().size();
+    }
+
+    /**
+     * Reads the entries of the last recorded day through
+     * the date index.
+     */
+    @Benchmark
+    public List<RecordEntry> readLastDay() throws IOException {
+        return dateIndex.read(dateIndex.getLastDay(), dateIndex.getLastDay());
+    }
+
+    /**
+     * Checks the rollups against the file and reads the
+     * last day totals, as done by the pie chart refresh.
+     */
+    @Benchmark
+    public DailyRollups.DayTotals lastDayTotals() throws IOException {
+        rollups.update();
+
+        return rollups.getRange(dateIndex.getLastDay(), dateIndex.getLastDay());
+    }
+
+    /**
+     * Computes statistics of all the in-memory entries.
+     */
+    @Benchmark
+    public RangeStatistics rangeStatistics() {
+        return RangeStatistics.compute(
+            sourceDB,
+            entries,
+            Integer.MIN_VALUE,
+            Integer.MAX_VALUE
+        );
+    }
+
+    /**
+     * Reader, that already read the whole file
+     * */
+    @State(Scope.Benchmark)
+    public static class ReaderState {
+        private RecordDBReader reader;
+
+        @Setup
+        public void setUp(RecordDBBenchmark benchmark) throws IOException {
+            reader = new RecordDBReader(benchmark.recordDBFile, benchmark.sourceDB);
+            reader.refresh();
+        }
+    }
+
+    /**
+     * Binary copy of the file, see `MappedRecordDB`
+     * */
+    @State(Scope.Benchmark)
+    public static class MappedState {
+        private MappedRecordDB recordDB;
+        private Random         random;
+
+        @Setup
+        public void setUp(RecordDBBenchmark benchmark) throws IOException {
+            File binaryFile = new File(
+                benchmark.recordDBFile.getPath().replaceFirst("\\.csv$", "") + MappedRecordDB.EXTENSION
+            );
+
+            if (!binaryFile.exists()) {
+                MappedRecordDB.importCsv(benchmark.recordDBFile, binaryFile);
+            }
+
+            recordDB = MappedRecordDB.open(binaryFile);
+            random   = new Random(SyntheticDiary.DEFAULT_SEED);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            recordDB.close();
+        }
+    }
+}
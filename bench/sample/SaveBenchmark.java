@@ -0,0 +1,123 @@
+package sample;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving of selected food options into a Record DB file with
+ * 100k entries: the bare append, the append followed by the
+ * date index and rollup updates, and the durable append through
+ * the group committing `RecordDBWriter` with one producer, as
+ * done by the "Save selected" button. The file is restored
+ * before every iteration.
+ * */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SaveBenchmark {
+    private static final int BASE_ROWS = 100_000;
+
+    @Param({"1", "10"})
+    public int batchSize;
+
+    private SourceDB          sourceDB;
+    private File              baseFile;
+    private File              recordDBFile;
+    private RecordDBDateIndex dateIndex;
+    private DailyRollups      rollups;
+    private RecordDBWriter    writer;
+
+    private final List<RecordEntry> batch = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws IOException {
+        sourceDB = SourceDBSnapshot.load(
+            new File(System.getProperty("sourceDB", "SourceDB.csv"))
+        );
+        baseFile = SyntheticDiary.cached(sourceDB, BASE_ROWS);
+
+        recordDBFile = File.createTempFile("RecordDB", ".csv");
+
+        for (int i = 0; i < batchSize; i++)
+            batch.add(new RecordEntry(sourceDB.getId(i), 100, 20000, i));
+    }
+
+    @Setup(Level.Iteration)
+    public void restoreFile() throws IOException {
+        Files.copy(
+            baseFile.toPath(),
+            recordDBFile.toPath(),
+            StandardCopyOption.REPLACE_EXISTING
+        );
+
+        deleteDerivedFiles();
+
+        dateIndex = new RecordDBDateIndex(recordDBFile);
+        dateIndex.update();
+
+        rollups = new DailyRollups(recordDBFile, sourceDB);
+        rollups.update();
+
+        writer = new RecordDBWriter(recordDBFile, RecordDBWriter.FsyncPolicy.everyBatch());
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeWriter() {
+        writer.close();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        deleteDerivedFiles();
+        Files.deleteIfExists(recordDBFile.toPath());
+    }
+
+    @Benchmark
+    public void append() throws IOException {
+        RecordDB.append(recordDBFile, batch);
+    }
+
+    @Benchmark
+    public void appendAndIndex() throws IOException {
+        RecordDB.append(recordDBFile, batch);
+
+        dateIndex.update();
+        rollups.update();
+    }
+
+    @Benchmark
+    public void writerAppend() {
+        writer.append(batch).join();
+    }
+
+    private void deleteDerivedFiles() throws IOException {
+        Files.deleteIfExists(
+            new File(recordDBFile.getPath() + RecordDBDateIndex.EXTENSION).toPath()
+        );
+        Files.deleteIfExists(
+            new File(recordDBFile.getPath() + DailyRollups.EXTENSION).toPath()
+        );
+    }
+}
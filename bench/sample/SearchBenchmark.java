@@ -0,0 +1,85 @@
+package sample;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Food option lookups: exact name lookup, as done when a food
+ * option is selected, auto-complete suggestions and typo
+ * correction. Every invocation uses the next one of 1024
+ * sampled names.
+ * */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+    private static final int NAME_AMOUNT = 1024;
+
+    private FoodNameIndex    nameIndex;
+    private FoodPrefixIndex  prefixIndex;
+    private FoodSearchEngine searchEngine;
+
+    private String[] names;
+    private String[] prefixes;
+    private String[] misspelledNames;
+
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        SourceDB sourceDB = SourceDBSnapshot.load(
+            new File(System.getProperty("sourceDB", "SourceDB.csv"))
+        );
+
+        nameIndex    = new FoodNameIndex(sourceDB, true);
+        prefixIndex  = new FoodPrefixIndex(sourceDB);
+        searchEngine = new FoodSearchEngine(sourceDB);
+
+        names           = SyntheticDiary.sampleNames(sourceDB, NAME_AMOUNT, 0, 1);
+        misspelledNames = SyntheticDiary.sampleNames(sourceDB, NAME_AMOUNT, 2, 1);
+        prefixes        = new String[NAME_AMOUNT];
+
+        for (int i = 0; i < NAME_AMOUNT; i++)
+            prefixes[i] = names[i].substring(0, Math.min(3, names[i].length()));
+    }
+
+    /**
+     * Exact, case insensitive name lookup.
+     */
+    @Benchmark
+    public int findExact() {
+        return nameIndex.find(names[next++ & (NAME_AMOUNT - 1)]);
+    }
+
+    /**
+     * Auto-complete suggestions for a 3 character prefix.
+     */
+    @Benchmark
+    public List<String> suggest() {
+        return prefixIndex.suggest(prefixes[next++ & (NAME_AMOUNT - 1)], 15);
+    }
+
+    /**
+     * Correction of a name with 2 typos.
+     */
+    @Benchmark
+    public int findClosest() {
+        return searchEngine.findClosest(misspelledNames[next++ & (NAME_AMOUNT - 1)], 2);
+    }
+}
@@ -0,0 +1,65 @@
+package sample;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetching of the real `SourceDB.csv` file, as done on start up.
+ *
+ * The file is taken from the `sourceDB` system property, or from
+ * the working directory.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SourceDBBenchmark {
+    private File     sourceDBFile;
+    private SourceDB sourceDB;
+
+    @Setup
+    public void setUp() throws IOException {
+        sourceDBFile = new File(System.getProperty("sourceDB", "SourceDB.csv"));
+
+        // Writing the snapshot, if there is none yet
+        sourceDB = SourceDBSnapshot.load(sourceDBFile);
+    }
+
+    /**
+     * Parses the `.csv` file into the column store.
+     */
+    @Benchmark
+    public SourceDB parseCsv() throws IOException {
+        return SourceDB.load(sourceDBFile);
+    }
+
+    /**
+     * Reads the binary snapshot, the normal start up path.
+     */
+    @Benchmark
+    public SourceDB loadSnapshot() throws IOException {
+        return SourceDBSnapshot.load(sourceDBFile);
+    }
+
+    /**
+     * Builds the auto-complete prefix index.
+     */
+    @Benchmark
+    public FoodPrefixIndex buildPrefixIndex() {
+        return new FoodPrefixIndex(sourceDB);
+    }
+}
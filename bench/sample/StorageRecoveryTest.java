@@ -0,0 +1,549 @@
+package sample;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * `StorageRecoveryTest` class checks, that the incremental readers
+ * of the Record DB, i.e. `RecordDBReader`, `RecordDBDateIndex` and
+ * `DailyRollups`, stay consistent with the file through appends,
+ * in-place edits, truncations, torn batches, interrupted updates,
+ * interrupted `RecordDBArchive` seals and old format migrations.
+ *
+ * Every scenario runs in a fresh temporary directory, and after
+ * every step the entry amounts and day totals of all the readers
+ * are compared with the entries, the step is expected to leave.
+ * A mismatch fails the run with an `AssertionError`.
+ *
+ * Usage: `java sample.StorageRecoveryTest`. `-DsourceDB=<path>`
+ * selects another Source DB file.
+ * */
+public class StorageRecoveryTest {
+    private static final int FIRST_DAY = 16437;
+
+    private final SourceDB sourceDB;
+
+    /**
+     * Food ids of the first Source DB rows
+     * */
+    private final int[] foodIds = new int[8];
+
+    // -- Scenario state section --
+    private File recordDBFile;
+
+    /**
+     * Entries, the Record DB is expected to hold, in file order,
+     * including the archived ones
+     * */
+    private List<RecordEntry> expected;
+
+    /**
+     * Amount of the first `expected` entries, that are sealed
+     * into the archive, and thus not in the `.csv` file
+     * */
+    private int archivedAmount;
+
+    private RecordDBReader    reader;
+    private RecordDBDateIndex dateIndex;
+    private DailyRollups      rollups;
+
+    private StorageRecoveryTest(SourceDB sourceDB) {
+        this.sourceDB = sourceDB;
+
+        for (int i = 0; i < foodIds.length; i++)
+            foodIds[i] = sourceDB.getId(i);
+    }
+
+    public static void main(String[] args) throws Exception {
+        SourceDB sourceDB = SourceDBSnapshot.load(
+            new File(System.getProperty("sourceDB", "SourceDB.csv"))
+        );
+
+        StorageRecoveryTest test = new StorageRecoveryTest(sourceDB);
+
+        test.run("append then refresh", test::appendThenRefresh);
+        test.run("in-place edit",       test::inPlaceEdit);
+        test.run("truncation",          test::truncation);
+        test.run("torn batch",          test::tornBatch);
+        test.run("interrupted update",  test::interruptedUpdate);
+        test.run("interrupted seal",    test::interruptedSeal);
+        test.run("legacy migration",    test::legacyMigration);
+
+        System.out.println("All scenarios passed");
+    }
+
+    private interface Scenario {
+        void run() throws Exception;
+    }
+
+    private void run(String name, Scenario scenario) throws Exception {
+        File directory = Files.createTempDirectory("food-diary-test").toFile();
+
+        recordDBFile   = new File(directory, "RecordDB.csv");
+        expected       = new ArrayList<>();
+        archivedAmount = 0;
+        openReaders();
+
+        try {
+            scenario.run();
+        } finally {
+            delete(directory);
+        }
+
+        System.out.println("Passed: " + name);
+    }
+
+    // -- Scenarios section --
+    private void appendThenRefresh() throws IOException {
+        append(entries(0, 30));
+        check("initial load");
+
+        append(entries(30, 5));
+        check("first append");
+
+        // Appends of a writer sharing the file state of the readers
+        RecordDBPrefix.FileState fileState = new RecordDBPrefix.FileState(recordDBFile);
+
+        reader    = new RecordDBReader(recordDBFile, sourceDB, false, fileState);
+        dateIndex = new RecordDBDateIndex(recordDBFile, fileState);
+        rollups   = new DailyRollups(recordDBFile, sourceDB, false, fileState);
+        check("shared file state");
+
+        try (
+            RecordDBWriter writer = new RecordDBWriter(
+                recordDBFile,
+                RecordDBWriter.FsyncPolicy.everyBatch(),
+                fileState
+            )
+        ) {
+            List<RecordEntry> batch = entries(35, 5);
+
+            writer.append(batch).join();
+            expected.addAll(batch);
+        }
+
+        check("writer append");
+    }
+
+    private void inPlaceEdit() throws IOException {
+        append(entries(0, 30));
+        check("initial load");
+
+        // Same length, so only the checksum tells the files apart
+        RecordEntry edited = expected.get(10);
+        RecordEntry twin   = new RecordEntry(
+            edited.getFoodId(),
+            edited.getMass() + ((edited.getMass() % 10 == 9) ? -1 : 1),
+            edited.getEpochDay(),
+            edited.getSecondOfDay()
+        );
+
+        replaceLine(edited, twin);
+        expected.set(10, twin);
+        check("edited mass");
+    }
+
+    private void truncation() throws IOException {
+        append(entries(0, 30));
+        check("initial load");
+
+        rewrite(expected.subList(0, 20));
+        expected = new ArrayList<>(expected.subList(0, 20));
+        check("dropped rows");
+
+        append(entries(20, 3));
+        check("append after truncation");
+    }
+
+    private void tornBatch() throws IOException {
+        append(entries(0, 30));
+        check("initial load");
+
+        // Partial line of a batch, that is still being written
+        List<RecordEntry> batch = entries(30, 1);
+        String            line  = batch.get(0) + "\r\n";
+        int               split = line.length() / 2;
+
+        appendBytes(line.substring(0, split));
+        check("torn line");
+
+        appendBytes(line.substring(split));
+        expected.addAll(batch);
+        check("completed line");
+
+        // Torn last batch of the rollup log
+        append(entries(31, 5));
+        check("second batch");
+
+        File rollupFile = new File(recordDBFile.getPath() + DailyRollups.EXTENSION);
+
+        try (FileChannel channel = FileChannel.open(rollupFile.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - DailyRollups.DELTA_SIZE / 2);
+        }
+
+        openReaders();
+        check("torn rollup batch");
+    }
+
+    private void interruptedUpdate() throws IOException {
+        append(entries(0, 30));
+        check("initial load");
+
+        /*
+         * Damaged archive, that fails the first refresh of a new
+         * reader after its prefix was advanced, and a rollup log,
+         * that can not be appended to, so both fail half way
+         * */
+        File archiveFile = RecordDBArchive.getArchiveFile(recordDBFile);
+        File rollupFile  = new File(recordDBFile.getPath() + DailyRollups.EXTENSION);
+
+        append(entries(30, 5));
+        Files.write(archiveFile.toPath(), new byte[4]);
+        delete(rollupFile);
+
+        if (!rollupFile.mkdir()) {
+            throw new IOException("Can not create " + rollupFile);
+        }
+
+        reader = new RecordDBReader(recordDBFile, sourceDB, false);
+        expectFailure("refresh", reader::refresh);
+        expectFailure("rollup update", rollups::update);
+
+        delete(archiveFile);
+        delete(rollupFile);
+
+        // Interrupted scan of the date index
+        Thread.currentThread().interrupt();
+
+        try {
+            expectFailure("date index update", dateIndex::update);
+        } finally {
+            Thread.interrupted();
+        }
+
+        check("after failed updates");
+
+        // Index and rollup files, written after the failures
+        openReaders();
+        check("reloaded");
+    }
+
+    private void interruptedSeal() throws IOException {
+        append(entries(0, 60));
+        check("initial load");
+
+        int cutOff       = FIRST_DAY + 10;
+        int sealedAmount = RecordDBArchive.seal(recordDBFile, cutOff, 4);
+        sealExpected(cutOff, sealedAmount);
+        check("sealed");
+
+        // Seal interrupted after the archive was replaced
+        append(entries(60, 5));
+        byte[] beforeSeal = Files.readAllBytes(recordDBFile.toPath());
+
+        int cutOffAgain = FIRST_DAY + 15;
+        int sealedAgain = RecordDBArchive.seal(recordDBFile, cutOffAgain, 4);
+
+        Files.write(recordDBFile.toPath(), beforeSeal);
+        markSealUnfinished(beforeSeal.length);
+
+        openReaders();
+        sealExpected(cutOffAgain, sealedAgain);
+        check("finished seal");
+
+        if (recordDBFile.length() >= beforeSeal.length) {
+            throw new AssertionError("Sealed entries were not dropped from the .csv file");
+        }
+
+        append(entries(65, 3));
+        check("append after seal");
+    }
+
+    private void legacyMigration() throws IOException {
+        List<RecordEntry> entries = entries(0, 20);
+
+        StringBuilder legacy = new StringBuilder("Database Number,Food Group");
+
+        for (int column = 2; column < SourceDB.COLUMN_AMOUNT; column++)
+            legacy.append(",Column ").append(column);
+
+        legacy.append(",Mass (g),Date\r\n");
+
+        for (RecordEntry entry : entries) {
+            legacy.append(entry.getFoodId());
+
+            for (int column = 1; column < SourceDB.COLUMN_AMOUNT; column++)
+                legacy.append(",0");
+
+            legacy
+                .append(',').append(entry.getMass())
+                .append(',').append(LocalDate.ofEpochDay(entry.getEpochDay()))
+                .append("\r\n");
+        }
+
+        Files.write(recordDBFile.toPath(), legacy.toString().getBytes(StandardCharsets.UTF_8));
+
+        // The old format has no entry times
+        for (RecordEntry entry : entries) {
+            expected.add(new RecordEntry(
+                entry.getFoodId(),
+                entry.getMass(),
+                entry.getEpochDay(),
+                RecordEntry.NO_TIME
+            ));
+        }
+
+        check("migrated");
+
+        if (!new File(recordDBFile.getPath() + RecordDB.LEGACY_EXTENSION).exists()) {
+            throw new AssertionError("The old format file was not kept");
+        }
+
+        append(entries(20, 3));
+        check("append after migration");
+    }
+
+    // -- Record DB section --
+    /**
+     * @return `amount` entries starting at the `from`-th one,
+     *         about 3 per day.
+     */
+    private List<RecordEntry> entries(int from, int amount) {
+        List<RecordEntry> entries = new ArrayList<>();
+
+        for (int i = from; i < from + amount; i++) {
+            entries.add(new RecordEntry(
+                foodIds[i % foodIds.length],
+                10 + (i * 37) % 490,
+                FIRST_DAY + i / 3,
+                (i % 3) * 3600 * 6
+            ));
+        }
+
+        return entries;
+    }
+
+    private void append(List<RecordEntry> entries) throws IOException {
+        RecordDB.append(recordDBFile, entries);
+        expected.addAll(entries);
+    }
+
+    private void appendBytes(String text) throws IOException {
+        Files.write(
+            recordDBFile.toPath(),
+            text.getBytes(StandardCharsets.US_ASCII),
+            StandardOpenOption.APPEND
+        );
+    }
+
+    private void rewrite(List<RecordEntry> entries) throws IOException {
+        List<RecordEntry> copy = new ArrayList<>(entries);
+
+        delete(recordDBFile);
+        RecordDB.append(recordDBFile, copy);
+    }
+
+    /**
+     * Overwrites the line of `entry` with the line of `twin`, of
+     * the same length, so the file length does not change.
+     */
+    private void replaceLine(RecordEntry entry, RecordEntry twin) throws IOException {
+        String content = new String(Files.readAllBytes(recordDBFile.toPath()), StandardCharsets.US_ASCII);
+        String line    = "\n" + entry + "\r\n";
+        int    offset  = content.indexOf(line);
+
+        if (offset < 0 || twin.toString().length() != entry.toString().length()) {
+            throw new AssertionError("Can not edit " + entry + " in place");
+        }
+
+        long lastModified = recordDBFile.lastModified();
+
+        try (RandomAccessFile file = new RandomAccessFile(recordDBFile, "rw")) {
+            file.seek(offset + 1);
+            file.write(twin.toString().getBytes(StandardCharsets.US_ASCII));
+        }
+
+        /*
+         * Later modification time, even with a coarse file system
+         * clock; edits keeping the length and the modification
+         * time are not detected, see `RecordDBPrefix`
+         * */
+        if (!recordDBFile.setLastModified(lastModified + 2000)) {
+            throw new IOException("Can not set the modification time");
+        }
+    }
+
+    /**
+     * Moves the expected entries before `cutOff` into the archive,
+     * in the order `seal()` stores them, `sealedAmount` of them
+     * by the last seal.
+     */
+    private void sealExpected(int cutOff, int sealedAmount) {
+        List<RecordEntry> sealed = new ArrayList<>();
+        List<RecordEntry> tail   = new ArrayList<>();
+
+        for (RecordEntry entry : expected)
+            (entry.getEpochDay() < cutOff ? sealed : tail).add(entry);
+
+        if (sealed.size() - archivedAmount != sealedAmount) {
+            throw new AssertionError(
+                "Sealed " + sealedAmount + " entries, expected " + (sealed.size() - archivedAmount)
+            );
+        }
+
+        sealed.sort(Comparator.comparingInt(RecordEntry::getEpochDay));
+
+        archivedAmount = sealed.size();
+
+        expected = sealed;
+        expected.addAll(tail);
+    }
+
+    /**
+     * Sets the seal marker of the archive back, as if the seal
+     * was interrupted before the `.csv` file was replaced.
+     */
+    private void markSealUnfinished(long sourceLength) throws IOException {
+        File archiveFile = RecordDBArchive.getArchiveFile(recordDBFile);
+
+        try (FileChannel channel = FileChannel.open(archiveFile.toPath(), StandardOpenOption.WRITE)) {
+            ByteBuffer marker = ByteBuffer.allocate(Long.BYTES);
+            marker.putLong(0, sourceLength);
+
+            channel.write(
+                marker,
+                channel.size() - RecordDBArchive.FOOTER_SIZE + RecordDBArchive.SOURCE_LENGTH_FIELD
+            );
+        }
+    }
+
+    // -- Checks section --
+    private interface Update {
+        Object run() throws IOException;
+    }
+
+    private void openReaders() {
+        reader    = new RecordDBReader(recordDBFile, sourceDB, false);
+        dateIndex = new RecordDBDateIndex(recordDBFile);
+        rollups   = new DailyRollups(recordDBFile, sourceDB, false);
+    }
+
+    private static void expectFailure(String step, Update update) {
+        try {
+            update.run();
+        } catch (IOException e) {
+            return;
+        }
+
+        throw new AssertionError(step + " did not fail");
+    }
+
+    /**
+     * Brings all the readers up to date, and compares their entry
+     * amounts and day totals with the expected entries.
+     */
+    private void check(String step) throws IOException {
+        Map<Integer, long[]> days    = dayTotals(expected);
+        Map<Integer, long[]> csvDays = dayTotals(expected.subList(archivedAmount, expected.size()));
+
+        // Reader, all the entries in file order
+        RecordStore store = reader.refresh();
+
+        assertEquals(step, "reader entries", expected.size(), store.size());
+
+        for (int i = 0; i < store.size(); i++)
+            assertEquals(step, "reader entry " + i, expected.get(i).toString(), store.getEntry(i).toString());
+
+        // Date index, the entries of the `.csv` file only
+        assertEquals(step, "date index update", true, dateIndex.update());
+        assertEquals(step, "date index rows", expected.size() - archivedAmount, dateIndex.getRowAmount());
+
+        for (Map.Entry<Integer, long[]> day : csvDays.entrySet()) {
+            long[] totals = new long[2];
+
+            for (RecordEntry entry : dateIndex.read(day.getKey(), day.getKey())) {
+                if (entry.getEpochDay() == day.getKey()) {
+                    totals[0]++;
+                    totals[1] += entry.getMass();
+                }
+            }
+
+            assertEquals(step, "date index day " + day.getKey(), Arrays.toString(day.getValue()), Arrays.toString(totals));
+        }
+
+        // Rollups, all the entries
+        assertEquals(step, "rollup update", true, rollups.update());
+        assertEquals(step, "rollup days", days.size(), rollups.getDayAmount());
+
+        for (Map.Entry<Integer, long[]> day : days.entrySet()) {
+            DailyRollups.DayTotals totals = rollups.getDay(day.getKey());
+
+            if (totals == null) {
+                throw new AssertionError(step + ": no rollup of day " + day.getKey());
+            }
+
+            assertEquals(step, "rollup entries of day " + day.getKey(), day.getValue()[0], totals.getEntryAmount());
+            assertEquals(step, "rollup mass of day " + day.getKey(), (double) day.getValue()[1], totals.getMass());
+        }
+    }
+
+    /**
+     * @return Entry amount and total mass by epoch day.
+     */
+    private static Map<Integer, long[]> dayTotals(List<RecordEntry> entries) {
+        Map<Integer, long[]> days = new TreeMap<>();
+
+        for (RecordEntry entry : entries) {
+            long[] totals = days.computeIfAbsent(entry.getEpochDay(), day -> new long[2]);
+
+            totals[0]++;
+            totals[1] += entry.getMass();
+        }
+
+        return days;
+    }
+
+    private static void assertEquals(String step, String what, Object expected, Object actual) {
+        if (!expected.equals(actual)) {
+            throw new AssertionError(step + ": " + what + " is " + actual + ", expected " + expected);
+        }
+    }
+
+    private static void assertEquals(String step, String what, long expected, long actual) {
+        assertEquals(step, what, (Object) expected, (Object) actual);
+    }
+
+    private static void assertEquals(String step, String what, double expected, double actual) {
+        if (Math.abs(expected - actual) > 1e-6) {
+            throw new AssertionError(step + ": " + what + " is " + actual + ", expected " + expected);
+        }
+    }
+
+    private void delete(File file) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+
+            if (children != null) {
+                for (File child : children)
+                    delete(child);
+            }
+        }
+
+        if (file.exists() && !file.delete()) {
+            throw new AssertionError("Can not delete " + file);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package sample;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * `SyntheticDiary` class generates Record DB files with a realistic
+ * shape for benchmarks: 3 to 12 entries per day on consecutive days,
+ * popular food options chosen much more often than the rest, masses
+ * between 10 and 500 grams and entry times spread over the day.
+ *
+ * Generated files are cached in `java.io.tmpdir`, so every fork of
+ * a benchmark reuses the same file for the same parameters.
+ *
+ * Usage: `java sample.SyntheticDiary <SourceDB.csv> <rows> <output>`
+ * */
+public class SyntheticDiary {
+    /**
+     * First recorded day, 2015-01-01
+     * */
+    static final int FIRST_DAY = 16436;
+
+    static final long DEFAULT_SEED = 42;
+
+    private static final int BATCH_SIZE = 100_000;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println(
+                "Usage: java sample.SyntheticDiary <SourceDB.csv> <rows> <output>"
+            );
+            System.exit(1);
+        }
+
+        SourceDB sourceDB = SourceDB.load(new File(args[0]));
+
+        generate(sourceDB, new File(args[2]), Integer.parseInt(args[1]), DEFAULT_SEED);
+    }
+
+    /**
+     * @param sourceDB Source DB to take food options from.
+     * @param rows     Amount of entries.
+     * @return         Cached synthetic Record DB file with
+     *                 `rows` entries.
+     * @throws IOException In case of writing errors.
+     */
+    public static File cached(SourceDB sourceDB, int rows) throws IOException {
+        File directory = new File(System.getProperty("java.io.tmpdir"), "food-diary-bench");
+        File file      = new File(directory, "RecordDB-" + rows + ".csv");
+
+        if (!file.exists()) {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Can not create " + directory);
+            }
+
+            File temporaryFile = new File(directory, file.getName() + ".tmp");
+
+            if (temporaryFile.exists() && !temporaryFile.delete()) {
+                throw new IOException("Can not delete " + temporaryFile);
+            }
+
+            generate(sourceDB, temporaryFile, rows, DEFAULT_SEED);
+
+            if (!temporaryFile.renameTo(file)) {
+                throw new IOException("Can not create " + file);
+            }
+        }
+
+        return file;
+    }
+
+    /**
+     * Appends `rows` synthetic entries to `file`.
+     *
+     * @param sourceDB Source DB to take food options from.
+     * @param file     Record DB file to write.
+     * @param rows     Amount of entries.
+     * @param seed     Random seed, equal seeds give equal files.
+     * @throws IOException In case of writing errors.
+     */
+    public static void generate(
+        SourceDB sourceDB,
+        File     file,
+        int      rows,
+        long     seed
+    ) throws IOException {
+        Random            random = new Random(seed);
+        List<RecordEntry> batch  = new ArrayList<>(BATCH_SIZE);
+
+        int day              = FIRST_DAY;
+        int entriesLeftToday = 0;
+
+        for (int i = 0; i < rows; i++) {
+            if (entriesLeftToday == 0) {
+                day++;
+                entriesLeftToday = 3 + random.nextInt(10);
+            }
+
+            entriesLeftToday--;
+
+            batch.add(new RecordEntry(
+                sourceDB.getId(popularRow(random, sourceDB.size())),
+                10 + random.nextInt(491),
+                day,
+                random.nextInt(24 * 60 * 60)
+            ));
+
+            if (batch.size() == BATCH_SIZE) {
+                RecordDB.append(file, batch);
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty() || !file.exists()) {
+            RecordDB.append(file, batch);
+        }
+    }
+
+    /**
+     * @return Food option row, the first rows being
+     *         chosen much more often than the last.
+     */
+    static int popularRow(Random random, int size) {
+        double uniform = random.nextDouble();
+
+        return (int) (uniform * uniform * uniform * size);
+    }
+
+    /**
+     * @return `amount` food option names with `typos`
+     *         characters replaced in every name.
+     */
+    static String[] sampleNames(SourceDB sourceDB, int amount, int typos, long seed) {
+        Random   random = new Random(seed);
+        String[] names  = new String[amount];
+
+        for (int i = 0; i < amount; i++) {
+            char[] name = sourceDB.getName(random.nextInt(sourceDB.size())).toCharArray();
+
+            for (int t = 0; t < typos && name.length > 0; t++)
+                name[random.nextInt(name.length)] = (char) ('a' + random.nextInt(26));
+
+            names[i] = new String(name);
+        }
+
+        return names;
+    }
+}
@@ -1,14 +1,20 @@
 package sample;
 
 import javafx.application.Platform;
-import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.concurrent.Task;
+import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.Initializable;
 import javafx.scene.chart.PieChart;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
+import javafx.scene.control.DatePicker;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.control.Tab;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TextField;
@@ -17,19 +23,24 @@ import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseEvent;
 import org.controlsfx.control.textfield.TextFields;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.net.URL;
 import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 /**
  * `Controller` class is responsible for managing all the data
@@ -46,91 +57,113 @@ public class Controller implements Initializable {
     public Button                        saveSelectedItemsButton;
     public Button                        clearSelectedFoodOptionsButton;
 
+    public ProgressIndicator             newRecordProgressIndicator;
+
     // "View records" Tab
+    public Tab                           viewRecordsTab;
     public TableView<RecordDBFoodOption> recordTableView;
     public Button                        refreshRecordTableViewButton;
+    public ProgressIndicator             recordTableViewProgressIndicator;
 
     // "Statistics" Tab
-    public Label    pieChartLabel;
-    public PieChart lastRecordedDayNutritionProportionPieChart;
-    public Button   refreshPieChartButton;
+    public Tab               statisticsTab;
+    public Label             pieChartLabel;
+    public PieChart          lastRecordedDayNutritionProportionPieChart;
+    public Button            refreshPieChartButton;
+    public DatePicker        rangeStartDatePicker;
+    public DatePicker        rangeEndDatePicker;
+    public Button            showRangeStatisticsButton;
+    public ProgressIndicator pieChartProgressIndicator;
 
     // -- Cached data section --
     /**
-     * Memory efficient cache of food options, that user selects
-     * in the running session.
+     * Food options, that user selects in the running session.
      *
-     * Format:
-     *  `LinkedList<String>`s contain food option data rows in
-     *  Record DB data format without any headers.
+     * Entries reference the shared `FoodOption` flyweights of
+     * `sourceDB`, so selecting a food option copies no row data.
+     * */
+    private List<FoodEntry> selectedFoodOptions = new ArrayList<>();
+
+    /**
+     * UI free core of the diary, owning the Source DB, its
+     * indexes and all the Record DB state
      * */
-    private LinkedList<LinkedList<String>> selectedFoodOptions
-        = new LinkedList<>();
+    private DiaryEngine diaryEngine;
 
     /**
-     * Memory efficient cache of food options, that are fetched
-     * from the `SourceDB.csv` file.
+     * Column oriented cache of food options, that are fetched
+     * from the `SourceDB.csv` file by `diaryEngine`.
      *
      * Represents all possible food options, user can choose from.
-     *
-     * Format:
-     *  First `LinkedList<String>` contains header columns
-     *  in Source DB data format.
-     *
-     *  Second and other `LinkedList<String>`s contain food option
-     *  data rows in Source DB data format.
      * */
-    private LinkedList<LinkedList<String>> sourceDBFetchedData
-        = new LinkedList<>();
+    private SourceDB sourceDB;
 
+    // -- DB files section --
     /**
-     * Memory efficient cache of food option names, that
-     * are extracted from `sourceDBFetchedData`.
-     *
-     * Represents all possible food option names, for auto-complete
-     * TextField `foodOptionSelectTextField`.
-     *
-     * Format:
-     *  `LinkedList<String>` that contains food option names
-     *  from `sourceDBFetchedData`, with corresponding indexes
-     *  decremented by 1, because it excludes
-     *  `sourceDBFetchedData` header column "Food name".
+     * Represents a `File` object of a DB containing all possible
+     * food options
      * */
-    private LinkedList<String> sourceDBFetchedFoodNames
-        = new LinkedList<>();
+    private File sourceDBFile = new File("SourceDB.csv");
 
     /**
-     * Memory efficient cache of food options, that are fetched
-     * from the `RecordDB.csv` file.
-     *
-     * Represents all food options saved previously by user.
+     * Represents a `File` object of a DB containing ids of all
+     * food options with additional values of mass, date and time,
+     * saved by user
+     * */
+    private File recordDBFile = new File("RecordDB.csv");
+
+    /**
+     * Reused buffer of the pie chart values in grams
+     * */
+    private final double[] pieChartGrams = new double[SourceDB.NUTRIENT_AMOUNT];
+
+    // -- Background tasks section --
+    /**
+     * Executor of all DB file operations.
      *
-     * Format:
-     *  First `LinkedList<String>` contains header columns
-     *  in Record DB data format.
+     * A single worker thread runs the tasks one by one in
+     * submission order, so a refresh always sees the preceding
+     * saves. The worker is not a daemon and stops when idle,
+     * so a save in progress completes on exit.
+     * */
+    private final ExecutorService dbExecutor = new ThreadPoolExecutor(
+        0,
+        1,
+        1,
+        TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>()
+    );
+
+    /**
+     * Last `recordTableView` refresh task, cancelled
+     * when superseded.
      *
-     *  Second and other `LinkedList<String>`s contain food option
-     *  data rows in Record DB data format.
+     * Tasks are cancelled with `cancel(false)` and check
+     * `isCancelled()` between engine calls: interrupting the
+     * worker inside of the engine would break off its file
+     * I/O halfway through an update of the records, the date
+     * index or the rollups.
      * */
-    private LinkedList<LinkedList<String>> recordDBFetchedData
-        = new LinkedList<>();
+    private Task<ObservableList<RecordDBFoodOption>> recordTableViewTask;
 
-    // -- DB files section --
     /**
-     * Represents a `File` object of a DB containing all possible
-     * food options
+     * Last `lastRecordedDayNutritionProportionPieChart`
+     * refresh task, cancelled when superseded
      * */
-    private File sourceDBFile = new File("SourceDB.csv");
+    private Task<?> pieChartTask;
 
+    // -- Auto-complete section --
     /**
-     * Represents a `File` object of a DB containing all food
-     * options with additional values of mass and date, saved by user
+     * Maximal amount of suggestions shown under
+     * `foodOptionSelectTextField`
      * */
-    private File recordDBFile = new File("RecordDB.csv");
+    private final int SUGGESTION_LIMIT = 15;
 
-    // -- DB column amounts section --
-    private final int COLUMN_AMOUNT_IN_SOURCE_DB = 56;
-    private final int COLUMN_AMOUNT_IN_RECORD_DB = 58;
+    /**
+     * Maximal amount of typos in a food option name, that
+     * are still corrected automatically
+     * */
+    private final int MAX_TYPO_EDIT_DISTANCE = 2;
 
     // -- Record DB headers section --
     /**
@@ -154,481 +187,620 @@ public class Controller implements Initializable {
     private Alert alert;
 
     /**
-     * Intermediary representation of food data (Record DB format)
-     * in an `ObservableList<LinkedList<SimpleStringProperty>>`
-     * for `TableView` internals
+     * Row of food data (Record DB format) for `TableView`
+     * internals. Cell values are produced on demand by the
+     * cell value factories, so rows off the screen hold no
+     * per-cell objects.
      * */
-    class RecordDBFoodOption {
-        private LinkedList<SimpleStringProperty> foodOption;
-
-        private RecordDBFoodOption(LinkedList<String> foodOption) {
-            this.foodOption = new LinkedList<>();
+    interface RecordDBFoodOption {
+        /**
+         * @param column Record DB data column index.
+         * @return       Cell value as `String`.
+         */
+        String getCell(int column);
+    }
 
-            /*
-            * Basic conversion from LinkedList<String> to
-            * LinkedList<SimpleStringProperty>
-            * */
-            for (String fo : foodOption)
-                this.foodOption.add(new SimpleStringProperty(fo));
-        }
+    /**
+     * Rolled up totals of the last day, when food data
+     * was saved by the user
+     * */
+    private static class LastRecordedDay {
+        private final int                    epochDay;
+        private final DailyRollups.DayTotals totals;
 
-        LinkedList<SimpleStringProperty> getFoodOption() {
-            return foodOption;
+        private LastRecordedDay(int epochDay, DailyRollups.DayTotals totals) {
+            this.epochDay = epochDay;
+            this.totals   = totals;
         }
     }
 
     /**
      * Main internal JavaFX GUI initialization method.
      *
+     * Only starts fetching of the Source DB on `dbExecutor`,
+     * the rest of the UI is initialized in
+     * `initializeDataBindings()`, once the data is ready.
+     *
      * @param url Internal JavaFX argument
      * @param rb  Internal JavaFX argument
      */
     @Override
     public void initialize(URL url, ResourceBundle rb) {
-        // Error safe fetching of Source DB data
-        sourceDBFetchedData = fetchDBData(sourceDBFile);
+        // Disabling data dependent controls until the Source DB is fetched
+        setDataControlsDisabled(true);
 
-        // Handling absence of the Source DB file
-        if (sourceDBFetchedData != null) {
-            // -- Data initialization section --
-            /*
-                Extracting food names from `sourceDBFetchedData`
+        /**
+         * Background fetching of the Source DB data
+         * and building of its indexes
+         * */
+        Task<DiaryEngine> diaryEngineTask = new Task<DiaryEngine>() {
+            @Override
+            protected DiaryEngine call() {
+                // Error safe fetching of Source DB data
+                return fetchDiaryEngine(sourceDBFile, recordDBFile);
+            }
+        };
 
-                `i = 1`, because first element (`i = 0`) contains
-                DB column headers
+        diaryEngineTask.setOnSucceeded(e -> {
+            diaryEngine = diaryEngineTask.getValue();
 
-                Food names are stored in the 3rd column in the
-                Source DB
-            */
-            for (int i = 1; i < sourceDBFetchedData.size(); i++)
-                sourceDBFetchedFoodNames.add(
-                    sourceDBFetchedData.get(i).get(2)
+            // Handling absence of the Source DB file
+            if (diaryEngine != null) {
+                sourceDB = diaryEngine.getSourceDB();
+
+                initializeDataBindings();
+                setDataControlsDisabled(false);
+            } else {
+                /*
+                * When there is no Source DB file, alerts the user
+                * about it and closes the program
+                * */
+                alert = new Alert(
+                    Alert.AlertType.ERROR,
+                    "No source file found"
                 );
+                alert.showAndWait();
 
-            // Initializing `recordDBHeaders`
-            recordDBHeaders = getRecordDBFetchedDataHeaders(
-                sourceDBFetchedData
-            );
+                Platform.exit();
+                System.exit(0);
+            }
+        });
 
-            /*
-            * Initializing `selectedFoodOptionsTableView`
-            * columns and their data dependencies
-            * */
-            initializeTableView(
-                selectedFoodOptionsTableView,
-                recordDBHeaders
-            );
+        runDBTask(diaryEngineTask, newRecordProgressIndicator);
+    }
 
-            /*
-             * Initializing `recordTableView` columns and
-             * their data dependencies
-             * */
-            initializeTableView(
-                recordTableView,
-                recordDBHeaders
-            );
 
-            // -- UI control bindings section --
-            /*
-             *  Auto-complete food option names' binding to the
-             *  `foodOptionSelectTextField`
-             * */
-            TextFields.bindAutoCompletion(
-                foodOptionSelectTextField, // Bind UI object
-                sourceDBFetchedFoodNames   // Bind data
-            );
+    /**
+     * Initializes the UI, that depends on the fetched
+     * Source DB data, and binds all the UI controls.
+     */
+    private void initializeDataBindings() {
+        // -- Data initialization section --
+        // Initializing `recordDBHeaders`
+        recordDBHeaders = getRecordDBFetchedDataHeaders(sourceDB);
 
-            /*
-             *  New food option from the `foodOptionSelectTextField`
-             *  is added to `selectedFoodOptions` when `Enter` is
-             *  pressed in `foodOptionSelectTextField`
-             * */
-            foodOptionSelectTextField.addEventFilter(
-                KeyEvent.KEY_PRESSED,
-                e -> {
-                    if (e.getCode().equals(KeyCode.ENTER)) {
-                        selectFoodOption();
-                        refreshTableViewData(
-                            selectedFoodOptionsTableView,
-                            selectedFoodOptions,
-                            recordDBHeaders
-                        );
-                    }
-                }
-            );
+        /*
+        * Initializing `selectedFoodOptionsTableView`
+        * columns and their data dependencies
+        * */
+        initializeTableView(
+            selectedFoodOptionsTableView,
+            recordDBHeaders
+        );
 
-            /*
-             *  New food option from the `foodOptionSelectTextField`
-             *  is added to `selectedFoodOptions` when
-             *  this button is clicked
-             * */
-            selectFoodOptionButton.addEventFilter(
-                MouseEvent.MOUSE_CLICKED,
-                e -> {
+        /*
+         * Initializing `recordTableView` columns and
+         * their data dependencies
+         * */
+        initializeTableView(
+            recordTableView,
+            recordDBHeaders
+        );
+
+        // -- UI control bindings section --
+        /*
+         *  Auto-complete food option names' binding to the
+         *  `foodOptionSelectTextField`, showing only the
+         *  best `SUGGESTION_LIMIT` matches
+         * */
+        FoodPrefixIndex.Session suggestionSession = diaryEngine.newSuggestionSession();
+
+        TextFields.bindAutoCompletion(
+            foodOptionSelectTextField,       // Bind UI object
+            request -> suggestionSession     // Bind data
+                .suggest(
+                    request.getUserText(),
+                    SUGGESTION_LIMIT
+                )
+        );
+
+        /*
+         *  New food option from the `foodOptionSelectTextField`
+         *  is added to `selectedFoodOptions` when `Enter` is
+         *  pressed in `foodOptionSelectTextField`
+         * */
+        foodOptionSelectTextField.addEventFilter(
+            KeyEvent.KEY_PRESSED,
+            e -> {
+                if (e.getCode().equals(KeyCode.ENTER)) {
                     selectFoodOption();
                     refreshTableViewData(
                         selectedFoodOptionsTableView,
-                        selectedFoodOptions,
-                        recordDBHeaders
+                        selectedFoodOptions
                     );
                 }
-            );
+            }
+        );
 
-            /*
-             * Safely saves `selectedFoodOptions`
-             * into Record DB, if it exists, or creates a new
-             * one, if it does not exist, when this button is
-             * clicked
-             * */
-            saveSelectedItemsButton.addEventFilter(
-                MouseEvent.MOUSE_CLICKED,
-                e -> {
-                    if (
-                        saveSelectedFoodOptionsIntoDBFile(
-                            selectedFoodOptions,
-                            recordDBFile
-                        ) == 1
-                    ) {
-                        selectedFoodOptions.clear();
-                        refreshTableViewData(
-                            selectedFoodOptionsTableView,
-                            selectedFoodOptions,
-                            recordDBHeaders
-                        );
-
-                        /*
-                         * When selected options were saved successfully,
-                         * alerts the user about it
-                         * */
-                        alert = new Alert(
-                            Alert.AlertType.INFORMATION,
-                            "Selected options were saved"
-                        );
-                        alert.show();
-                    } else {
-                        /*
-                         * When `selectedFoodOptions` is empty,
-                         * alerts the user about it
-                         * */
-                        alert = new Alert(
-                            Alert.AlertType.WARNING,
-                            "No food options selected"
-                        );
-                        alert.show();
-                    }
+        /*
+         *  New food option from the `foodOptionSelectTextField`
+         *  is added to `selectedFoodOptions` when
+         *  this button is clicked
+         * */
+        selectFoodOptionButton.addEventFilter(
+            MouseEvent.MOUSE_CLICKED,
+            e -> {
+                selectFoodOption();
+                refreshTableViewData(
+                    selectedFoodOptionsTableView,
+                    selectedFoodOptions
+                );
+            }
+        );
+
+        /*
+         * Safely saves `selectedFoodOptions`
+         * into Record DB, if it exists, or creates a new
+         * one, if it does not exist, when this button is
+         * clicked
+         * */
+        saveSelectedItemsButton.addEventFilter(
+            MouseEvent.MOUSE_CLICKED,
+            e -> saveSelectedFoodOptions()
+        );
+
+        /*
+         * Clears `selectedFoodOptions` and refreshes
+         * `selectedFoodOptionsTableView` data, when
+         * this button is clicked
+         * */
+        clearSelectedFoodOptionsButton.addEventFilter(
+            MouseEvent.MOUSE_CLICKED,
+            e -> {
+                if (!selectedFoodOptions.isEmpty()) {
+                    selectedFoodOptions.clear();
+                    refreshTableViewData(
+                        selectedFoodOptionsTableView,
+                        selectedFoodOptions
+                    );
+                } else {
+                    /*
+                     * When `selectedFoodOptions` is empty,
+                     * alerts the user about it
+                     * */
+                    alert = new Alert(
+                        Alert.AlertType.INFORMATION,
+                        "Selected options are " +
+                        "already cleared"
+                    );
+                    alert.show();
                 }
-            );
+            }
+        );
+
+        /*
+         * Refreshes `recordTableView` and re-fetches
+         * `recordDBFetchedData`, when this button is clicked
+         * */
+        refreshRecordTableViewButton.addEventFilter(
+            MouseEvent.MOUSE_CLICKED,
+            e -> refreshRecordTableView()
+        );
+
+        /*
+         * Refreshes `lastRecordedDayNutritionProportionPieChart`
+         * with the last recorded day totals, when this button
+         * is clicked
+         * */
+        refreshPieChartButton.addEventFilter(
+            MouseEvent.MOUSE_CLICKED,
+            e -> refreshPieChart()
+        );
+
+        /*
+         * Shows the statistics of the range between
+         * `rangeStartDatePicker` and `rangeEndDatePicker`,
+         * when this button is clicked
+         * */
+        showRangeStatisticsButton.addEventFilter(
+            MouseEvent.MOUSE_CLICKED,
+            e -> showRangeStatistics()
+        );
+
+        // Populating the other tabs, when they are shown for the first time
+        populateOnFirstShow(viewRecordsTab, this::refreshRecordTableView);
+        populateOnFirstShow(statisticsTab, this::refreshPieChart);
+    }
+
+
+    /**
+     * Submits `task` to `dbExecutor`, showing its progress
+     * in `progressIndicator`, while it is running.
+     *
+     * @param task              Task to run.
+     * @param progressIndicator Indicator of the task progress.
+     */
+    private void runDBTask(Task<?> task, ProgressIndicator progressIndicator) {
+        progressIndicator.progressProperty().bind(task.progressProperty());
+        progressIndicator.visibleProperty().bind(task.runningProperty());
+
+        dbExecutor.execute(task);
+    }
+
 
+    /**
+     * Runs `populate` as soon as `tab` is selected for
+     * the first time.
+     *
+     * @param tab      Tab to wait for.
+     * @param populate Action populating the tab.
+     */
+    private void populateOnFirstShow(Tab tab, Runnable populate) {
+        if (tab.isSelected()) {
+            populate.run();
+            return;
+        }
+
+        tab.selectedProperty().addListener(new ChangeListener<Boolean>() {
+            @Override
+            public void changed(
+                ObservableValue<? extends Boolean> observable,
+                Boolean                            wasSelected,
+                Boolean                            selected
+            ) {
+                if (selected) {
+                    tab.selectedProperty().removeListener(this);
+                    populate.run();
+                }
+            }
+        });
+    }
+
+
+    /**
+     * Enables or disables the controls, that can not
+     * be used before the Source DB is fetched.
+     *
+     * @param disabled `true` to disable the controls.
+     */
+    private void setDataControlsDisabled(boolean disabled) {
+        foodOptionMassValueTextField.setDisable(disabled);
+        foodOptionSelectTextField.setDisable(disabled);
+        selectFoodOptionButton.setDisable(disabled);
+        saveSelectedItemsButton.setDisable(disabled);
+        clearSelectedFoodOptionsButton.setDisable(disabled);
+        refreshRecordTableViewButton.setDisable(disabled);
+        refreshPieChartButton.setDisable(disabled);
+        showRangeStatisticsButton.setDisable(disabled);
+    }
+
+
+    /**
+     * Saves a copy of `selectedFoodOptions` into the Record DB
+     * on `dbExecutor` and clears them, once they are saved.
+     */
+    private void saveSelectedFoodOptions() {
+        // Handling absence of selected options
+        if (selectedFoodOptions.isEmpty()) {
             /*
-             * Clears `selectedFoodOptions` and refreshes
-             * `selectedFoodOptionsTableView` data, when
-             * this button is clicked
+             * When `selectedFoodOptions` is empty,
+             * alerts the user about it
              * */
-            clearSelectedFoodOptionsButton.addEventFilter(
-                MouseEvent.MOUSE_CLICKED,
-                e -> {
-                    if (!selectedFoodOptions.isEmpty()) {
-                        selectedFoodOptions.clear();
-                        refreshTableViewData(
-                            selectedFoodOptionsTableView,
-                            selectedFoodOptions,
-                            recordDBHeaders
-                        );
-                    } else {
-                        /*
-                         * When `selectedFoodOptions` is empty,
-                         * alerts the user about it
-                         * */
-                        alert = new Alert(
-                            Alert.AlertType.INFORMATION,
-                            "Selected options are " +
-                            "already cleared"
-                        );
-                        alert.show();
-                    }
-                }
+            alert = new Alert(
+                Alert.AlertType.WARNING,
+                "No food options selected"
             );
+            alert.show();
+            return;
+        }
 
-            /*
-             * Refreshes `recordTableView` and re-fetches
-             * `recordDBFetchedData`, when this button is clicked
+        /**
+         * Food options to save, later selections are
+         * not affected by the save
+         * */
+        List<FoodEntry> foodOptionsToSave =
+            new ArrayList<>(selectedFoodOptions);
+
+        Task<Integer> saveTask = new Task<Integer>() {
+            @Override
+            protected Integer call() throws IOException {
+                return saveSelectedFoodOptionsIntoDBFile(
+                    foodOptionsToSave,
+                    diaryEngine
+                );
+            }
+        };
+
+        saveTask.setOnSucceeded(e -> {
+            saveSelectedItemsButton.setDisable(false);
+
+            /**
+             * Saved food options, compared by identity, so equal
+             * options selected during the save are kept
              * */
-            refreshRecordTableViewButton.addEventFilter(
-                MouseEvent.MOUSE_CLICKED,
-                e -> {
-                    recordDBFetchedData = fetchDBData(recordDBFile);
+            Set<FoodEntry> savedFoodOptions =
+                Collections.newSetFromMap(new IdentityHashMap<>());
 
-                    // Handling absence of Record DB file
-                    if (recordDBFetchedData != null) {
-                        refreshTableViewData(
-                            recordTableView,
-                            recordDBFetchedData,
-                            recordDBHeaders
-                        );
-                    } else {
-                        /*
-                         * When there is no Record DB file,
-                         * alerts the user about it
-                         * */
-                        alert = new Alert(
-                            Alert.AlertType.WARNING,
-                            "No records found"
-                        );
-                        alert.show();
-                    }
-                }
+            savedFoodOptions.addAll(foodOptionsToSave);
+            selectedFoodOptions.removeIf(savedFoodOptions::contains);
+            refreshTableViewData(
+                selectedFoodOptionsTableView,
+                selectedFoodOptions
             );
 
             /*
-             * Refreshes `recordTableView` and re-fetches
-             * `recordDBFetchedData`, when this button is clicked
+             * When selected options were saved successfully,
+             * alerts the user about it
              * */
-            refreshPieChartButton.addEventFilter(
-                MouseEvent.MOUSE_CLICKED,
-                e -> {
-                    recordDBFetchedData = fetchDBData(recordDBFile);
-
-                    // Handling absence of Record DB file
-                    if (recordDBFetchedData != null) {
-                        /*
-                        * Handling case, when `recordDBFetchedData`
-                        * contains only headers without data
-                        * */
-                        if (recordDBFetchedData.size() > 1) {
-                            LinkedList<LinkedList<String>> lastRecordedDayFoodOptionList =
-                                new LinkedList<>();
-
-                            /**
-                             * Last day when food data was saved by the user
-                             *
-                             * Format: "YYYY-MM-DD"
-                             * */
-                            String lastRecordedDay =
-                                recordDBFetchedData
-                                    .getLast()
-                                    .getLast();
-
-                            /*
-                            * Getting all the rows from the end of the Record DB,
-                            * that have the `lastRecordedDay` date value
-                            * */
-                            for (int i = recordDBFetchedData.size() - 1; i > 0; i--) {
-                                if (
-                                    recordDBFetchedData
-                                        .get(i)
-                                        .getLast()
-                                        .equals(lastRecordedDay)
-                                ) {
-                                    lastRecordedDayFoodOptionList.add(
-                                        new LinkedList<>()
-                                    );
-
-                                    for (String s : recordDBFetchedData.get(i)) {
-                                        lastRecordedDayFoodOptionList
-                                            .getLast()
-                                            .add(s);
-                                    }
-                                }
-                            }
-
-                            /*
-                            * Output of the `lastRecordedDay` date above
-                            * the `PieChart`
-                            * */
-                            pieChartLabel.setText(
-                                "Pie chart corresponds to date: " +
-                                lastRecordedDay
-                            );
-
-                            // Initializing `PieChart`
-                            initializePieChart(
-                                lastRecordedDayNutritionProportionPieChart,
-                                lastRecordedDayFoodOptionList,
-                                recordDBHeaders
-                            );
-                        } else {
-                            /*
-                             * When there are no food options saved in
-                             * the Record DB file, alerts the user about it
-                             * */
-                            alert = new Alert(
-                                Alert.AlertType.WARNING,
-                                "No records found"
-                            );
-                            alert.show();
-                        }
-                    } else {
-                        /*
-                         * When there is no Record DB file,
-                         * alerts the user about it
-                         * */
-                        alert = new Alert(
-                            Alert.AlertType.WARNING,
-                            "No records found"
-                        );
-                        alert.show();
-                    }
-                }
+            alert = new Alert(
+                Alert.AlertType.INFORMATION,
+                "Selected options were saved"
             );
-        } else {
+            alert.show();
+        });
+
+        saveTask.setOnFailed(e -> {
+            saveSelectedItemsButton.setDisable(false);
+            saveTask.getException().printStackTrace();
+
             /*
-            * When there is no Source DB file, alerts the user
-            * about it and closes the program
+            * When there is an error, while writing
+            * to the Record DB file, notifies the user
             * */
             alert = new Alert(
                 Alert.AlertType.ERROR,
-                "No source file found"
+                "Error while saving data"
             );
-            alert.showAndWait();
+            alert.show();
+        });
 
-            Platform.exit();
-            System.exit(0);
-        }
+        /*
+         * Preventing saving the same food options twice, also
+         * while the task is still queued behind other DB tasks
+         * */
+        saveSelectedItemsButton.setDisable(true);
+
+        runDBTask(saveTask, newRecordProgressIndicator);
     }
 
 
     /**
-     * Initializes `chart` object reference with the data
-     * from `data` object with corresponding `headers` object.
-     *
-     * @param chart   `PieChart` reference to initialize.
-     * @param data    Record DB food option row extract of the
-     *                last saved date without any headers.
-     * @param headers Record DB data headers to render.
+     * Re-fetches `recordDBFetchedData` on `dbExecutor` and
+     * shows it in `recordTableView`. A refresh, that is still
+     * in progress, is cancelled.
      */
-    private void initializePieChart(
-        PieChart                       chart,
-        LinkedList<LinkedList<String>> data,
-        LinkedList<String>             headers
-    ) {
-        /**
-         * Contains elements to be displayed on the pie
-         * chart as `Double`s
-         * */
-        List<List<Double>> doubleData = new ArrayList<>();
-
-        /**
-         * Contains indexes of the headers to be
-         * displayed on the pie chart
-         * */
-        List<List<Integer>> headerIndexes = new ArrayList<>();
+    private void refreshRecordTableView() {
+        if (recordTableViewTask != null) {
+            recordTableViewTask.cancel(false);
+        }
 
-        /**
-         * Contains headers to be displayed on the
-         * pie chart as `String`s
-         * */
-        List<String> headerTitles = new ArrayList<>();
+        Task<ObservableList<RecordDBFoodOption>> task =
+            new Task<ObservableList<RecordDBFoodOption>>() {
+                @Override
+                protected ObservableList<RecordDBFoodOption> call()
+                    throws IOException {
+                    RecordStore data = diaryEngine.getRecords();
 
-        /**
-         * Contains objects to be passed in the
-         * `PieChart.setData()` method
-         * */
-        List<Double> totalDoubleData = new ArrayList<>();
+                    // Handling absence of Record DB file
+                    if (data == null || isCancelled()) {
+                        return null;
+                    }
 
-        // Initializing JavaFX specific list representation
-        ObservableList<PieChart.Data> observablePieChartDataList =
-            FXCollections.observableArrayList();
+                    return createRecordTableViewData(data);
+                }
+            };
 
-        /*
-        * Populating `doubleData` and `headerIndexes` lists
-        * according to their description
-        * */
-        for (int i = 0; i < data.size(); i++) {
-            List<Double>  doubleDataItem    = new ArrayList<>();
-            List<Integer> headerIndexesItem = new ArrayList<>();
-
-            for (int j = 0; j < data.get(i).size(); j++) {
-                try {
-                    if (j != 0 && j != 7 && j != 56) {
-                        if (data.get(i).get(j).equals("NULL")) {
-                            data.get(i).set(j, "0.0");
-                        }
-
-                        doubleDataItem.add(
-                            Double.parseDouble(
-                                data.get(i).get(j)
-                            )
-                        );
-
-                        headerIndexesItem.add(j);
-                    }
-                } catch (Exception ignored) {}
+        task.setOnSucceeded(e -> {
+            if (task.getValue() != null) {
+                recordTableView.setItems(task.getValue());
+            } else {
+                /*
+                 * When there is no Record DB file,
+                 * alerts the user about it
+                 * */
+                alert = new Alert(
+                    Alert.AlertType.WARNING,
+                    "No records found"
+                );
+                alert.show();
             }
+        });
+
+        task.setOnFailed(e -> task.getException().printStackTrace());
 
-            headerIndexes.add(headerIndexesItem);
-            doubleData.add(doubleDataItem);
+        recordTableViewTask = task;
+        runDBTask(task, recordTableViewProgressIndicator);
+    }
+
+
+    /**
+     * Re-fetches the last recorded day totals on `dbExecutor` and
+     * shows them in `lastRecordedDayNutritionProportionPieChart`.
+     * A refresh, that is still in progress, is cancelled.
+     */
+    private void refreshPieChart() {
+        if (pieChartTask != null) {
+            pieChartTask.cancel(false);
         }
 
-        /*
-        * Populating `headerTitles` list using the data
-        * in `headerIndexes` and `headers`
-        * */
-        for (int i : headerIndexes.get(0)) {
-            try {
-                headerTitles.add(headers.get(i));
-            } catch (Exception e) {
-                // Skipping unnecessary data
+        Task<LastRecordedDay> task = new Task<LastRecordedDay>() {
+            @Override
+            protected LastRecordedDay call() throws IOException {
+                return fetchLastRecordedDay(diaryEngine, this::isCancelled);
             }
-        }
+        };
 
-        /*
-        * Modifying the data in `doubleData` in order
-        * to normalize the data to one unit (grams)
-        * */
-        for (int i = 0; i < doubleData.size(); i++) {
-            for (int j = 0; j < doubleData.get(i).size(); j++) {
-                if (headerTitles.get(j).contains("(mg)")) {
-                    doubleData
-                        .get(i)
-                        .set(
-                            j,
-                            doubleData.get(i).get(j) / 1000
-                        );
-                } else if (headerTitles.get(j).contains("(mcg)")) {
-                    doubleData
-                        .get(i)
-                        .set(
-                            j,
-                            doubleData.get(i).get(j) / 1000000
-                        );
-                } else if (headerTitles.get(j).contains("(IU)")) {
-                    doubleData
-                        .get(i)
-                        .set(
-                            j,
-                            doubleData.get(i).get(j) / 1000000 * 0.3
-                        );
-                }
+        task.setOnSucceeded(e -> {
+            /**
+             * Totals of the last day when food data was saved
+             * by the user, or `null`, if there is no Record DB
+             * file or it contains no data
+             * */
+            LastRecordedDay lastRecordedDay = task.getValue();
+
+            if (lastRecordedDay != null) {
+                /*
+                * Output of the last recorded date (format:
+                * "YYYY-MM-DD") above the `PieChart`
+                * */
+                pieChartLabel.setText(
+                    "Pie chart corresponds to date: " +
+                    LocalDate.ofEpochDay(lastRecordedDay.epochDay)
+                );
+
+                // Initializing `PieChart`
+                initializePieChart(
+                    lastRecordedDayNutritionProportionPieChart,
+                    lastRecordedDay.totals.getNutrients(),
+                    recordDBHeaders
+                );
+            } else {
+                /*
+                 * When there are no food options saved in
+                 * the Record DB file, alerts the user about it
+                 * */
+                alert = new Alert(
+                    Alert.AlertType.WARNING,
+                    "No records found"
+                );
+                alert.show();
             }
+        });
+
+        task.setOnFailed(e -> task.getException().printStackTrace());
+
+        pieChartTask = task;
+        runDBTask(task, pieChartProgressIndicator);
+    }
+
+
+    /**
+     * Computes statistics of the range selected with
+     * `rangeStartDatePicker` and `rangeEndDatePicker` on
+     * `dbExecutor` and shows its nutrient totals in
+     * `lastRecordedDayNutritionProportionPieChart`.
+     */
+    private void showRangeStatistics() {
+        // Handling incomplete ranges
+        if (
+            rangeStartDatePicker.getValue() == null
+            || rangeEndDatePicker.getValue() == null
+        ) {
+            alert = new Alert(
+                Alert.AlertType.WARNING,
+                "Select both range dates"
+            );
+            alert.show();
+            return;
         }
 
-        /*
-        * Populating `totalDoubleData` according to its
-        * description using the data from `doubleData`
-        * after the normalization process
-        * */
-        for (int i = 0; i < doubleData.get(0).size(); i++) {
-            Double totalDoubleDataItem = 0.0;
+        int startDay = (int) rangeStartDatePicker.getValue().toEpochDay();
+        int endDay   = (int) rangeEndDatePicker.getValue().toEpochDay();
 
-            for (int j = 0; j < doubleData.size(); j++) {
-                try {
-                    totalDoubleDataItem += doubleData.get(j).get(i);
-                } catch (Exception ignored) {}
-            }
-            totalDoubleData.add(totalDoubleDataItem);
+        /**
+         * Range in chronological order
+         * */
+        int fromDay = Math.min(startDay, endDay);
+        int toDay   = Math.max(startDay, endDay);
+
+        if (pieChartTask != null) {
+            pieChartTask.cancel(false);
         }
 
+        Task<RangeStatistics> task = new Task<RangeStatistics>() {
+            @Override
+            protected RangeStatistics call() throws IOException {
+                return diaryEngine.getStatistics(fromDay, toDay);
+            }
+        };
+
+        task.setOnSucceeded(e -> {
+            RangeStatistics statistics = task.getValue();
+
+            if (statistics != null && statistics.getEntryAmount() > 0) {
+                /*
+                * Output of the range and the amount of
+                * days with records above the `PieChart`
+                * */
+                pieChartLabel.setText(
+                    "Pie chart corresponds to dates: " +
+                    LocalDate.ofEpochDay(fromDay) + " - " +
+                    LocalDate.ofEpochDay(toDay) + " (" +
+                    statistics.getRecordedDayAmount() + " days with records)"
+                );
+
+                // Initializing `PieChart`
+                initializePieChart(
+                    lastRecordedDayNutritionProportionPieChart,
+                    statistics.getTotals(),
+                    recordDBHeaders
+                );
+            } else {
+                /*
+                 * When there are no food options saved in
+                 * the range, alerts the user about it
+                 * */
+                alert = new Alert(
+                    Alert.AlertType.WARNING,
+                    "No records found"
+                );
+                alert.show();
+            }
+        });
+
+        task.setOnFailed(e -> task.getException().printStackTrace());
+
+        pieChartTask = task;
+        runDBTask(task, pieChartProgressIndicator);
+    }
+
+
+    /**
+     * Initializes `chart` object reference with the nutrient
+     * totals of `totals` with corresponding `headers` object.
+     *
+     * @param chart   `PieChart` reference to initialize.
+     * @param totals  Nutrient totals in Source DB units, e.g.
+     *                of the last saved date.
+     * @param headers Record DB data headers to render.
+     */
+    private void initializePieChart(
+        PieChart           chart,
+        double[]           totals,
+        LinkedList<String> headers
+    ) {
+        // Initializing JavaFX specific list representation
+        ObservableList<PieChart.Data> observablePieChartDataList =
+            FXCollections.observableArrayList();
+
+        /**
+         * Nutrient totals normalized to one unit (grams)
+         * */
+        double[] grams = diaryEngine.toGrams(totals, pieChartGrams);
+
         /*
-        * Populating `observablePieChartDataList`
-        * according to its description
+        * Populating `observablePieChartDataList` with every
+        * nutrient, that is a mass
         * */
-        for (int i = 0; i < headerTitles.size(); i++) {
-            observablePieChartDataList.add(
-                new PieChart.Data(
-                    headerTitles.get(i),
-                    totalDoubleData.get(i)
-                )
-            );
+        for (int i = 0; i < grams.length; i++) {
+            if (diaryEngine.isMass(i)) {
+                observablePieChartDataList.add(
+                    new PieChart.Data(
+                        headers.get(SourceDB.FIRST_NUTRIENT_COLUMN + i),
+                        grams[i]
+                    )
+                );
+            }
         }
 
         /*
@@ -677,10 +849,11 @@ public class Controller implements Initializable {
             tableColumnList
                 .getLast()
                 .setCellValueFactory(
-                    p -> p
-                        .getValue()
-                        .getFoodOption()
-                        .get(I)
+                    p -> new ReadOnlyStringWrapper(
+                        p
+                            .getValue()
+                            .getCell(I)
+                    )
                 );
         }
 
@@ -694,157 +867,157 @@ public class Controller implements Initializable {
 
 
     /**
-     * Refreshes `tableView` object's data with data of
-     * `rowLists` and `headerList`.
+     * Refreshes `tableView` object's data with `foodEntries`.
      *
-     * @param tableView  `TableView` to be refreshed.
-     * @param rowLists   Table rows to render.
-     * @param headerList Table headers to render.
+     * @param tableView   `TableView` to be refreshed.
+     * @param foodEntries Table rows to render.
      */
     private void refreshTableViewData(
-        TableView<RecordDBFoodOption>  tableView,
-        LinkedList<LinkedList<String>> rowLists,
-        LinkedList<String>             headerList
+        TableView<RecordDBFoodOption> tableView,
+        List<FoodEntry>               foodEntries
     ) {
-        /**
-         * Required to identify whether passed data
-         * contains headers row or not
-         * */
-        boolean skipFirstLine;
+        // Setting the new data
+        tableView.setItems(createTableViewData(foodEntries));
+    }
 
-        /**
-         * Memory efficient list of table rows to be
-         * initialized in the `tableView`
-         * */
-        LinkedList<RecordDBFoodOption> foodOptionList = new LinkedList<>();
-
-        // Initializing `skipFirstLine`
-        if (rowLists.size() > 0) {
-            skipFirstLine = rowLists
-                .getFirst()
-                .getFirst().equals(
-                    headerList.getFirst()
-                );
-        } else {
-            skipFirstLine = false;
-        }
 
-        // Initializing `foodOptionList` without headers
-        for (
-            int i = skipFirstLine ? 1 : 0;
-            i < rowLists.size();
-            i++
-        ) {
-            foodOptionList.add(
-                new RecordDBFoodOption(rowLists.get(i))
-            );
-        }
+    /**
+     * Wraps `foodEntries` into `TableView` data without copying
+     * the entries or their food option rows. The view follows
+     * `foodEntries`, which are only changed on the JavaFX thread
+     * right before the data is refreshed.
+     *
+     * @param foodEntries Table data rows.
+     * @return            `TableView` data.
+     */
+    private ObservableList<RecordDBFoodOption> createTableViewData(
+        List<FoodEntry> foodEntries
+    ) {
+        return FXCollections.observableList(
+            new AbstractList<RecordDBFoodOption>() {
+                @Override
+                public RecordDBFoodOption get(int row) {
+                    return foodEntries.get(row)::getCell;
+                }
 
-        // Initializing JavaFX specific list representation
-        ObservableList<RecordDBFoodOption> tableViewData =
-            FXCollections.observableArrayList(
-                foodOptionList
-            );
+                @Override
+                public int size() {
+                    return foodEntries.size();
+                }
+            }
+        );
+    }
 
-        // Setting the new data
-        tableView.setItems(tableViewData);
+
+    /**
+     * Wraps `data` into `TableView` data without copying it.
+     * Rows are created only, when the `TableView` asks for
+     * them, i.e. for the rows on the screen.
+     *
+     * @param data Frozen record store.
+     * @return     `TableView` data.
+     */
+    private ObservableList<RecordDBFoodOption> createRecordTableViewData(
+        RecordStore data
+    ) {
+        return FXCollections.observableList(
+            new AbstractList<RecordDBFoodOption>() {
+                @Override
+                public RecordDBFoodOption get(int row) {
+                    if (row < 0 || row >= data.size()) {
+                        throw new IndexOutOfBoundsException("Row: " + row);
+                    }
+
+                    return column -> data.getCell(row, column);
+                }
+
+                @Override
+                public int size() {
+                    return data.size();
+                }
+            }
+        );
     }
 
 
     /**
-     * Fetches DB data from `DBFile`.
+     * Returns the rolled up totals of the last day, when food
+     * data was saved by the user.
      *
-     * @param DBFile DB `File` to be fetched.
-     * @return       Either reference to fetched memory
-     *               efficient DB file data or `null`,
-     *               if there is no file.
+     * @param engine    Diary engine to query.
+     * @param cancelled `true`, when the result is no longer
+     *                  needed.
+     * @return          Either totals of the last recorded day or
+     *                  `null`, if there is no Record DB file, it
+     *                  contains no data, or the fetch was
+     *                  cancelled.
+     * @throws IOException In case of reading errors.
      */
-    private LinkedList<LinkedList<String>> fetchDBData(File DBFile) {
-        /**
-         * DB data object to return
-         * */
-        LinkedList<LinkedList<String>> DBData = new LinkedList<>();
+    private LastRecordedDay fetchLastRecordedDay(
+        DiaryEngine     engine,
+        BooleanSupplier cancelled
+    ) throws IOException {
+        int lastDay = engine.getLastRecordedDay();
+
+        // Handling DB file absence and empty DB files
+        if (lastDay == Integer.MIN_VALUE || cancelled.getAsBoolean()) {
+            return null; // No data was found return value
+        }
 
-        // Handling DB file absence
-        if (DBFile.exists()) {
-            try {
-                /**
-                 * Main reader
-                 * */
-                BufferedReader br = new BufferedReader(
-                    new FileReader(DBFile)
-                );
+        /*
+         * Copy of the day totals, that are not changed
+         * by later saves
+         * */
+        DailyRollups.DayTotals totals = engine.getTotals(lastDay, lastDay);
 
-                /**
-                 * String buffer for lines in the `.csv` DB
-                 * */
-                String line;
+        if (totals == null || totals.getEntryAmount() == 0) {
+            return null;
+        }
 
-                /**
-                 * `line` decomposed into String[] of DB
-                 * columns of the current row
-                 * */
-                String[] decomposedLine;
-
-                while ((line = br.readLine()) != null) {
-                    /**
-                     *  `String[]` of extracted column data using data
-                     *  specific regex for `.csv` DB
-                     *
-                     *  This regex works, if there is only
-                     *  1 or 0 strings in a DB row
-                     *
-                     *  DO NOT USE THIS REGEX ANYWHERE ELSE !
-                     * */
-                    decomposedLine = line.split(
-                        "((?!(\")),[\",])|(\",)|(,(?=(.+,\")))|(,(?!(.*\"))(?=(.+,,)))"
-                    );
+        return new LastRecordedDay(lastDay, totals);
+    }
 
-                    /*
-                     * Converting `decomposedLine` to
-                     * `LinkedList<String>` and saving it
-                     * into `DBData`
-                     * */
-                    DBData.add(
-                        new LinkedList<>(
-                            Arrays.asList(
-                                Arrays.copyOfRange(
-                                    decomposedLine,
-                                    0,
-                                    decomposedLine.length
-                                )
-                            )
-                        )
-                    );
-                }
 
-                br.close();
+    /**
+     * Fetches Source DB data from `sourceDBFile` and opens
+     * the diary engine over it and `recordDBFile`.
+     *
+     * @param sourceDBFile Source DB `File` to be fetched.
+     * @param recordDBFile Record DB `File`, may not exist yet.
+     * @return             Either opened `DiaryEngine` or `null`,
+     *                     if there is no Source DB file, or it
+     *                     can not be read.
+     */
+    private DiaryEngine fetchDiaryEngine(File sourceDBFile, File recordDBFile) {
+        // Handling Source DB file absence
+        if (sourceDBFile.exists()) {
+            try {
+                return DiaryEngine.open(sourceDBFile, recordDBFile);
             } catch (IOException e) {
                 e.printStackTrace();
             }
-
-            return DBData;
-        } else {
-            return null; // No file was found return value
         }
+
+        return null; // No file was found return value
     }
 
+
     /**
      * Adds 2 extra column header values to
-     * `sourceDBFetchedData` headers and returns
-     * the resulting value.
+     * `sourceDB` headers and returns the
+     * resulting value.
      *
-     * @param sourceDBFetchedData Source DB data.
-     * @return                    Composed Record DB headers.
+     * @param sourceDB Source DB data.
+     * @return         Composed Record DB headers.
      */
     private LinkedList<String> getRecordDBFetchedDataHeaders(
-        LinkedList<LinkedList<String>> sourceDBFetchedData
+        SourceDB sourceDB
     ) {
         /**
          * Record DB column headers to be returned
          * */
         LinkedList<String> recordDBFetchedDataHeaders =
-            sourceDBFetchedData.getFirst();
+            new LinkedList<>(sourceDB.getHeaders());
 
         recordDBFetchedDataHeaders.add("Mass (g)");
         recordDBFetchedDataHeaders.add("Date");
@@ -856,17 +1029,16 @@ public class Controller implements Initializable {
     /**
      * Main search algorithm of the program.
      *
-     * @param foodNames List of all Source DB food
-     *                  names.
-     * @return          Source DB row index
-     *                  incremented by 1 or an error
-     *                  code:
+     * @param engine Diary engine to look the
+     *               food names up in.
+     * @return       Source DB row index or an
+     *               error code:
      *  -1 - `foodOptionSelectTextField` is empty.
      *  -2 - no food option in the Source DB
      *       matches the entered food name.
      */
     private int getSelectedFoodOptionIndexInSourceDBFetchedFoodNames(
-        LinkedList<String> foodNames
+        DiaryEngine engine
     ) {
         String searchTextFieldContent =
             foodOptionSelectTextField
@@ -880,14 +1052,10 @@ public class Controller implements Initializable {
         if (searchTextFieldContent.isEmpty()) {
             return -1; // "No input" error code
         } else {
-            for (int i = 0; i < foodNames.size(); i++) {
-                if (
-                    foodNames
-                        .get(i)
-                        .equals(searchTextFieldContent)
-                ) {
-                    return i + 1;
-                }
+            int row = engine.findFood(searchTextFieldContent);
+
+            if (row >= 0) {
+                return row;
             }
         }
 
@@ -908,19 +1076,19 @@ public class Controller implements Initializable {
      */
     private void selectFoodOption() {
         /**
-         * Has value of a Source DB row index incremented
-         * by 1 or value of an error code
+         * Has value of a Source DB row index or value
+         * of an error code
          * */
         int foodOptionSourceDBFetchedDataIndex =
             getSelectedFoodOptionIndexInSourceDBFetchedFoodNames(
-                sourceDBFetchedFoodNames
+                diaryEngine
             );
 
         /*
         * Handling error codes of
         * `getSelectedFoodOptionIndexInSourceDBFetchedFoodNames()`
         * */
-        if (foodOptionSourceDBFetchedDataIndex > 0) {
+        if (foodOptionSourceDBFetchedDataIndex >= 0) {
             int foodOptionMassValue = getFoodOptionMassValue();
 
             /*
@@ -928,20 +1096,15 @@ public class Controller implements Initializable {
              * `getFoodOptionMassValue()`
              * */
             if (foodOptionMassValue > 0) {
-                selectedFoodOptions.add(
-                    sourceDBFetchedData.get(
-                        foodOptionSourceDBFetchedDataIndex
-                    )
-                );
-
-                selectedFoodOptions.getLast()       // Current food option
-                    .add("" + foodOptionMassValue); // Adding selected food option mass
-
                 // Grouping date initialization
                 LocalDate currentSessionDate = LocalDate.now();
 
-                selectedFoodOptions.getLast()            // Current food option
-                    .add(currentSessionDate.toString()); // Adding grouping date
+                // Shared food option, `sourceDB` itself stays untouched
+                selectedFoodOptions.add(new FoodEntry(
+                    sourceDB.getFoodOption(foodOptionSourceDBFetchedDataIndex),
+                    foodOptionMassValue,
+                    (int) currentSessionDate.toEpochDay()
+                ));
             } else if (foodOptionMassValue == -1)  {
                 /*
                  * When there is no mass input,
@@ -975,15 +1138,43 @@ public class Controller implements Initializable {
             );
             alert.show();
         } else if (foodOptionSourceDBFetchedDataIndex == -2) {
-            /*
-             * When there is no matching food option name
-             * in the Source DB, alerts the user about it
+            /**
+             * Row of the food option, which name is the
+             * closest to the entered one, or `-1`
              * */
-            alert = new Alert(
-                Alert.AlertType.WARNING,
-                "Food option not found"
+            int closestFoodOptionIndex = diaryEngine.findClosestFood(
+                foodOptionSelectTextField.getCharacters().toString(),
+                MAX_TYPO_EDIT_DISTANCE
             );
-            alert.show();
+
+            if (closestFoodOptionIndex >= 0) {
+                /*
+                 * When there is a food option name only a few
+                 * typos away, puts it into the text field and
+                 * asks the user to confirm it
+                 * */
+                foodOptionSelectTextField.setText(
+                    sourceDB.getName(closestFoodOptionIndex)
+                );
+
+                alert = new Alert(
+                    Alert.AlertType.INFORMATION,
+                    "Food option not found. Did you mean \"" +
+                    sourceDB.getName(closestFoodOptionIndex) +
+                    "\"? Select it again to confirm"
+                );
+                alert.show();
+            } else {
+                /*
+                 * When there is no matching food option name
+                 * in the Source DB, alerts the user about it
+                 * */
+                alert = new Alert(
+                    Alert.AlertType.WARNING,
+                    "Food option not found"
+                );
+                alert.show();
+            }
         }
     }
 
@@ -1033,90 +1224,50 @@ public class Controller implements Initializable {
     }
 
     /**
-     * Safely saves `selectedFoodOptions` into `recordDBFile`,
+     * Safely saves `selectedFoodOptions` into the Record DB,
      * and return either success or error code.
      *
-     * @param selectedFoodOptions Food option rows in
-     *                            Source DB format to save.
-     * @param recordDBFile        Record DB file to save to.
+     * Only food option ids, masses and dates are saved, the
+     * rest is joined from the Source DB, when reading.
+     *
+     * @param selectedFoodOptions Food entries to save.
+     * @param engine              Diary engine to save with.
      * @return                    Either success or error
      *                            code:
      *   1 - success
      *  -1 - error
+     * @throws IOException In case of writing errors.
      */
     private int saveSelectedFoodOptionsIntoDBFile(
-        LinkedList<LinkedList<String>> selectedFoodOptions,
-        File                           recordDBFile
-    ) {
+        List<FoodEntry> selectedFoodOptions,
+        DiaryEngine     engine
+    ) throws IOException {
         /**
          * Flag, identifying whether `selectedFoodOptions`
          * is an empty object
          * */
         boolean foodOptionsEmpty = selectedFoodOptions.isEmpty();
 
-        /**
-         * Flag, identifying whether `recordDBFile` exists
-         * */
-        boolean DBFileExists = recordDBFile.exists();
-
         // Handling absence of selected options
         if (!foodOptionsEmpty) {
-            try {
-                BufferedWriter bw = new BufferedWriter(
-                    new FileWriter(
-                        recordDBFile,
-                        DBFileExists
-                    )
-                );
-
-                StringBuffer sb = new StringBuffer();
+            /**
+             * Entry time of all the selected food options
+             * */
+            int secondOfDay = LocalTime.now().toSecondOfDay();
 
-                /*
-                * Handling absence of Record DB file
-                * data by adding Record DB column headers
-                * to the empty file
-                * */
-                if (!DBFileExists) {
-                    for (int i = 0; i < COLUMN_AMOUNT_IN_SOURCE_DB; i++) {
-                        sb
-                            .append(sourceDBFetchedData.get(0).get(i))
-                            .append(",");
-                    }
-                    sb.append("Mass (g),Date,,\r\n");
-                    bw.write(sb.toString());
-                    sb.delete(0, sb.length());
-                }
+            /**
+             * Selected food options in Record DB entry format
+             * */
+            List<RecordEntry> entries = new ArrayList<>();
 
-                /*
-                * Safely adding (appending) selected
-                * food options to the Record DB file
-                * */
-                for (int i = 0; i < selectedFoodOptions.size(); i++) {
-                    for (int j = 0; j < COLUMN_AMOUNT_IN_RECORD_DB; j++) {
-                        sb
-                            .append((j == 2)
-                                ? ("\"" + selectedFoodOptions.get(i).get(2) + "\"")
-                                : (selectedFoodOptions.get(i).get(j))
-                            )
-                            .append(",");
-                    }
-                    sb.append(",\r\n");
-                    bw.write(sb.toString());
-                    sb.delete(0, sb.length());
-                }
+            for (FoodEntry foodOption : selectedFoodOptions)
+                entries.add(foodOption.toRecordEntry(secondOfDay));
 
-                bw.close();
-            } catch (IOException e) {
-                /*
-                * When there is an error, while writing
-                * to the Record DB file, notifies the user
-                * */
-                alert = new Alert(
-                    Alert.AlertType.ERROR,
-                    "Error while saving data"
-                );
-                alert.show();
-            }
+            /*
+             * Safely adding (appending) entries to the Record DB
+             * file, indexing and rolling them up
+             * */
+            engine.append(entries);
 
             return 1; // `OK` return code
         } else {
@@ -0,0 +1,250 @@
+package sample;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedList;
+
+/**
+ * `CsvTokenizer` class is a single pass, regex free RFC 4180
+ * `.csv` tokenizer.
+ *
+ * Characters are consumed straight from a `Reader` (or fed in
+ * chunks via `feed()`) and every field is emitted to a
+ * `FieldSink` as soon as it is complete. Any number of quoted
+ * fields per row, escaped quotes (`""`), quoted separators and
+ * quoted line breaks are supported.
+ *
+ * For compatibility with rows written by older versions of the
+ * program, a single quote inside a quoted field, that is not
+ * followed by a separator or a line break, is kept as a literal
+ * quote character.
+ * */
+public class CsvTokenizer {
+    /**
+     * Receiver of tokenized `.csv` data
+     * */
+    public interface FieldSink {
+        /**
+         * Called for every field of the current row.
+         *
+         * @param column Column index of the field in the row.
+         * @param value  Unquoted field value.
+         */
+        void field(int column, String value);
+
+        /**
+         * Called after the last field of every non-empty row.
+         */
+        void endRow();
+    }
+
+    // -- Tokenizer states section --
+    private static final int FIELD_START     = 0;
+    private static final int UNQUOTED        = 1;
+    private static final int QUOTED          = 2;
+    private static final int QUOTE_IN_QUOTED = 3;
+
+    private static final char SEPARATOR = ',';
+    private static final char QUOTE     = '"';
+    private static final char BOM       = '\uFEFF';
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FieldSink sink;
+
+    /**
+     * Reusable buffer of the current field
+     * */
+    private final StringBuilder field = new StringBuilder();
+
+    private int     state         = FIELD_START;
+    private int     column        = 0;
+    private boolean skipLineFeed  = false;
+    private boolean atStreamStart = true;
+
+    public CsvTokenizer(FieldSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Tokenizes all the remaining characters of `reader`.
+     * The reader is not closed.
+     *
+     * @param reader Source of `.csv` characters.
+     * @throws IOException In case of reading errors.
+     */
+    public void parse(Reader reader) throws IOException {
+        char[] buffer = new char[BUFFER_SIZE];
+        int    read;
+
+        while ((read = reader.read(buffer, 0, buffer.length)) != -1)
+            feed(buffer, 0, read);
+
+        finish();
+    }
+
+    /**
+     * Tokenizes a chunk of `.csv` characters. Fields and rows
+     * may span several chunks.
+     *
+     * @param chars  Characters to tokenize.
+     * @param offset Offset of the first character.
+     * @param length Amount of characters.
+     */
+    public void feed(char[] chars, int offset, int length) {
+        int end = offset + length;
+
+        // Skipping UTF-8 byte order mark
+        if (atStreamStart && length > 0) {
+            atStreamStart = false;
+
+            if (chars[offset] == BOM) {
+                offset++;
+            }
+        }
+
+        for (int i = offset; i < end; i++) {
+            char c = chars[i];
+
+            // Second half of a "\r\n" line break
+            if (skipLineFeed) {
+                skipLineFeed = false;
+
+                if (c == '\n') {
+                    continue;
+                }
+            }
+
+            switch (state) {
+                case FIELD_START:
+                    if (c == QUOTE) {
+                        state = QUOTED;
+                    } else if (c == SEPARATOR) {
+                        emitField();
+                    } else if (c == '\r' || c == '\n') {
+                        endLine(c);
+                    } else {
+                        field.append(c);
+                        state = UNQUOTED;
+                    }
+                    break;
+                case UNQUOTED:
+                    if (c == SEPARATOR) {
+                        emitField();
+                    } else if (c == '\r' || c == '\n') {
+                        endLine(c);
+                    } else {
+                        field.append(c);
+                    }
+                    break;
+                case QUOTED:
+                    if (c == QUOTE) {
+                        state = QUOTE_IN_QUOTED;
+                    } else {
+                        field.append(c);
+                    }
+                    break;
+                case QUOTE_IN_QUOTED:
+                    if (c == QUOTE) {
+                        // Escaped quote
+                        field.append(QUOTE);
+                        state = QUOTED;
+                    } else if (c == SEPARATOR) {
+                        emitField();
+                    } else if (c == '\r' || c == '\n') {
+                        endLine(c);
+                    } else {
+                        // Stray quote, kept as a literal
+                        field.append(QUOTE).append(c);
+                        state = QUOTED;
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Completes the last row, if the input did not end
+     * with a line break.
+     */
+    public void finish() {
+        if (column > 0 || state != FIELD_START) {
+            emitField();
+            sink.endRow();
+            column = 0;
+        }
+
+        skipLineFeed = false;
+    }
+
+    /**
+     * @return `true`, if the tokenizer is inside of a quoted
+     *         field, i.e. the input so far ended in the middle
+     *         of a quoted value.
+     */
+    public boolean isInsideQuotes() {
+        return state == QUOTED;
+    }
+
+    /**
+     * Quotes `value` for writing into a `.csv` file, doubling
+     * the quote characters inside of it.
+     *
+     * @param value Field value to quote.
+     * @return      Quoted field value.
+     */
+    public static String quote(String value) {
+        return QUOTE + value.replace("\"", "\"\"") + QUOTE;
+    }
+
+    private void emitField() {
+        sink.field(column++, field.toString());
+        field.setLength(0);
+        state = FIELD_START;
+    }
+
+    private void endLine(char c) {
+        // Blank lines are skipped
+        if (column > 0 || state != FIELD_START) {
+            emitField();
+            sink.endRow();
+            column = 0;
+        }
+
+        state        = FIELD_START;
+        skipLineFeed = (c == '\r');
+    }
+
+    /**
+     * `FieldSink` collecting rows into
+     * `LinkedList<LinkedList<String>>`, the in-memory
+     * format of fetched DB data.
+     *
+     * Trailing empty fields of every row are dropped, the
+     * same way `String.split()` drops them.
+     * */
+    public static class RowCollector implements FieldSink {
+        private final LinkedList<LinkedList<String>> rows =
+            new LinkedList<>();
+
+        private LinkedList<String> row = new LinkedList<>();
+
+        @Override
+        public void field(int column, String value) {
+            row.add(value);
+        }
+
+        @Override
+        public void endRow() {
+            while (!row.isEmpty() && row.getLast().isEmpty())
+                row.removeLast();
+
+            rows.add(row);
+            row = new LinkedList<>();
+        }
+
+        public LinkedList<LinkedList<String>> getRows() {
+            return rows;
+        }
+    }
+}
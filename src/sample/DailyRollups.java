@@ -0,0 +1,451 @@
+package sample;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * `DailyRollups` class keeps one nutrient total vector per day of
+ * the Record DB, so day, week and month statistics are read from a
+ * handful of vectors instead of being aggregated from raw history.
+ *
+ * Every vector holds the nutrient amounts actually eaten that day,
+ * i.e. the sum of `nutrient * mass / 100` over the day's entries,
+ * in the units of the Source DB columns.
+ *
+ * Rollups are persisted in a file with `EXTENSION` appended to the
+ * Record DB file name, as an append-only log of per-day deltas.
+ * Every batch is stamped with the Record DB length and prefix
+ * checksum it covers, so `update()` only aggregates lines appended
+ * after the last batch. When the Record DB was rewritten, or the
+ * Source DB changed, all rollups are rebuilt. Entries sealed into
+ * the `RecordDBArchive` are aggregated into the first batch.
+ *
+ * Day totals are kept as fixed layout structs in a
+ * `StructBuffer`, off the Java heap, when created `offHeap`,
+ * with a small index of epoch days to struct indexes on the heap.
+ *
+ * Rollups are not thread safe.
+ * */
+public class DailyRollups {
+    /**
+     * "FDRU" in ASCII
+     * */
+    static final int MAGIC   = 0x46445255;
+    static final int VERSION = 2;
+
+    static final String EXTENSION = ".rollup";
+
+    // -- Log layout section --
+    static final int LOG_HEADER_SIZE   = 3 * Integer.BYTES + Long.BYTES;
+    static final int BATCH_HEADER_SIZE = 2 * Long.BYTES + Integer.BYTES;
+    static final int DELTA_SIZE        = 2 * Integer.BYTES + (1 + SourceDB.NUTRIENT_AMOUNT) * Double.BYTES;
+
+    // -- Day totals struct layout section --
+    static final int ENTRY_AMOUNT_FIELD = 0;
+    static final int MASS_FIELD         = 8;
+    static final int NUTRIENTS_FIELD    = 16;
+    static final int DAY_SIZE           = NUTRIENTS_FIELD + SourceDB.NUTRIENT_AMOUNT * Double.BYTES;
+
+    private static final int DAY_CHUNK_SHIFT = 8;
+
+    /**
+     * Totals of one day
+     * */
+    public static class DayTotals {
+        private final double[] nutrients = new double[SourceDB.NUTRIENT_AMOUNT];
+
+        private int    entryAmount = 0;
+        private double mass        = 0;
+
+        /**
+         * @return Eaten nutrient amounts, indexed by nutrient.
+         *         The array must not be modified.
+         */
+        public double[] getNutrients() {
+            return nutrients;
+        }
+
+        public int getEntryAmount() {
+            return entryAmount;
+        }
+
+        /**
+         * @return Total eaten mass in grams.
+         */
+        public double getMass() {
+            return mass;
+        }
+    }
+
+    private final File     recordDBFile;
+    private final File     rollupFile;
+    private final SourceDB           sourceDB;
+    private final NutrientAggregator aggregator;
+
+    /**
+     * Day totals structs, in the order days were first recorded
+     * */
+    private final StructBuffer dayTotals;
+
+    /**
+     * Indexes of `dayTotals` by epoch day
+     * */
+    private final TreeMap<Integer, Integer> days = new TreeMap<>();
+
+    /**
+     * Record DB prefix covered by `days`
+     * */
+    private final RecordDBPrefix coveredPrefix;
+
+    /**
+     * Whether `days` were loaded from `rollupFile`
+     * */
+    private boolean loaded = false;
+
+    public DailyRollups(File recordDBFile, SourceDB sourceDB) {
+        this(recordDBFile, sourceDB, false);
+    }
+
+    /**
+     * @param recordDBFile Record DB file to roll up.
+     * @param sourceDB     Source DB of the food options.
+     * @param offHeap      `true` to keep the day totals off
+     *                     the Java heap.
+     */
+    public DailyRollups(File recordDBFile, SourceDB sourceDB, boolean offHeap) {
+        this(recordDBFile, sourceDB, offHeap, new RecordDBPrefix.FileState(recordDBFile));
+    }
+
+    /**
+     * @param recordDBFile Record DB file to roll up.
+     * @param sourceDB     Source DB of the food options.
+     * @param offHeap      `true` to keep the day totals off
+     *                     the Java heap.
+     * @param fileState    State of `recordDBFile`, shared with
+     *                     its writer, see `RecordDBPrefix`.
+     */
+    public DailyRollups(
+        File                     recordDBFile,
+        SourceDB                 sourceDB,
+        boolean                  offHeap,
+        RecordDBPrefix.FileState fileState
+    ) {
+        this.recordDBFile  = recordDBFile;
+        this.rollupFile    = new File(recordDBFile.getPath() + EXTENSION);
+        this.sourceDB      = sourceDB;
+        this.aggregator    = new NutrientAggregator(sourceDB);
+        this.dayTotals     = new StructBuffer(DAY_SIZE, DAY_CHUNK_SHIFT, offHeap);
+        this.coveredPrefix = new RecordDBPrefix(recordDBFile, fileState);
+    }
+
+    /**
+     * Brings the rollups up to date with the Record DB file,
+     * aggregating only the lines appended since the last update.
+     *
+     * @return `false`, if there is no Record DB file.
+     * @throws IOException In case of reading or writing errors.
+     */
+    public boolean update() throws IOException {
+        if (!recordDBFile.exists()) {
+            clear();
+            return false;
+        }
+
+        RecordDB.prepare(recordDBFile);
+
+        if (!loaded) {
+            loaded = true;
+
+            try {
+                load();
+            } catch (IOException e) {
+                // Damaged rollups, rebuilding them below
+                clear();
+            }
+        }
+
+        long size = recordDBFile.length();
+
+        // Handling rewritten Record DB files
+        if (!coveredPrefix.isIntact()) {
+            clear();
+        }
+
+        long coveredLength = coveredPrefix.getLength();
+
+        if (coveredLength == 0 && rollupFile.exists()) {
+            Files.delete(rollupFile.toPath());
+        }
+
+        long end = coveredPrefix.findLastLineEnd(size);
+
+        if (end > coveredLength) {
+            TreeMap<Integer, DayTotals> deltas = new TreeMap<>();
+
+            if (coveredLength == 0) {
+                for (RecordEntry entry : RecordDBArchive.open(recordDBFile).readAll())
+                    accumulate(deltas, entry);
+            }
+
+            List<RecordDB.EntryCollector> chunkCollectors =
+                ParallelCsvLoader.load(
+                    recordDBFile,
+                    coveredLength,
+                    end,
+                    chunkIndex -> new RecordDB.EntryCollector()
+                );
+
+            for (RecordDB.EntryCollector ec : chunkCollectors)
+                for (RecordEntry entry : ec.getEntries())
+                    accumulate(deltas, entry);
+
+            /*
+             * Applying the deltas only after the prefix was
+             * extended over their lines, and dropping the
+             * rollups, when that or logging the batch fails, so
+             * the lines are never counted twice and the log
+             * never misses a batch; the next update rebuilds
+             * the rollups and their log
+             * */
+            try {
+                coveredPrefix.advance(end);
+
+                for (Map.Entry<Integer, DayTotals> delta : deltas.entrySet())
+                    addToDay(delta.getKey(), delta.getValue());
+
+                appendBatch(deltas);
+            } catch (IOException | RuntimeException e) {
+                clear();
+                throw e;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @param epochDay Epoch day.
+     * @return         Copy of the totals of the day, or `null`,
+     *                 if nothing was recorded that day.
+     */
+    public DayTotals getDay(int epochDay) {
+        Integer index = days.get(epochDay);
+
+        if (index == null) {
+            return null;
+        }
+
+        DayTotals day = new DayTotals();
+        addDayTo(day, index);
+
+        return day;
+    }
+
+    /**
+     * Sums the totals of all days in `[fromDay, toDay]`, e.g.
+     * of a week or a month.
+     *
+     * @param fromDay First epoch day, inclusive.
+     * @param toDay   Last epoch day, inclusive.
+     * @return        Summed totals, empty, if nothing was
+     *                recorded in the range.
+     */
+    public DayTotals getRange(int fromDay, int toDay) {
+        DayTotals total = new DayTotals();
+
+        for (int index : days.subMap(fromDay, true, toDay, true).values())
+            addDayTo(total, index);
+
+        return total;
+    }
+
+    /**
+     * @return Amount of days with recorded entries.
+     */
+    public int getDayAmount() {
+        return days.size();
+    }
+
+    // -- Day totals struct section --
+    private void addToDay(int epochDay, DayTotals delta) {
+        Integer index = days.get(epochDay);
+
+        if (index == null) {
+            index = dayTotals.add();
+            days.put(epochDay, index);
+        }
+
+        dayTotals.putInt(
+            index,
+            ENTRY_AMOUNT_FIELD,
+            dayTotals.getInt(index, ENTRY_AMOUNT_FIELD) + delta.entryAmount
+        );
+        dayTotals.addDouble(index, MASS_FIELD, delta.mass);
+
+        for (int n = 0; n < SourceDB.NUTRIENT_AMOUNT; n++)
+            dayTotals.addDouble(index, NUTRIENTS_FIELD + n * Double.BYTES, delta.nutrients[n]);
+    }
+
+    private void addDayTo(DayTotals target, int index) {
+        target.entryAmount += dayTotals.getInt(index, ENTRY_AMOUNT_FIELD);
+        target.mass        += dayTotals.getDouble(index, MASS_FIELD);
+
+        for (int n = 0; n < SourceDB.NUTRIENT_AMOUNT; n++)
+            target.nutrients[n] += dayTotals.getDouble(index, NUTRIENTS_FIELD + n * Double.BYTES);
+    }
+
+    private void accumulate(TreeMap<Integer, DayTotals> target, RecordEntry entry) {
+        int row = sourceDB.indexOfId(entry.getFoodId());
+
+        // Skipping food options, that are no longer in the Source DB
+        if (row < 0) {
+            return;
+        }
+
+        DayTotals day = target.computeIfAbsent(
+            entry.getEpochDay(),
+            d -> new DayTotals()
+        );
+
+        aggregator.accumulate(day.nutrients, row, entry.getMass());
+
+        day.entryAmount++;
+        day.mass += entry.getMass();
+    }
+
+    private void clear() {
+        days.clear();
+        dayTotals.clear();
+        coveredPrefix.reset();
+    }
+
+    /**
+     * Reads the rollup log. Batches are applied only while
+     * they match the Source DB. A torn or damaged last batch
+     * is cut off the log, so the next batch is appended right
+     * after the last complete one.
+     */
+    private void load() throws IOException {
+        if (!rollupFile.exists()) {
+            return;
+        }
+
+        // Offset after the last complete batch
+        long completeLength = LOG_HEADER_SIZE;
+
+        try (
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(rollupFile))
+            )
+        ) {
+            if (
+                in.readInt() != MAGIC
+                || in.readInt() != VERSION
+                || in.readInt() != SourceDB.NUTRIENT_AMOUNT
+                || in.readLong() != sourceDB.getFingerprint()
+            ) {
+                return; // Outdated rollups, rebuilding them
+            }
+
+            while (true) {
+                long length;
+                long checksum;
+                int  deltaAmount;
+
+                TreeMap<Integer, DayTotals> deltas = new TreeMap<>();
+
+                try {
+                    length      = in.readLong();
+                    checksum    = in.readLong();
+                    deltaAmount = in.readInt();
+
+                    if (length < 0 || deltaAmount < 0) {
+                        break; // Damaged batch header
+                    }
+
+                    for (int i = 0; i < deltaAmount; i++) {
+                        DayTotals delta = new DayTotals();
+
+                        int day = in.readInt();
+
+                        delta.entryAmount = in.readInt();
+                        delta.mass        = in.readDouble();
+
+                        for (int n = 0; n < SourceDB.NUTRIENT_AMOUNT; n++)
+                            delta.nutrients[n] = in.readDouble();
+
+                        deltas.put(day, delta);
+                    }
+                } catch (EOFException e) {
+                    break; // End of log or torn last batch
+                }
+
+                for (Map.Entry<Integer, DayTotals> delta : deltas.entrySet())
+                    addToDay(delta.getKey(), delta.getValue());
+
+                coveredPrefix.restore(length, checksum);
+                completeLength += BATCH_HEADER_SIZE + (long) deltaAmount * DELTA_SIZE;
+            }
+        }
+
+        if (rollupFile.length() > completeLength) {
+            try (
+                FileChannel channel = FileChannel.open(
+                    rollupFile.toPath(),
+                    StandardOpenOption.WRITE
+                )
+            ) {
+                channel.truncate(completeLength);
+            }
+        }
+    }
+
+    /**
+     * Appends a batch of day deltas to the rollup log,
+     * writing the log header first, if needed.
+     */
+    private void appendBatch(TreeMap<Integer, DayTotals> deltas) throws IOException {
+        boolean rollupFileExists = rollupFile.exists();
+
+        try (
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(
+                    new FileOutputStream(rollupFile, rollupFileExists)
+                )
+            )
+        ) {
+            if (!rollupFileExists) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(SourceDB.NUTRIENT_AMOUNT);
+                out.writeLong(sourceDB.getFingerprint());
+            }
+
+            out.writeLong(coveredPrefix.getLength());
+            out.writeLong(coveredPrefix.getChecksum());
+            out.writeInt(deltas.size());
+
+            for (Map.Entry<Integer, DayTotals> delta : deltas.entrySet()) {
+                out.writeInt(delta.getKey());
+                out.writeInt(delta.getValue().entryAmount);
+                out.writeDouble(delta.getValue().mass);
+
+                for (double value : delta.getValue().nutrients)
+                    out.writeDouble(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,480 @@
+package sample;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * `DiaryEngine` class is the UI free core of the food diary:
+ * loading of the Source DB, food option search, appending of
+ * Record DB entries and queries of records and statistics.
+ *
+ * The engine is thread safe. Source DB data and its indexes are
+ * read-only and are used concurrently. Appends go through one
+ * group committing `RecordDBWriter`; all the other Record DB
+ * state (reader with its record store, date index and rollups) is
+ * guarded by one lock, and every query sees all the preceding
+ * completed appends. Range statistics are computed outside of
+ * the lock.
+ *
+ * Entries, totals and statistics of date ranges are kept in a
+ * `QueryCache`. Completed appends invalidate the results of the
+ * appended days only; the cache is dropped, when the Record DB
+ * file was changed by someone else.
+ *
+ * Range queries include the entries sealed into the
+ * `RecordDBArchive`, decompressing only the overlapping blocks.
+ *
+ * Queries return `null`, when there is no Record DB file yet.
+ *
+ * With `-DoffHeap=true` records and rollups are kept off the
+ * Java heap, see `RecordStore` and `DailyRollups`; direct memory
+ * is limited by `-XX:MaxDirectMemorySize`.
+ * */
+public class DiaryEngine implements AutoCloseable {
+    /**
+     * System property enabling off-heap record and rollup storage
+     * */
+    public static final String OFF_HEAP_PROPERTY = "offHeap";
+
+    // -- Cached views section --
+    static final String ENTRIES_VIEW    = "entries";
+    static final String TOTALS_VIEW     = "totals";
+    static final String STATISTICS_VIEW = "statistics";
+
+    /**
+     * Query of the engine, that may be cached
+     * */
+    private interface Query<V> {
+        V run() throws IOException;
+    }
+
+    private final SourceDB           sourceDB;
+    private final FoodPrefixIndex    foodPrefixIndex;
+    private final FoodNameIndex      foodNameIndex;
+    private final NutrientAggregator nutrientAggregator;
+
+    /**
+     * Typo tolerant search, built on first use
+     * */
+    private volatile FoodSearchEngine foodSearchEngine;
+
+    // -- Record DB section, guarded by `recordDBLock` --
+    private final File   recordDBFile;
+    private final Object recordDBLock = new Object();
+
+    /**
+     * Single writer of the Record DB file, not guarded by
+     * `recordDBLock`
+     * */
+    private final RecordDBWriter recordDBWriter;
+
+    private final RecordDBReader    recordDBReader;
+    private final RecordDBDateIndex recordDBDateIndex;
+    private final DailyRollups      dailyRollups;
+
+    /**
+     * Block index of the sealed history, reopened, when the
+     * archive changed
+     * */
+    private RecordDBArchive recordDBArchive;
+
+    /**
+     * Results of range queries, not guarded by `recordDBLock`
+     * */
+    private final QueryCache queryCache = new QueryCache();
+
+    /**
+     * Engine forcing every appended batch to the storage device.
+     *
+     * @param sourceDB     Loaded Source DB.
+     * @param recordDBFile Record DB file, may not exist yet.
+     */
+    public DiaryEngine(SourceDB sourceDB, File recordDBFile) {
+        this(sourceDB, recordDBFile, RecordDBWriter.FsyncPolicy.everyBatch());
+    }
+
+    /**
+     * @param sourceDB     Loaded Source DB.
+     * @param recordDBFile Record DB file, may not exist yet.
+     * @param fsyncPolicy  Durability of completed appends.
+     */
+    public DiaryEngine(
+        SourceDB                   sourceDB,
+        File                       recordDBFile,
+        RecordDBWriter.FsyncPolicy fsyncPolicy
+    ) {
+        this.sourceDB           = sourceDB;
+        this.foodPrefixIndex    = new FoodPrefixIndex(sourceDB);
+        this.foodNameIndex      = new FoodNameIndex(sourceDB, true);
+        this.nutrientAggregator = new NutrientAggregator(sourceDB);
+
+        boolean offHeap = Boolean.getBoolean(OFF_HEAP_PROPERTY);
+
+        /*
+         * Shared by the writer and all the readers, so only
+         * changes made outside of the engine cause rehashing
+         * of the whole Record DB file
+         * */
+        RecordDBPrefix.FileState fileState = new RecordDBPrefix.FileState(recordDBFile);
+
+        this.recordDBFile      = recordDBFile;
+        this.recordDBWriter    = new RecordDBWriter(recordDBFile, fsyncPolicy, fileState);
+        this.recordDBReader    = new RecordDBReader(recordDBFile, sourceDB, offHeap, fileState);
+        this.recordDBDateIndex = new RecordDBDateIndex(recordDBFile, fileState);
+        this.dailyRollups      = new DailyRollups(recordDBFile, sourceDB, offHeap, fileState);
+    }
+
+    /**
+     * Loads the Source DB from `sourceDBFile` (through its
+     * snapshot) and builds the engine over it.
+     *
+     * @param sourceDBFile Source DB file.
+     * @param recordDBFile Record DB file, may not exist yet.
+     * @return             Engine over the files.
+     * @throws FileNotFoundException If there is no Source DB file.
+     * @throws IOException           In case of reading errors.
+     */
+    public static DiaryEngine open(
+        File sourceDBFile,
+        File recordDBFile
+    ) throws IOException {
+        return open(sourceDBFile, recordDBFile, RecordDBWriter.FsyncPolicy.everyBatch());
+    }
+
+    /**
+     * Loads the Source DB from `sourceDBFile` (through its
+     * snapshot) and builds the engine over it.
+     *
+     * @param sourceDBFile Source DB file.
+     * @param recordDBFile Record DB file, may not exist yet.
+     * @param fsyncPolicy  Durability of completed appends.
+     * @return             Engine over the files.
+     * @throws FileNotFoundException If there is no Source DB file.
+     * @throws IOException           In case of reading errors.
+     */
+    public static DiaryEngine open(
+        File                       sourceDBFile,
+        File                       recordDBFile,
+        RecordDBWriter.FsyncPolicy fsyncPolicy
+    ) throws IOException {
+        if (!sourceDBFile.exists()) {
+            throw new FileNotFoundException(sourceDBFile.getPath());
+        }
+
+        return new DiaryEngine(
+            SourceDBSnapshot.load(sourceDBFile),
+            recordDBFile,
+            fsyncPolicy
+        );
+    }
+
+    /**
+     * Writes and forces all the enqueued appends and stops
+     * the Record DB writer.
+     */
+    @Override
+    public void close() {
+        recordDBWriter.close();
+    }
+
+    public SourceDB getSourceDB() {
+        return sourceDB;
+    }
+
+    public File getRecordDBFile() {
+        return recordDBFile;
+    }
+
+    /**
+     * @return Cache of the range queries, e.g. for its hit
+     *         and miss counts.
+     */
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    // -- Food option search section --
+    /**
+     * @param userText Entered part of a food option name.
+     * @param limit    Maximal amount of suggestions.
+     * @return         Auto-complete suggestions, best first.
+     */
+    public List<String> suggest(String userText, int limit) {
+        return foodPrefixIndex.suggest(userText, limit);
+    }
+
+    /**
+     * @return New auto-complete session, narrowing its
+     *         suggestions while the user keeps typing into
+     *         one text field.
+     */
+    public FoodPrefixIndex.Session newSuggestionSession() {
+        return foodPrefixIndex.newSession();
+    }
+
+    /**
+     * @param name Case and whitespace insensitive food
+     *             option name.
+     * @return     Source DB row of the food option, or `-1`.
+     */
+    public int findFood(String name) {
+        return foodNameIndex.find(name);
+    }
+
+    /**
+     * @param name     Possibly misspelled food option name.
+     * @param maxEdits Maximal amount of typos.
+     * @return         Source DB row of the closest food option
+     *                 name, or `-1`.
+     */
+    public int findClosestFood(String name, int maxEdits) {
+        return getFoodSearchEngine().findClosest(name, maxEdits);
+    }
+
+    /**
+     * @param query Free text query.
+     * @param limit Maximal amount of hits.
+     * @return      Best matching food options, best first.
+     */
+    public List<FoodSearchEngine.Hit> searchFoods(String query, int limit) {
+        return getFoodSearchEngine().search(query, limit);
+    }
+
+    private FoodSearchEngine getFoodSearchEngine() {
+        FoodSearchEngine engine = foodSearchEngine;
+
+        if (engine == null) {
+            synchronized (this) {
+                if (foodSearchEngine == null) {
+                    foodSearchEngine = new FoodSearchEngine(sourceDB);
+                }
+
+                engine = foodSearchEngine;
+            }
+        }
+
+        return engine;
+    }
+
+    // -- Record DB section --
+    /**
+     * Enqueues `entries` for group committed appending to the
+     * Record DB file, creating it, if needed. The date index
+     * and rollups catch up with the file on the next query.
+     *
+     * @param entries Entries to append, not modified afterwards.
+     * @return        Future, completing when the entries are
+     *                durable according to the fsync policy.
+     */
+    public CompletableFuture<Void> appendAsync(List<RecordEntry> entries) {
+        int fromDay = Integer.MAX_VALUE;
+        int toDay   = Integer.MIN_VALUE;
+
+        for (RecordEntry entry : entries) {
+            fromDay = Math.min(fromDay, entry.getEpochDay());
+            toDay   = Math.max(toDay, entry.getEpochDay());
+        }
+
+        int appendedFromDay = fromDay;
+        int appendedToDay   = toDay;
+
+        // Invalidating, even after failures, as a part may be written
+        return recordDBWriter.append(entries).whenComplete((result, error) ->
+            queryCache.invalidate(
+                appendedFromDay,
+                appendedToDay,
+                recordDBFile.length(),
+                recordDBFile.lastModified()
+            )
+        );
+    }
+
+    /**
+     * Appends `entries` to the Record DB file, creating it, if
+     * needed, waits until they are durable and brings the date
+     * index and rollups up to date.
+     *
+     * @param entries Entries to append.
+     * @throws IOException In case of writing errors. Index and
+     *                     rollup errors are not reported, they
+     *                     are rebuilt by the next query.
+     */
+    public void append(List<RecordEntry> entries) throws IOException {
+        try {
+            appendAsync(entries).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+
+        synchronized (recordDBLock) {
+            try {
+                recordDBDateIndex.update();
+                dailyRollups.update();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Reads the entries appended since the previous call and
+     * returns all the records.
+     *
+     * @return Frozen snapshot of all records, or `null`.
+     * @throws IOException In case of reading errors.
+     */
+    public RecordStore getRecords() throws IOException {
+        synchronized (recordDBLock) {
+            return recordDBReader.refresh();
+        }
+    }
+
+    /**
+     * @param fromDay First epoch day, inclusive.
+     * @param toDay   Last epoch day, inclusive.
+     * @return        Read-only entries of the range in file
+     *                order, may contain a few entries of
+     *                neighbouring days, or `null`.
+     * @throws IOException In case of reading errors.
+     */
+    public List<RecordEntry> getEntries(int fromDay, int toDay) throws IOException {
+        return cached(new QueryCache.Key(ENTRIES_VIEW, fromDay, toDay, "entry"), () -> {
+            synchronized (recordDBLock) {
+                if (!recordDBDateIndex.update()) {
+                    return null;
+                }
+
+                List<RecordEntry> entries = getArchive().read(fromDay, toDay);
+                entries.addAll(recordDBDateIndex.read(fromDay, toDay));
+
+                return Collections.unmodifiableList(entries);
+            }
+        });
+    }
+
+    /**
+     * @return Epoch day of the last saved entry, or
+     *         `Integer.MIN_VALUE`, if there are none.
+     * @throws IOException In case of reading errors.
+     */
+    public int getLastRecordedDay() throws IOException {
+        synchronized (recordDBLock) {
+            if (!recordDBDateIndex.update()) {
+                return Integer.MIN_VALUE;
+            }
+
+            int archivedLastDay = getArchive().getLastDay();
+
+            return (recordDBDateIndex.getRowAmount() == 0)
+                ? archivedLastDay
+                : Math.max(archivedLastDay, recordDBDateIndex.getLastDay());
+        }
+    }
+
+    /**
+     * @return Up to date archive of the Record DB, must be
+     *         called with `recordDBLock` held.
+     */
+    private RecordDBArchive getArchive() throws IOException {
+        if (recordDBArchive == null || recordDBArchive.isOutdated()) {
+            recordDBArchive = RecordDBArchive.open(recordDBFile);
+        }
+
+        return recordDBArchive;
+    }
+
+    /**
+     * @param fromDay First epoch day, inclusive.
+     * @param toDay   Last epoch day, inclusive.
+     * @return        Rolled up totals of the range, or `null`.
+     *                The totals must not be modified.
+     * @throws IOException In case of reading errors.
+     */
+    public DailyRollups.DayTotals getTotals(int fromDay, int toDay) throws IOException {
+        return cached(new QueryCache.Key(TOTALS_VIEW, fromDay, toDay, "range"), () -> {
+            synchronized (recordDBLock) {
+                if (!dailyRollups.update()) {
+                    return null;
+                }
+
+                return dailyRollups.getRange(fromDay, toDay);
+            }
+        });
+    }
+
+    /**
+     * @param fromDay First epoch day, inclusive.
+     * @param toDay   Last epoch day, inclusive.
+     * @return        Statistics of the range, or `null`.
+     * @throws IOException In case of reading errors.
+     */
+    public RangeStatistics getStatistics(int fromDay, int toDay) throws IOException {
+        return cached(new QueryCache.Key(STATISTICS_VIEW, fromDay, toDay, "foodGroup"), () -> {
+            List<RecordEntry> entries = getEntries(fromDay, toDay);
+
+            if (entries == null) {
+                return null;
+            }
+
+            return RangeStatistics.compute(nutrientAggregator, entries, fromDay, toDay);
+        });
+    }
+
+    /**
+     * Returns the cached result of `key`, or runs `query` and
+     * caches its result, unless it is `null`.
+     */
+    private <V> V cached(QueryCache.Key key, Query<V> query) throws IOException {
+        queryCache.validate(recordDBFile.length(), recordDBFile.lastModified());
+
+        V result = queryCache.get(key);
+
+        if (result != null) {
+            return result;
+        }
+
+        long version = queryCache.getVersion();
+
+        result = query.run();
+
+        if (result != null) {
+            queryCache.put(key, result, version);
+        }
+
+        return result;
+    }
+
+    // -- Unit conversion section --
+    /**
+     * @param nutrient Nutrient index.
+     * @return         `true`, if the nutrient is a mass.
+     */
+    public boolean isMass(int nutrient) {
+        return nutrientAggregator.isMass(nutrient);
+    }
+
+    /**
+     * Converts nutrient totals in Source DB units into grams,
+     * see `NutrientAggregator.toGrams()`.
+     *
+     * @param totals Nutrient totals in Source DB units.
+     * @param grams  Array to write to, may be `totals`.
+     * @return       `grams`.
+     */
+    public double[] toGrams(double[] totals, double[] grams) {
+        return nutrientAggregator.toGrams(totals, grams);
+    }
+}
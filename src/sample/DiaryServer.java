@@ -0,0 +1,708 @@
+package sample;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * `DiaryServer` class is the headless server mode of the food
+ * diary, an alternative entry point to `Main.main()`. Several
+ * entry terminals and dashboards share one `DiaryEngine`, i.e.
+ * one in-memory Source DB and one Record DB, over HTTP and JSON.
+ *
+ * Endpoints:
+ * - `GET  /api/foods/suggest?q=&limit=`  auto-complete suggestions
+ * - `GET  /api/foods/search?q=&limit=`   typo tolerant food search
+ * - `GET  /api/foods/lookup?name=`       exact or closest food option
+ * - `POST /api/entries`                  entry logging, the body is an
+ *                                        entry object or an array of
+ *                                        them: `{"foodId": 1001, "mass":
+ *                                        100, "date": "2020-01-31",
+ *                                        "time": "12:30:00"}`, `"name"`
+ *                                        may be used instead of `"foodId"`,
+ *                                        date and time default to now
+ * - `GET  /api/entries?from=&to=`        entries of a date range
+ * - `GET  /api/totals?from=&to=`         rolled up nutrient totals
+ * - `GET  /api/statistics?from=&to=`     range statistics
+ * - `GET  /api/cache`                    query cache hit and miss
+ *                                        counts
+ *
+ * Dates are "YYYY-MM-DD"; `to` defaults to the last recorded day
+ * and `from` defaults to `to`. Nutrient values are in Source DB
+ * units, keyed by Source DB column headers. Errors are returned
+ * as `{"error": "..."}` with a 4xx or 5xx status.
+ *
+ * Usage: `java [-Dfsync=batch|never|<ms>] [-DoffHeap=true]
+ * sample.DiaryServer [port] [threads]`, with `SourceDB.csv` and
+ * `RecordDB.csv` in the working directory. Logged entries are
+ * group committed with the `fsync` policy, see
+ * `RecordDBWriter.FsyncPolicy`; `offHeap` keeps records and
+ * rollups off the Java heap.
+ * */
+public class DiaryServer {
+    // -- Defaults section --
+    public static final int DEFAULT_PORT    = 8080;
+    public static final int DEFAULT_THREADS = 32;
+
+    /**
+     * Maximal amount of search results and suggestions
+     * */
+    private static final int MAX_LIMIT = 100;
+
+    private static final int DEFAULT_LIMIT = 15;
+
+    /**
+     * Maximal typo amount of `/api/foods/lookup`, the same
+     * as in the UI
+     * */
+    private static final int MAX_TYPO_EDIT_DISTANCE = 2;
+
+    /**
+     * Maximal request body size in bytes
+     * */
+    private static final int MAX_BODY_SIZE = 1 << 20;
+
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+
+    private final DiaryEngine     engine;
+    private final HttpServer      server;
+    private final ExecutorService executor;
+
+    /**
+     * Endpoints by method, by path. Endpoints sharing a path
+     * are dispatched by method from one server context
+     * */
+    private final Map<String, Map<String, Endpoint>> routes = new HashMap<>();
+
+    /**
+     * Request failure with an HTTP status
+     * */
+    private static class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Handler of one endpoint, writing its JSON response
+     * */
+    private interface Endpoint {
+        void handle(HttpExchange exchange, Map<String, String> query, Json.Writer json)
+            throws IOException;
+    }
+
+    /**
+     * Creates a server over `engine`, bound to `port`; `0`
+     * picks a free port.
+     *
+     * @param engine  Diary engine to serve.
+     * @param port    TCP port.
+     * @param threads Amount of request handling threads.
+     * @throws IOException If the port can not be bound.
+     */
+    public DiaryServer(DiaryEngine engine, int port, int threads) throws IOException {
+        /*
+         * Disabling Nagle's algorithm, the JDK server writes
+         * response headers and body separately, so with it
+         * every keep-alive response would wait for a delayed
+         * ACK of the client (about 40 ms). The property is
+         * read once, before the first server is created
+         * */
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+
+        this.engine = engine;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+
+        /*
+         * Requests are handled on a fixed pool, so a burst of
+         * requests queues up instead of spawning threads
+         * */
+        AtomicInteger threadNumber = new AtomicInteger();
+
+        this.executor = new ThreadPoolExecutor(
+            threads,
+            threads,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(
+                    runnable,
+                    "diary-server-" + threadNumber.incrementAndGet()
+                );
+
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        );
+
+        server.setExecutor(executor);
+
+        route("/api/foods/suggest", "GET",  this::suggest);
+        route("/api/foods/search",  "GET",  this::search);
+        route("/api/foods/lookup",  "GET",  this::lookup);
+        route("/api/entries",       "GET",  this::entries);
+        route("/api/entries",       "POST", this::logEntries);
+        route("/api/totals",        "GET",  this::totals);
+        route("/api/statistics",    "GET",  this::statistics);
+        route("/api/cache",         "GET",  this::cache);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port    = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int threads = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_THREADS;
+
+        DiaryEngine engine = DiaryEngine.open(
+            new File("SourceDB.csv"),
+            new File("RecordDB.csv"),
+            RecordDBWriter.FsyncPolicy.parse(System.getProperty("fsync", "batch"))
+        );
+
+        DiaryServer diaryServer = new DiaryServer(engine, port, threads);
+
+        // Stopping the server and flushing enqueued entries on exit
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            diaryServer.stop();
+            engine.close();
+        }));
+
+        diaryServer.start();
+
+        System.out.println("Food diary server is listening on port " + diaryServer.getPort());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests and waits up to a second
+     * for the running ones.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // -- Routing section --
+    private void route(String path, String method, Endpoint endpoint) {
+        Map<String, Endpoint> methods = routes.get(path);
+
+        if (methods == null) {
+            Map<String, Endpoint> pathMethods = new HashMap<>();
+
+            routes.put(path, pathMethods);
+            server.createContext(path, exchange -> dispatch(exchange, path, pathMethods));
+
+            methods = pathMethods;
+        }
+
+        methods.put(method, endpoint);
+    }
+
+    private void dispatch(
+        HttpExchange          exchange,
+        String                path,
+        Map<String, Endpoint> methods
+    ) throws IOException {
+        StringBuilder response = new StringBuilder(256);
+        int           status   = 200;
+
+        try {
+            // Contexts match by prefix, sub-paths are not served
+            if (!exchange.getRequestURI().getPath().equals(path)) {
+                throw new HttpError(404, "Not found");
+            }
+
+            Endpoint endpoint = methods.get(exchange.getRequestMethod());
+
+            if (endpoint == null) {
+                exchange.getResponseHeaders().set(
+                    "Allow",
+                    String.join(", ", methods.keySet())
+                );
+
+                throw new HttpError(405, "Method not allowed");
+            }
+
+            endpoint.handle(
+                exchange,
+                parseQuery(exchange.getRequestURI().getRawQuery()),
+                new Json.Writer(response)
+            );
+        } catch (HttpError e) {
+            status = e.status;
+            writeError(response, e.getMessage());
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            status = 400;
+            writeError(response, e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+
+            status = 500;
+            writeError(response, "Internal server error");
+        }
+
+        byte[] body = response.toString().getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", JSON_CONTENT_TYPE);
+        exchange.sendResponseHeaders(status, body.length);
+
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private static void writeError(StringBuilder response, String message) {
+        response.setLength(0);
+
+        new Json.Writer(response)
+            .beginObject()
+            .name("error").value(message)
+            .endObject();
+    }
+
+    // -- Food option search section --
+    private void suggest(
+        HttpExchange        exchange,
+        Map<String, String> query,
+        Json.Writer         json
+    ) {
+        json.beginObject().name("suggestions").beginArray();
+
+        for (String suggestion : engine.suggest(required(query, "q"), getLimit(query))) {
+            json.value(suggestion);
+        }
+
+        json.endArray().endObject();
+    }
+
+    private void search(
+        HttpExchange        exchange,
+        Map<String, String> query,
+        Json.Writer         json
+    ) {
+        json.beginObject().name("hits").beginArray();
+
+        for (FoodSearchEngine.Hit hit : engine.searchFoods(required(query, "q"), getLimit(query))) {
+            writeFood(json.beginObject(), hit.getRow())
+                .name("score").value(hit.getScore())
+                .endObject();
+        }
+
+        json.endArray().endObject();
+    }
+
+    private void lookup(
+        HttpExchange        exchange,
+        Map<String, String> query,
+        Json.Writer         json
+    ) {
+        String  name      = required(query, "name");
+        int     row       = engine.findFood(name);
+        boolean corrected = false;
+
+        // Falling back to typo correction
+        if (row == -1) {
+            row       = engine.findClosestFood(name, MAX_TYPO_EDIT_DISTANCE);
+            corrected = true;
+        }
+
+        if (row == -1) {
+            throw new HttpError(404, "No such food option: " + name);
+        }
+
+        writeFood(json.beginObject(), row)
+            .name("corrected").value(corrected)
+            .endObject();
+    }
+
+    private Json.Writer writeFood(Json.Writer json, int row) {
+        SourceDB sourceDB = engine.getSourceDB();
+
+        return json
+            .name("foodId").value(sourceDB.getId(row))
+            .name("name").value(sourceDB.getName(row))
+            .name("group").value(sourceDB.getGroup(row));
+    }
+
+    // -- Record DB section --
+    private void logEntries(
+        HttpExchange        exchange,
+        Map<String, String> query,
+        Json.Writer         json
+    ) throws IOException {
+        Object body;
+
+        try {
+            body = Json.parse(readBody(exchange));
+        } catch (IllegalArgumentException e) {
+            throw new HttpError(400, "Malformed JSON: " + e.getMessage());
+        }
+
+        List<Object> items;
+
+        if (body instanceof List) {
+            @SuppressWarnings("unchecked")
+            List<Object> list = (List<Object>) body;
+            items = list;
+        } else {
+            items = new ArrayList<>();
+            items.add(body);
+        }
+
+        if (items.isEmpty()) {
+            throw new HttpError(400, "No entries");
+        }
+
+        // Validating all the entries before appending any
+        List<RecordEntry> entries = new ArrayList<>(items.size());
+
+        for (Object item : items) {
+            entries.add(toRecordEntry(item));
+        }
+
+        engine.append(entries);
+
+        exchange.getResponseHeaders().set("Location", "/api/entries");
+
+        json.beginObject()
+            .name("appended").value(entries.size())
+            .endObject();
+    }
+
+    private RecordEntry toRecordEntry(Object item) {
+        if (!(item instanceof Map)) {
+            throw new HttpError(400, "Entry must be an object");
+        }
+
+        Map<?, ?> object = (Map<?, ?>) item;
+        SourceDB  sourceDB = engine.getSourceDB();
+        int       row;
+
+        if (object.get("foodId") instanceof Double) {
+            row = sourceDB.indexOfId(toInt(object.get("foodId"), "foodId"));
+        } else if (object.get("name") instanceof String) {
+            row = engine.findFood((String) object.get("name"));
+        } else {
+            throw new HttpError(400, "Entry must have \"foodId\" or \"name\"");
+        }
+
+        if (row == -1) {
+            throw new HttpError(400, "No such food option: " + object);
+        }
+
+        int mass = toInt(object.get("mass"), "mass");
+
+        if (mass <= 0) {
+            throw new HttpError(400, "\"mass\" must be a positive amount of grams");
+        }
+
+        Object date = object.get("date");
+        Object time = object.get("time");
+
+        return new RecordEntry(
+            sourceDB.getId(row),
+            mass,
+            (date instanceof String)
+                ? (int) LocalDate.parse((String) date).toEpochDay()
+                : (int) LocalDate.now().toEpochDay(),
+            (time instanceof String)
+                ? LocalTime.parse((String) time).toSecondOfDay()
+                : LocalTime.now().toSecondOfDay()
+        );
+    }
+
+    private static int toInt(Object value, String name) {
+        if (!(value instanceof Double)
+            || (Double) value != Math.rint((Double) value)
+            || Math.abs((Double) value) > Integer.MAX_VALUE
+        ) {
+            throw new HttpError(400, "\"" + name + "\" must be an integer");
+        }
+
+        return ((Double) value).intValue();
+    }
+
+    private void entries(
+        HttpExchange        exchange,
+        Map<String, String> query,
+        Json.Writer         json
+    ) throws IOException {
+        int[]             range   = getRange(query);
+        List<RecordEntry> entries = (range == null)
+            ? null
+            : engine.getEntries(range[0], range[1]);
+
+        SourceDB sourceDB = engine.getSourceDB();
+
+        writeRange(json.beginObject(), range).name("entries").beginArray();
+
+        if (entries != null) {
+            for (RecordEntry entry : entries) {
+                // Skipping neighbouring days of the date index
+                if (entry.getEpochDay() < range[0] || entry.getEpochDay() > range[1]) {
+                    continue;
+                }
+
+                int row = sourceDB.indexOfId(entry.getFoodId());
+
+                json.beginObject()
+                    .name("foodId").value(entry.getFoodId())
+                    .name("name").value((row == -1) ? null : sourceDB.getName(row))
+                    .name("mass").value(entry.getMass())
+                    .name("date").value(entry.getDate())
+                    .name("time").value(
+                        (entry.getSecondOfDay() == RecordEntry.NO_TIME)
+                            ? null
+                            : LocalTime.ofSecondOfDay(entry.getSecondOfDay()).toString()
+                    )
+                    .endObject();
+            }
+        }
+
+        json.endArray().endObject();
+    }
+
+    private void totals(
+        HttpExchange        exchange,
+        Map<String, String> query,
+        Json.Writer         json
+    ) throws IOException {
+        int[]                 range  = getRange(query);
+        DailyRollups.DayTotals totals = (range == null)
+            ? null
+            : engine.getTotals(range[0], range[1]);
+
+        writeRange(json.beginObject(), range)
+            .name("entries").value((totals == null) ? 0 : totals.getEntryAmount())
+            .name("mass").value((totals == null) ? 0 : totals.getMass());
+
+        writeNutrients(json.name("nutrients"), (totals == null) ? null : totals.getNutrients())
+            .endObject();
+    }
+
+    private void cache(
+        HttpExchange        exchange,
+        Map<String, String> query,
+        Json.Writer         json
+    ) {
+        QueryCache queryCache = engine.getQueryCache();
+
+        json.beginObject()
+            .name("hits").value(queryCache.getHitAmount())
+            .name("misses").value(queryCache.getMissAmount())
+            .name("evictions").value(queryCache.getEvictionAmount())
+            .name("size").value(queryCache.size())
+            .name("capacity").value(queryCache.getCapacity())
+            .name("version").value(queryCache.getVersion())
+            .endObject();
+    }
+
+    private void statistics(
+        HttpExchange        exchange,
+        Map<String, String> query,
+        Json.Writer         json
+    ) throws IOException {
+        int[]           range      = getRange(query);
+        RangeStatistics statistics = (range == null)
+            ? null
+            : engine.getStatistics(range[0], range[1]);
+
+        writeRange(json.beginObject(), range);
+
+        if (statistics == null) {
+            json.name("days").value(0)
+                .name("recordedDays").value(0)
+                .name("entries").value(0)
+                .name("mass").value(0)
+                .endObject();
+            return;
+        }
+
+        json.name("days").value(statistics.getDayAmount())
+            .name("recordedDays").value(statistics.getRecordedDayAmount())
+            .name("entries").value(statistics.getEntryAmount())
+            .name("mass").value(statistics.getMass());
+
+        writeNutrients(json.name("totals"),        statistics.getTotals());
+        writeNutrients(json.name("dailyAverages"), statistics.getDailyAverages());
+        writeNutrients(json.name("dailyMin"),      statistics.getDailyMin());
+        writeNutrients(json.name("dailyMax"),      statistics.getDailyMax());
+
+        json.name("groups").beginArray();
+
+        List<String> groups = engine.getSourceDB().getGroupDictionary();
+
+        for (int code = 0; code < groups.size(); code++) {
+            if (statistics.getGroupEntryAmount(code) == 0) {
+                continue;
+            }
+
+            json.beginObject()
+                .name("group").value(groups.get(code))
+                .name("entries").value(statistics.getGroupEntryAmount(code))
+                .name("mass").value(statistics.getGroupMass(code));
+
+            writeNutrients(json.name("totals"), statistics.getGroupTotals(code))
+                .endObject();
+        }
+
+        json.endArray().endObject();
+    }
+
+    private Json.Writer writeNutrients(Json.Writer json, double[] nutrients) {
+        List<String> headers = engine.getSourceDB().getHeaders();
+
+        json.beginObject();
+
+        for (int n = 0; n < SourceDB.NUTRIENT_AMOUNT; n++) {
+            json.name(headers.get(SourceDB.FIRST_NUTRIENT_COLUMN + n))
+                .value((nutrients == null) ? 0 : nutrients[n]);
+        }
+
+        return json.endObject();
+    }
+
+    private static Json.Writer writeRange(Json.Writer json, int[] range) {
+        return json
+            .name("from").value((range == null) ? null : LocalDate.ofEpochDay(range[0]).toString())
+            .name("to").value((range == null) ? null : LocalDate.ofEpochDay(range[1]).toString());
+    }
+
+    /**
+     * @param query Request query parameters.
+     * @return      First and last epoch day of the requested
+     *              range, or `null`, if no range was given and
+     *              nothing is recorded yet.
+     * @throws IOException In case of reading errors.
+     */
+    private int[] getRange(Map<String, String> query) throws IOException {
+        String from = query.get("from");
+        String to   = query.get("to");
+        int    toDay;
+
+        if (to != null) {
+            toDay = (int) LocalDate.parse(to).toEpochDay();
+        } else if (from != null) {
+            toDay = (int) LocalDate.parse(from).toEpochDay();
+        } else {
+            toDay = engine.getLastRecordedDay();
+
+            if (toDay == Integer.MIN_VALUE) {
+                return null;
+            }
+        }
+
+        int fromDay = (from != null) ? (int) LocalDate.parse(from).toEpochDay() : toDay;
+
+        if (fromDay > toDay) {
+            throw new HttpError(400, "\"from\" is after \"to\"");
+        }
+
+        return new int[] {fromDay, toDay};
+    }
+
+    // -- Request parsing section --
+    private static String required(Map<String, String> query, String name) {
+        String value = query.get(name);
+
+        if (value == null) {
+            throw new HttpError(400, "Missing \"" + name + "\" parameter");
+        }
+
+        return value;
+    }
+
+    private static int getLimit(Map<String, String> query) {
+        String limit = query.get("limit");
+
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+
+        try {
+            return Math.max(1, Math.min(MAX_LIMIT, Integer.parseInt(limit)));
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "\"limit\" must be an integer");
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+
+        try {
+            for (String parameter : rawQuery.split("&")) {
+                int separator = parameter.indexOf('=');
+
+                if (separator == -1) {
+                    query.put(URLDecoder.decode(parameter, "UTF-8"), "");
+                } else {
+                    query.put(
+                        URLDecoder.decode(parameter.substring(0, separator), "UTF-8"),
+                        URLDecoder.decode(parameter.substring(separator + 1), "UTF-8")
+                    );
+                }
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return query;
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body   = new ByteArrayOutputStream();
+        byte[]                buffer = new byte[8192];
+        int                   read;
+
+        try (InputStream input = exchange.getRequestBody()) {
+            while ((read = input.read(buffer)) != -1) {
+                if (body.size() + read > MAX_BODY_SIZE) {
+                    throw new HttpError(413, "Request body is too large");
+                }
+
+                body.write(buffer, 0, read);
+            }
+        }
+
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,67 @@
+package sample;
+
+import java.time.LocalDate;
+
+/**
+ * `FoodEntry` class is an immutable, selected but not yet saved
+ * food option: the shared `FoodOption`, eaten mass and date.
+ *
+ * Table cells are produced on demand in the Record DB data
+ * format, i.e. Source DB columns followed by "Mass (g)" and
+ * "Date", without copying the food option row.
+ * */
+public final class FoodEntry {
+    private final FoodOption foodOption;
+
+    /**
+     * Eaten mass in grams
+     * */
+    private final int mass;
+
+    /**
+     * Entry date as days since 1970-01-01
+     * */
+    private final int epochDay;
+
+    public FoodEntry(FoodOption foodOption, int mass, int epochDay) {
+        this.foodOption = foodOption;
+        this.mass       = mass;
+        this.epochDay   = epochDay;
+    }
+
+    public FoodOption getFoodOption() {
+        return foodOption;
+    }
+
+    public int getMass() {
+        return mass;
+    }
+
+    public int getEpochDay() {
+        return epochDay;
+    }
+
+    /**
+     * @param column Record DB data column index.
+     * @return       Cell value as `String`.
+     */
+    public String getCell(int column) {
+        switch (column) {
+            case RecordStore.MASS_COLUMN:
+                return Integer.toString(mass);
+            case RecordStore.DATE_COLUMN:
+                return LocalDate.ofEpochDay(epochDay).toString();
+            default:
+                return foodOption.getCell(column);
+        }
+    }
+
+    /**
+     * @param secondOfDay Entry time as seconds since midnight,
+     *                    or `RecordEntry.NO_TIME`.
+     * @return            Record DB entry of the food entry.
+     */
+    public RecordEntry toRecordEntry(int secondOfDay) {
+        return new RecordEntry(foodOption.getId(), mass, epochDay, secondOfDay);
+    }
+}
@@ -0,0 +1,100 @@
+package sample;
+
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * `FoodNameIndex` class is a hash index from food option names
+ * to `SourceDB` row indexes, built once after the Source DB is
+ * loaded.
+ *
+ * Exact names are looked up first. When normalization is
+ * enabled, names are also matched case insensitively and with
+ * leading, trailing and repeated whitespace ignored.
+ * */
+public class FoodNameIndex {
+    /**
+     * Exact food name to row index mapping
+     * */
+    private final HashMap<String, Integer> exactIndex;
+
+    /**
+     * Normalized food name to row index mapping, or `null`,
+     * if normalization is disabled
+     * */
+    private final HashMap<String, Integer> normalizedIndex;
+
+    /**
+     * @param sourceDB  Source DB to index.
+     * @param normalize Whether case and whitespace insensitive
+     *                  matching is enabled.
+     */
+    public FoodNameIndex(SourceDB sourceDB, boolean normalize) {
+        int capacity = (int) (sourceDB.size() / 0.75f) + 1;
+
+        exactIndex      = new HashMap<>(capacity);
+        normalizedIndex = normalize ? new HashMap<>(capacity) : null;
+
+        /*
+         * On duplicate names the first row wins, the same
+         * way a linear scan would resolve them
+         * */
+        for (int i = 0; i < sourceDB.size(); i++) {
+            exactIndex.putIfAbsent(sourceDB.getName(i), i);
+
+            if (normalize) {
+                normalizedIndex.putIfAbsent(
+                    normalize(sourceDB.getName(i)),
+                    i
+                );
+            }
+        }
+    }
+
+    /**
+     * Finds the row of the food option named `name`.
+     *
+     * @param name Food option name.
+     * @return     `SourceDB` row index, or `-1`, if no food
+     *             option matches.
+     */
+    public int find(String name) {
+        Integer row = exactIndex.get(name);
+
+        if (row == null && normalizedIndex != null) {
+            row = normalizedIndex.get(normalize(name));
+        }
+
+        return (row != null) ? row : -1;
+    }
+
+    /**
+     * Lower cases `name` and collapses all whitespace runs
+     * into single spaces.
+     *
+     * @param name Name to normalize.
+     * @return     Normalized name.
+     */
+    static String normalize(String name) {
+        StringBuilder sb = new StringBuilder(name.length());
+
+        boolean pendingSpace = false;
+
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                pendingSpace = sb.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    sb.append(' ');
+                    pendingSpace = false;
+                }
+
+                sb.append(c);
+            }
+        }
+
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+}
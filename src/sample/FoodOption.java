@@ -0,0 +1,64 @@
+package sample;
+
+/**
+ * `FoodOption` class is an immutable flyweight of one Source DB
+ * food option row.
+ *
+ * It holds only the row index and reads all the data from the
+ * column oriented `SourceDB`, so selecting a food option never
+ * copies or mutates Source DB data. Instances are shared, see
+ * `SourceDB.getFoodOption()`.
+ * */
+public final class FoodOption {
+    private final SourceDB sourceDB;
+    private final int      row;
+
+    FoodOption(SourceDB sourceDB, int row) {
+        this.sourceDB = sourceDB;
+        this.row      = row;
+    }
+
+    public SourceDB getSourceDB() {
+        return sourceDB;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * @return "Database Number" of the food option.
+     */
+    public int getId() {
+        return sourceDB.getId(row);
+    }
+
+    public String getName() {
+        return sourceDB.getName(row);
+    }
+
+    public String getGroup() {
+        return sourceDB.getGroup(row);
+    }
+
+    /**
+     * @param nutrient Nutrient index.
+     * @return         Nutrient value per 100 g.
+     */
+    public double getNutrient(int nutrient) {
+        return sourceDB.getNutrient(row, nutrient);
+    }
+
+    /**
+     * @param column Source DB column index.
+     * @return       Cell value as written in `SourceDB.csv`.
+     */
+    public String getCell(int column) {
+        return sourceDB.getCell(row, column);
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
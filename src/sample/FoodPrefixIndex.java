@@ -0,0 +1,380 @@
+package sample;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * `FoodPrefixIndex` class is a compact prefix index over food
+ * option names, that backs the auto-complete of
+ * `foodOptionSelectTextField`.
+ *
+ * Names and typed text are compared case insensitively and with
+ * punctuation ignored.
+ *
+ * Every name is indexed by its beginning and by the beginning of
+ * every word in it, so "blue" matches "Cheese, blue". All keys
+ * are kept in one sorted array of `(row, offset)` pairs, which
+ * works as a flattened trie: all keys sharing a prefix form one
+ * contiguous range, found with two binary searches.
+ *
+ * Only the `limit` best matches are returned: names starting
+ * with the typed text first, then shorter names, then Source DB
+ * order.
+ *
+ * The index is immutable and `suggest()` is thread safe without
+ * locking. A `Session` of one text field additionally searches
+ * the next range only inside of the previous one, while the user
+ * keeps typing.
+ * */
+public class FoodPrefixIndex {
+    /**
+     * Original food option names, indexed by row
+     * */
+    private final String[] names;
+
+    /**
+     * Normalized food option names, indexed by row
+     * */
+    private final String[] normalizedNames;
+
+    /**
+     * Rows of the sorted keys
+     * */
+    private final int[] keyRows;
+
+    /**
+     * Offsets of the sorted keys in `normalizedNames`
+     * */
+    private final int[] keyOffsets;
+
+    /**
+     * Auto-complete state of one text field, narrowing the key
+     * range of the previous suggestions, when the typed text
+     * grows. Sessions are thread safe, but meant for a single
+     * user, who types into one field.
+     * */
+    public final class Session {
+        // -- Incremental narrowing state section --
+        private String lastPrefix = "";
+        private int    lastLow    = 0;
+        private int    lastHigh   = 0;
+
+        private Session() {}
+
+        /**
+         * Same as `FoodPrefixIndex.suggest()`, searching only the
+         * previous range, when `userText` extends the text of the
+         * previous call.
+         *
+         * @param userText Text typed by the user.
+         * @param limit    Maximal amount of suggestions.
+         * @return         Suggested food option names, best first.
+         */
+        public synchronized List<String> suggest(String userText, int limit) {
+            String prefix = normalize(userText);
+
+            if (prefix.isEmpty() || limit <= 0) {
+                return new ArrayList<>();
+            }
+
+            // Narrowing the previous range, when the user keeps typing
+            int low  = 0;
+            int high = keyRows.length;
+
+            if (!lastPrefix.isEmpty() && prefix.startsWith(lastPrefix)) {
+                low  = lastLow;
+                high = lastHigh;
+            }
+
+            int rangeLow  = lowerBound(prefix, low, high);
+            int rangeHigh = upperBound(prefix, rangeLow, high);
+
+            lastPrefix = prefix;
+            lastLow    = rangeLow;
+            lastHigh   = rangeHigh;
+
+            return topRows(rangeLow, rangeHigh, limit);
+        }
+    }
+
+    public FoodPrefixIndex(SourceDB sourceDB) {
+        int size = sourceDB.size();
+
+        names           = new String[size];
+        normalizedNames = new String[size];
+
+        int   keyAmount = 0;
+        int[] rows      = new int[size * 4];
+        int[] offsets   = new int[size * 4];
+
+        for (int row = 0; row < size; row++) {
+            names[row]           = sourceDB.getName(row);
+            normalizedNames[row] = normalize(names[row]);
+
+            String name = normalizedNames[row];
+
+            // Key at the beginning of every word
+            for (int i = 0; i < name.length(); i++) {
+                if (i == 0 || name.charAt(i - 1) == ' ') {
+                    if (keyAmount == rows.length) {
+                        rows    = Arrays.copyOf(rows, keyAmount * 2);
+                        offsets = Arrays.copyOf(offsets, keyAmount * 2);
+                    }
+
+                    rows[keyAmount]    = row;
+                    offsets[keyAmount] = i;
+                    keyAmount++;
+                }
+            }
+        }
+
+        // Sorting keys by the name suffixes they point to
+        int[] order = new int[keyAmount];
+
+        for (int i = 0; i < keyAmount; i++)
+            order[i] = i;
+
+        sort(order, new int[keyAmount], 0, keyAmount, rows, offsets);
+
+        keyRows    = new int[keyAmount];
+        keyOffsets = new int[keyAmount];
+
+        for (int i = 0; i < keyAmount; i++) {
+            keyRows[i]    = rows[order[i]];
+            keyOffsets[i] = offsets[order[i]];
+        }
+    }
+
+    /**
+     * @return New auto-complete session, e.g. for one
+     *         text field.
+     */
+    public Session newSession() {
+        return new Session();
+    }
+
+    /**
+     * Returns up to `limit` food option names, that have a word
+     * starting with `userText`.
+     *
+     * @param userText Text typed by the user.
+     * @param limit    Maximal amount of suggestions.
+     * @return         Suggested food option names, best first.
+     */
+    public List<String> suggest(String userText, int limit) {
+        String prefix = normalize(userText);
+
+        if (prefix.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        int rangeLow  = lowerBound(prefix, 0, keyRows.length);
+        int rangeHigh = upperBound(prefix, rangeLow, keyRows.length);
+
+        return topRows(rangeLow, rangeHigh, limit);
+    }
+
+    /**
+     * Selects the `limit` best distinct rows of the key range
+     * with an insertion sort into a bounded array.
+     */
+    private List<String> topRows(int low, int high, int limit) {
+        int[]  best  = new int[limit];
+        long[] rank  = new long[limit];
+        int    count = 0;
+
+        for (int i = low; i < high; i++) {
+            int  row = keyRows[i];
+            long r   = rank(row, keyOffsets[i]);
+
+            if (count == limit && r >= rank[count - 1]) {
+                continue;
+            }
+
+            // Handling several words of one name in the range
+            int existing = -1;
+
+            for (int j = 0; j < count; j++) {
+                if (best[j] == row) {
+                    existing = j;
+                    break;
+                }
+            }
+
+            if (existing >= 0) {
+                if (r >= rank[existing]) {
+                    continue;
+                }
+
+                // Removing the worse entry of the same row
+                System.arraycopy(best, existing + 1, best, existing, count - existing - 1);
+                System.arraycopy(rank, existing + 1, rank, existing, count - existing - 1);
+                count--;
+            }
+
+            int position = (count == limit) ? count - 1 : count++;
+
+            while (position > 0 && rank[position - 1] > r) {
+                best[position] = best[position - 1];
+                rank[position] = rank[position - 1];
+                position--;
+            }
+
+            best[position] = row;
+            rank[position] = r;
+        }
+
+        List<String> suggestions = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++)
+            suggestions.add(names[best[i]]);
+
+        return suggestions;
+    }
+
+    /**
+     * Ranks a match, the lower value the better: whole name
+     * matches go before word matches, then shorter names,
+     * then rows in Source DB order.
+     */
+    private long rank(int row, int offset) {
+        long wordMatch = (offset == 0) ? 0 : 1;
+
+        return (wordMatch << 62)
+            | ((long) normalizedNames[row].length() << 31)
+            | row;
+    }
+
+    /**
+     * Lower cases `name` and replaces every run of
+     * characters, that are not letters or digits, with
+     * a single space, so punctuation does not matter
+     * while typing.
+     *
+     * @param name Name to normalize.
+     * @return     Normalized name.
+     */
+    static String normalize(String name) {
+        StringBuilder sb = new StringBuilder(name.length());
+
+        boolean pendingSpace = false;
+
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace) {
+                    sb.append(' ');
+                    pendingSpace = false;
+                }
+
+                sb.append(Character.toLowerCase(c));
+            } else {
+                pendingSpace = sb.length() > 0;
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Merge sort of key ids in `order[low, high)` by the
+     * name suffixes they point to, without boxing.
+     */
+    private void sort(
+        int[] order,
+        int[] buffer,
+        int   low,
+        int   high,
+        int[] rows,
+        int[] offsets
+    ) {
+        if (high - low < 2) {
+            return;
+        }
+
+        int middle = (low + high) >>> 1;
+
+        sort(order, buffer, low, middle, rows, offsets);
+        sort(order, buffer, middle, high, rows, offsets);
+
+        System.arraycopy(order, low, buffer, low, high - low);
+
+        for (int i = low, l = low, h = middle; i < high; i++) {
+            if (
+                h >= high
+                || (l < middle && compareSuffixes(
+                    normalizedNames[rows[buffer[l]]], offsets[buffer[l]],
+                    normalizedNames[rows[buffer[h]]], offsets[buffer[h]]
+                ) <= 0)
+            ) {
+                order[i] = buffer[l++];
+            } else {
+                order[i] = buffer[h++];
+            }
+        }
+    }
+
+    private int lowerBound(String prefix, int low, int high) {
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (compareToPrefix(middle, prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    private int upperBound(String prefix, int low, int high) {
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (compareToPrefix(middle, prefix) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Compares the key at `index`, cut to the length of
+     * `prefix`, with `prefix`.
+     */
+    private int compareToPrefix(int index, String prefix) {
+        String name   = normalizedNames[keyRows[index]];
+        int    offset = keyOffsets[index];
+        int    length = Math.min(name.length() - offset, prefix.length());
+
+        for (int i = 0; i < length; i++) {
+            int difference = name.charAt(offset + i) - prefix.charAt(i);
+
+            if (difference != 0) {
+                return difference;
+            }
+        }
+
+        return (length < prefix.length()) ? -1 : 0;
+    }
+
+    private static int compareSuffixes(String a, int aOffset, String b, int bOffset) {
+        int length = Math.min(a.length() - aOffset, b.length() - bOffset);
+
+        for (int i = 0; i < length; i++) {
+            int difference = a.charAt(aOffset + i) - b.charAt(bOffset + i);
+
+            if (difference != 0) {
+                return difference;
+            }
+        }
+
+        return (a.length() - aOffset) - (b.length() - bOffset);
+    }
+}
@@ -0,0 +1,357 @@
+package sample;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * `FoodSearchEngine` class is a typo tolerant, in-memory search
+ * over "Food Name" and "Food Group" of all food options.
+ *
+ * Every food option is indexed by the trigrams of its words in
+ * an inverted index. A query is split into trigrams the same
+ * way, and every food option sharing trigrams with it is scored
+ * with BM25, so a query with a typo still shares most trigrams
+ * with the intended name. Candidates can additionally be checked
+ * with a bounded edit distance.
+ * */
+public class FoodSearchEngine {
+    // -- BM25 parameters section --
+    private static final double K1 = 1.2;
+    private static final double B  = 0.75;
+
+    /**
+     * Amount of best BM25 candidates checked with edit
+     * distance in `findClosest()`
+     * */
+    private static final int CLOSEST_CANDIDATE_AMOUNT = 32;
+
+    /**
+     * Single search result
+     * */
+    public static class Hit {
+        private final int    row;
+        private final double score;
+
+        Hit(int row, double score) {
+            this.row   = row;
+            this.score = score;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * Posting list of one trigram: food option rows in
+     * ascending order and the trigram frequency in each
+     * */
+    private static class Postings {
+        private int[]   rows        = new int[4];
+        private short[] frequencies = new short[4];
+        private int     size        = 0;
+        private double  idf;
+
+        private void add(int row) {
+            if (size > 0 && rows[size - 1] == row) {
+                frequencies[size - 1]++;
+                return;
+            }
+
+            if (size == rows.length) {
+                rows        = Arrays.copyOf(rows, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+
+            rows[size]        = row;
+            frequencies[size] = 1;
+            size++;
+        }
+    }
+
+    /**
+     * Normalized food option names, indexed by row
+     * */
+    private final String[] normalizedNames;
+
+    /**
+     * Trigram to postings mapping
+     * */
+    private final HashMap<Long, Postings> index = new HashMap<>();
+
+    /**
+     * Amount of trigrams in every food option document
+     * */
+    private final int[] documentLengths;
+
+    private final double averageDocumentLength;
+
+    public FoodSearchEngine(SourceDB sourceDB) {
+        int size = sourceDB.size();
+
+        normalizedNames = new String[size];
+        documentLengths = new int[size];
+
+        long totalLength = 0;
+
+        for (int row = 0; row < size; row++) {
+            normalizedNames[row] = FoodPrefixIndex.normalize(sourceDB.getName(row));
+
+            String document =
+                normalizedNames[row]
+                + ' '
+                + FoodPrefixIndex.normalize(sourceDB.getGroup(row));
+
+            for (long trigram : trigrams(document)) {
+                index
+                    .computeIfAbsent(trigram, t -> new Postings())
+                    .add(row);
+
+                documentLengths[row]++;
+            }
+
+            totalLength += documentLengths[row];
+        }
+
+        averageDocumentLength = Math.max(1.0, (double) totalLength / Math.max(size, 1));
+
+        for (Postings postings : index.values())
+            postings.idf = Math.log(
+                1 + (size - postings.size + 0.5) / (postings.size + 0.5)
+            );
+    }
+
+    /**
+     * Searches food options by `query`, tolerating typos.
+     *
+     * @param query Free text query.
+     * @param limit Maximal amount of results.
+     * @return      Results ordered by descending score.
+     */
+    public List<Hit> search(String query, int limit) {
+        long[] queryTrigrams = trigrams(FoodPrefixIndex.normalize(query));
+
+        if (queryTrigrams.length == 0 || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        Arrays.sort(queryTrigrams);
+
+        double[] scores        = new double[normalizedNames.length];
+        int[]    touched       = new int[normalizedNames.length];
+        int      touchedAmount = 0;
+
+        for (int i = 0; i < queryTrigrams.length; i++) {
+            // Repeated query trigrams are counted once
+            if (i > 0 && queryTrigrams[i] == queryTrigrams[i - 1]) {
+                continue;
+            }
+
+            Postings postings = index.get(queryTrigrams[i]);
+
+            if (postings == null) {
+                continue;
+            }
+
+            for (int p = 0; p < postings.size; p++) {
+                int    row       = postings.rows[p];
+                double frequency = postings.frequencies[p];
+
+                if (scores[row] == 0) {
+                    touched[touchedAmount++] = row;
+                }
+
+                scores[row] += postings.idf
+                    * frequency * (K1 + 1)
+                    / (frequency + K1 * (1 - B + B * documentLengths[row] / averageDocumentLength));
+            }
+        }
+
+        return topHits(scores, touched, touchedAmount, limit);
+    }
+
+    /**
+     * Finds the food option with the name closest to `name`,
+     * that is at most `maxEdits` edits away from it.
+     *
+     * @param name     Food option name with possible typos.
+     * @param maxEdits Maximal allowed edit distance.
+     * @return         `SourceDB` row index, or `-1`, if no name
+     *                 is close enough.
+     */
+    public int findClosest(String name, int maxEdits) {
+        String normalizedName = FoodPrefixIndex.normalize(name);
+
+        int bestRow      = -1;
+        int bestDistance = maxEdits + 1;
+
+        for (Hit hit : search(name, CLOSEST_CANDIDATE_AMOUNT)) {
+            int distance = editDistance(
+                normalizedName,
+                normalizedNames[hit.getRow()],
+                bestDistance - 1
+            );
+
+            // Hits are ordered by score, so ties keep the better score
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                bestRow      = hit.getRow();
+
+                if (bestDistance == 0) {
+                    break;
+                }
+            }
+        }
+
+        return bestRow;
+    }
+
+    /**
+     * Levenshtein distance between `a` and `b`, computed only
+     * within a band of `max` around the diagonal.
+     *
+     * @param max Non-negative distance bound.
+     * @return    Edit distance, or `max + 1`, if it is larger
+     *            than `max`.
+     */
+    static int editDistance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+
+        int   infinity = max + 1;
+        int[] previous = new int[b.length() + 1];
+        int[] current  = new int[b.length() + 1];
+
+        for (int j = 0; j <= b.length(); j++)
+            previous[j] = Math.min(j, infinity);
+
+        for (int i = 1; i <= a.length(); i++) {
+            int from = Math.max(1, i - max);
+            int to   = Math.min(b.length(), i + max);
+
+            current[0] = Math.min(i, infinity);
+
+            if (from > 1) {
+                current[from - 1] = infinity;
+            }
+
+            int rowMinimum = current[0];
+
+            for (int j = from; j <= to; j++) {
+                int cost = (a.charAt(i - 1) == b.charAt(j - 1)) ? 0 : 1;
+
+                int value = Math.min(
+                    previous[j - 1] + cost,
+                    Math.min(previous[j] + 1, current[j - 1] + 1)
+                );
+
+                current[j] = Math.min(value, infinity);
+                rowMinimum = Math.min(rowMinimum, current[j]);
+            }
+
+            if (to < b.length()) {
+                current[to + 1] = infinity;
+            }
+
+            // No cell of the band can get below the bound anymore
+            if (rowMinimum > max) {
+                return infinity;
+            }
+
+            int[] swap = previous;
+            previous   = current;
+            current    = swap;
+        }
+
+        return previous[b.length()];
+    }
+
+    /**
+     * Splits normalized `text` into trigrams of its words,
+     * padded with spaces, e.g. " blue " gives " bl", "blu",
+     * "lue" and "ue ". Every trigram is packed into a `long`.
+     */
+    static long[] trigrams(String text) {
+        long[] result = new long[text.length() + 2];
+        int    amount = 0;
+
+        int wordStart = 0;
+
+        for (int i = 0; i <= text.length(); i++) {
+            if (i == text.length() || text.charAt(i) == ' ') {
+                if (i > wordStart) {
+                    String word = ' ' + text.substring(wordStart, i) + ' ';
+
+                    for (int j = 0; j + 3 <= word.length(); j++) {
+                        if (amount == result.length) {
+                            result = Arrays.copyOf(result, amount * 2);
+                        }
+
+                        result[amount++] =
+                            ((long) word.charAt(j) << 32)
+                            | ((long) word.charAt(j + 1) << 16)
+                            | word.charAt(j + 2);
+                    }
+                }
+
+                wordStart = i + 1;
+            }
+        }
+
+        return Arrays.copyOf(result, amount);
+    }
+
+    private static List<Hit> topHits(
+        double[] scores,
+        int[]    touched,
+        int      touchedAmount,
+        int      limit
+    ) {
+        int[] best  = new int[limit];
+        int   count = 0;
+
+        /*
+         * Insertion into a bounded array, most rows are
+         * rejected by a single comparison with the worst
+         * kept row
+         * */
+        for (int i = 0; i < touchedAmount; i++) {
+            int row = touched[i];
+
+            if (count == limit && !isBetter(scores, row, best[count - 1])) {
+                continue;
+            }
+
+            int position = (count == limit) ? count - 1 : count++;
+
+            while (position > 0 && isBetter(scores, row, best[position - 1])) {
+                best[position] = best[position - 1];
+                position--;
+            }
+
+            best[position] = row;
+        }
+
+        List<Hit> hits = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++)
+            hits.add(new Hit(best[i], scores[best[i]]));
+
+        return hits;
+    }
+
+    /**
+     * Orders rows by descending score, then by row index.
+     */
+    private static boolean isBetter(double[] scores, int row, int other) {
+        return scores[row] > scores[other]
+            || (scores[row] == scores[other] && row < other);
+    }
+}
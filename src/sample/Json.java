@@ -0,0 +1,441 @@
+package sample;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * `Json` class is a minimal, dependency free JSON reader and
+ * writer for the server mode.
+ *
+ * `parse()` maps JSON objects to `Map<String, Object>`, arrays to
+ * `List<Object>`, numbers to `Double`, strings to `String`,
+ * booleans to `Boolean` and `null` to `null`. `Writer` emits
+ * JSON text straight into a `StringBuilder`, placing separators
+ * by itself.
+ *
+ * Objects and arrays may be nested at most `MAX_DEPTH` levels
+ * deep, so hostile input is rejected as invalid, instead of
+ * overflowing the stack of the recursive reader.
+ * */
+public final class Json {
+    /**
+     * Maximal nesting depth of objects and arrays
+     * */
+    public static final int MAX_DEPTH = 64;
+
+    private final String text;
+    private int          position = 0;
+
+    /**
+     * Nesting depth of the object or array being read
+     * */
+    private int depth = 0;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    /**
+     * @param text JSON text.
+     * @return     Parsed value.
+     * @throws IllegalArgumentException If `text` is not
+     *                                  valid JSON, or is
+     *                                  nested deeper than
+     *                                  `MAX_DEPTH`.
+     */
+    public static Object parse(String text) {
+        Json parser = new Json(text);
+
+        parser.skipWhitespace();
+        Object value = parser.readValue();
+        parser.skipWhitespace();
+
+        if (parser.position != text.length()) {
+            throw parser.error("Unexpected trailing characters");
+        }
+
+        return value;
+    }
+
+    // -- Reading section --
+    private Object readValue() {
+        if (position >= text.length()) {
+            throw error("Unexpected end of input");
+        }
+
+        char c = text.charAt(position);
+
+        switch (c) {
+            case '{':
+                enter();
+                Map<String, Object> object = readObject();
+                depth--;
+
+                return object;
+            case '[':
+                enter();
+                List<Object> array = readArray();
+                depth--;
+
+                return array;
+            case '"':
+                return readString();
+            case 't':
+                return readLiteral("true", Boolean.TRUE);
+            case 'f':
+                return readLiteral("false", Boolean.FALSE);
+            case 'n':
+                return readLiteral("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return readNumber();
+                }
+
+                throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    private Map<String, Object> readObject() {
+        Map<String, Object> object = new LinkedHashMap<>();
+
+        position++; // '{'
+        skipWhitespace();
+
+        if (consume('}')) {
+            return object;
+        }
+
+        do {
+            skipWhitespace();
+
+            if (position >= text.length() || text.charAt(position) != '"') {
+                throw error("Expected object key");
+            }
+
+            String key = readString();
+
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+
+            object.put(key, readValue());
+
+            skipWhitespace();
+        } while (consume(','));
+
+        expect('}');
+
+        return object;
+    }
+
+    private List<Object> readArray() {
+        List<Object> array = new ArrayList<>();
+
+        position++; // '['
+        skipWhitespace();
+
+        if (consume(']')) {
+            return array;
+        }
+
+        do {
+            skipWhitespace();
+            array.add(readValue());
+            skipWhitespace();
+        } while (consume(','));
+
+        expect(']');
+
+        return array;
+    }
+
+    private String readString() {
+        StringBuilder value = new StringBuilder();
+
+        position++; // '"'
+
+        while (true) {
+            if (position >= text.length()) {
+                throw error("Unterminated string");
+            }
+
+            char c = text.charAt(position++);
+
+            if (c == '"') {
+                return value.toString();
+            } else if (c == '\\') {
+                if (position >= text.length()) {
+                    throw error("Unterminated string");
+                }
+
+                char escaped = text.charAt(position++);
+
+                switch (escaped) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        value.append(escaped);
+                        break;
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > text.length()) {
+                            throw error("Invalid unicode escape");
+                        }
+
+                        try {
+                            value.append((char) Integer.parseInt(
+                                text.substring(position, position + 4), 16
+                            ));
+                        } catch (NumberFormatException e) {
+                            throw error("Invalid unicode escape");
+                        }
+
+                        position += 4;
+                        break;
+                    default:
+                        throw error("Invalid escape '\\" + escaped + "'");
+                }
+            } else if (c < 0x20) {
+                throw error("Control character in string");
+            } else {
+                value.append(c);
+            }
+        }
+    }
+
+    private Double readNumber() {
+        int start = position;
+
+        while (position < text.length()) {
+            char c = text.charAt(position);
+
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                position++;
+            } else {
+                break;
+            }
+        }
+
+        try {
+            return Double.valueOf(text.substring(start, position));
+        } catch (NumberFormatException e) {
+            throw error("Invalid number");
+        }
+    }
+
+    private Object readLiteral(String literal, Object value) {
+        if (!text.startsWith(literal, position)) {
+            throw error("Unexpected literal");
+        }
+
+        position += literal.length();
+
+        return value;
+    }
+
+    private void enter() {
+        if (++depth > MAX_DEPTH) {
+            throw error("Nesting deeper than " + MAX_DEPTH + " levels");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (position < text.length()) {
+            char c = text.charAt(position);
+
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                position++;
+            } else {
+                break;
+            }
+        }
+    }
+
+    private boolean consume(char c) {
+        if (position < text.length() && text.charAt(position) == c) {
+            position++;
+            return true;
+        }
+
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!consume(c)) {
+            throw error("Expected '" + c + "'");
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + position);
+    }
+
+    // -- Writing section --
+    /**
+     * Appends `value` to `target` as a quoted and escaped
+     * JSON string.
+     *
+     * @param target Builder to append to.
+     * @param value  String value.
+     */
+    public static void quote(StringBuilder target, String value) {
+        target.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            switch (c) {
+                case '"':
+                    target.append("\\\"");
+                    break;
+                case '\\':
+                    target.append("\\\\");
+                    break;
+                case '\n':
+                    target.append("\\n");
+                    break;
+                case '\r':
+                    target.append("\\r");
+                    break;
+                case '\t':
+                    target.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        target.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        target.append(c);
+                    }
+            }
+        }
+
+        target.append('"');
+    }
+
+    /**
+     * Streaming JSON writer. Keys are written with `name()`,
+     * values with `value()`; commas are placed automatically.
+     * */
+    public static class Writer {
+        private final StringBuilder target;
+
+        /**
+         * `true`, if the next value or key of the current
+         * object or array is its first one
+         * */
+        private boolean first = true;
+
+        /**
+         * `true`, if the next value follows a key
+         * */
+        private boolean afterName = false;
+
+        public Writer(StringBuilder target) {
+            this.target = target;
+        }
+
+        public Writer beginObject() {
+            separate();
+            target.append('{');
+            first = true;
+            return this;
+        }
+
+        public Writer endObject() {
+            target.append('}');
+            first = false;
+            return this;
+        }
+
+        public Writer beginArray() {
+            separate();
+            target.append('[');
+            first = true;
+            return this;
+        }
+
+        public Writer endArray() {
+            target.append(']');
+            first = false;
+            return this;
+        }
+
+        public Writer name(String name) {
+            separate();
+            quote(target, name);
+            target.append(':');
+            afterName = true;
+            return this;
+        }
+
+        public Writer value(String value) {
+            separate();
+
+            if (value == null) {
+                target.append("null");
+            } else {
+                quote(target, value);
+            }
+
+            first = false;
+            return this;
+        }
+
+        public Writer value(long value) {
+            separate();
+            target.append(value);
+            first = false;
+            return this;
+        }
+
+        /**
+         * Writes `value`, or `null` for `NaN` and infinities,
+         * which JSON can not represent.
+         */
+        public Writer value(double value) {
+            separate();
+
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                target.append("null");
+            } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+                target.append((long) value);
+            } else {
+                target.append(value);
+            }
+
+            first = false;
+            return this;
+        }
+
+        public Writer value(boolean value) {
+            separate();
+            target.append(value);
+            first = false;
+            return this;
+        }
+
+        private void separate() {
+            if (afterName) {
+                afterName = false;
+            } else if (!first) {
+                target.append(',');
+            }
+        }
+    }
+}
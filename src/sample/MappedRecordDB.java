@@ -0,0 +1,430 @@
+package sample;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * `MappedRecordDB` class is a binary alternative to the Record DB
+ * `.csv` file: fixed width records in a memory-mapped file, so the
+ * N-th entry is read at a computed offset, without parsing
+ * anything before it.
+ *
+ * File format (big-endian):
+ *  Header  - magic, version, record size, field amount, schema
+ *            hash of `RecordDB.HEADER` and the record amount.
+ *  Records - food id, mass, epoch day and second of day, as
+ *            four `int`s per record.
+ *
+ * Appends write the records into the mapping and force them to
+ * the storage device, before the new record amount is written
+ * into the header and forced, so records of a torn append are
+ * ignored, even after a crash. The mapping grows in steps past
+ * the records, the file is extended with it; the header record
+ * amount is authoritative. Outgrown mappings are released by the
+ * garbage collector.
+ *
+ * `importCsv()` and `exportCsv()` convert between the formats
+ * losslessly. The class is not thread safe.
+ * */
+public class MappedRecordDB implements AutoCloseable {
+    /**
+     * "FDRB" in ASCII
+     * */
+    static final int MAGIC   = 0x46445242;
+    static final int VERSION = 1;
+
+    /**
+     * Extension replacing `.csv` of the Record DB file name
+     * */
+    public static final String EXTENSION = ".bin";
+
+    // -- Header layout section --
+    static final int MAGIC_OFFSET        = 0;
+    static final int VERSION_OFFSET      = 4;
+    static final int RECORD_SIZE_OFFSET  = 8;
+    static final int FIELD_AMOUNT_OFFSET = 12;
+    static final int SCHEMA_OFFSET       = 16;
+    static final int SIZE_OFFSET         = 24;
+    static final int HEADER_SIZE         = 32;
+
+    // -- Record layout section --
+    static final int FOOD_ID_FIELD       = 0;
+    static final int MASS_FIELD          = 4;
+    static final int EPOCH_DAY_FIELD     = 8;
+    static final int SECOND_OF_DAY_FIELD = 12;
+    static final int FIELD_AMOUNT        = 4;
+    static final int RECORD_SIZE         = 16;
+
+    static final int SCHEMA_HASH = RecordDB.HEADER.hashCode();
+
+    /**
+     * Records the mapping is grown by at least
+     * */
+    private static final int MIN_GROWTH = 1 << 16;
+
+    /**
+     * Records a single mapping can hold
+     * */
+    static final int MAX_SIZE = (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE;
+
+    private final File        file;
+    private final FileChannel channel;
+
+    private MappedByteBuffer mapping;
+    private int              capacity;
+    private int              size;
+
+    private MappedRecordDB(File file, FileChannel channel) {
+        this.file    = file;
+        this.channel = channel;
+    }
+
+    /**
+     * Opens `file`, creating an empty one, if it does not exist.
+     *
+     * @param file Binary Record DB file.
+     * @return     Opened file.
+     * @throws IOException If `file` is not a binary Record DB
+     *                     file of this version, or in case of
+     *                     reading errors.
+     */
+    public static MappedRecordDB open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(
+            file.toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        );
+
+        MappedRecordDB recordDB = new MappedRecordDB(file, channel);
+
+        try {
+            recordDB.init();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        return recordDB;
+    }
+
+    private void init() throws IOException {
+        long fileSize = channel.size();
+
+        if (fileSize == 0) {
+            map(0);
+
+            mapping.putInt(MAGIC_OFFSET, MAGIC);
+            mapping.putInt(VERSION_OFFSET, VERSION);
+            mapping.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+            mapping.putInt(FIELD_AMOUNT_OFFSET, FIELD_AMOUNT);
+            mapping.putInt(SCHEMA_OFFSET, SCHEMA_HASH);
+            mapping.putLong(SIZE_OFFSET, 0);
+
+            return;
+        }
+
+        if (fileSize < HEADER_SIZE) {
+            throw new IOException("Truncated binary Record DB file: " + file);
+        }
+
+        map((int) Math.min((fileSize - HEADER_SIZE) / RECORD_SIZE, MAX_SIZE));
+
+        if (
+            mapping.getInt(MAGIC_OFFSET) != MAGIC
+            || mapping.getInt(VERSION_OFFSET) != VERSION
+            || mapping.getInt(RECORD_SIZE_OFFSET) != RECORD_SIZE
+            || mapping.getInt(FIELD_AMOUNT_OFFSET) != FIELD_AMOUNT
+            || mapping.getInt(SCHEMA_OFFSET) != SCHEMA_HASH
+        ) {
+            throw new IOException("Not a binary Record DB file of version " + VERSION + ": " + file);
+        }
+
+        long recordAmount = mapping.getLong(SIZE_OFFSET);
+
+        if (recordAmount < 0 || recordAmount > capacity) {
+            throw new IOException("Damaged binary Record DB header: " + file);
+        }
+
+        size = (int) recordAmount;
+    }
+
+    /**
+     * Maps the header and `recordCapacity` records,
+     * extending the file, if needed.
+     */
+    private void map(int recordCapacity) throws IOException {
+        mapping  = channel.map(
+            FileChannel.MapMode.READ_WRITE,
+            0,
+            HEADER_SIZE + (long) recordCapacity * RECORD_SIZE
+        );
+        capacity = recordCapacity;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    // -- Random access section --
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index Record index.
+     * @return      "Database Number" of the food option.
+     */
+    public int getFoodId(int index) {
+        return mapping.getInt(offset(index) + FOOD_ID_FIELD);
+    }
+
+    public int getMass(int index) {
+        return mapping.getInt(offset(index) + MASS_FIELD);
+    }
+
+    public int getEpochDay(int index) {
+        return mapping.getInt(offset(index) + EPOCH_DAY_FIELD);
+    }
+
+    public int getSecondOfDay(int index) {
+        return mapping.getInt(offset(index) + SECOND_OF_DAY_FIELD);
+    }
+
+    public RecordEntry getEntry(int index) {
+        int offset = offset(index);
+
+        return new RecordEntry(
+            mapping.getInt(offset + FOOD_ID_FIELD),
+            mapping.getInt(offset + MASS_FIELD),
+            mapping.getInt(offset + EPOCH_DAY_FIELD),
+            mapping.getInt(offset + SECOND_OF_DAY_FIELD)
+        );
+    }
+
+    /**
+     * @param from First record index, inclusive.
+     * @param to   Last record index, exclusive.
+     * @return     New list of the entries of `[from, to)`.
+     */
+    public List<RecordEntry> read(int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException(
+                "Range: [" + from + ", " + to + "), size: " + size
+            );
+        }
+
+        List<RecordEntry> entries = new ArrayList<>(to - from);
+
+        for (int i = from; i < to; i++)
+            entries.add(getEntry(i));
+
+        return entries;
+    }
+
+    /**
+     * Appends records `[from, size())` to `store`.
+     */
+    public void appendTo(RecordStore store, int from) {
+        for (int i = from; i < size; i++) {
+            int offset = offset(i);
+
+            store.append(
+                mapping.getInt(offset + FOOD_ID_FIELD),
+                mapping.getInt(offset + MASS_FIELD),
+                mapping.getInt(offset + EPOCH_DAY_FIELD),
+                mapping.getInt(offset + SECOND_OF_DAY_FIELD)
+            );
+        }
+    }
+
+    private int offset(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+    // -- Appending section --
+    /**
+     * Appends `entries`, extending the mapping, if needed.
+     * The records are durable, when the call returns.
+     *
+     * @param entries Entries to append.
+     * @throws IOException In case of mapping errors, or if the
+     *                     file would exceed `MAX_SIZE` records.
+     */
+    public void append(List<RecordEntry> entries) throws IOException {
+        if (entries.size() > MAX_SIZE - size) {
+            throw new IOException("Binary Record DB file is full: " + file);
+        }
+
+        int newSize = size + entries.size();
+
+        if (newSize > capacity) {
+            map((int) Math.min(
+                MAX_SIZE,
+                Math.max((long) newSize, (long) capacity + Math.max(capacity, MIN_GROWTH))
+            ));
+        }
+
+        int offset = HEADER_SIZE + size * RECORD_SIZE;
+
+        for (RecordEntry entry : entries) {
+            mapping.putInt(offset + FOOD_ID_FIELD, entry.getFoodId());
+            mapping.putInt(offset + MASS_FIELD, entry.getMass());
+            mapping.putInt(offset + EPOCH_DAY_FIELD, entry.getEpochDay());
+            mapping.putInt(offset + SECOND_OF_DAY_FIELD, entry.getSecondOfDay());
+            offset += RECORD_SIZE;
+        }
+
+        // Publishing the records only after they are durable
+        mapping.force();
+        mapping.putLong(SIZE_OFFSET, newSize);
+        mapping.force();
+
+        size = newSize;
+    }
+
+    /**
+     * Forces the mapped records and header to the
+     * storage device.
+     */
+    public void force() {
+        mapping.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    // -- CSV conversion section --
+    /**
+     * Converts the whole history of a Record DB, its archived
+     * entries and its `.csv` file, see `RecordDB.readAll()`, into
+     * a new binary file, replacing `binaryFile` atomically.
+     *
+     * @param csvFile    Record DB `.csv` file, migrated to the
+     *                   current format first, if needed.
+     * @param binaryFile Binary Record DB file to write.
+     * @return           Amount of converted entries.
+     * @throws IOException In case of reading or writing errors.
+     */
+    public static int importCsv(File csvFile, File binaryFile) throws IOException {
+        List<RecordEntry> entries = RecordDB.readAll(csvFile);
+
+        if (entries == null) {
+            throw new IOException("No Record DB file: " + csvFile);
+        }
+
+        File tempFile = new File(binaryFile.getPath() + ".tmp");
+
+        Files.deleteIfExists(tempFile.toPath());
+
+        try (MappedRecordDB recordDB = open(tempFile)) {
+            recordDB.append(entries);
+        }
+
+        Files.move(
+            tempFile.toPath(),
+            binaryFile.toPath(),
+            StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING
+        );
+
+        return entries.size();
+    }
+
+    /**
+     * Converts a binary Record DB file into a new `.csv` file,
+     * in the format written by `RecordDB.append()`, replacing
+     * `csvFile` atomically. The `.csv` file holds the whole
+     * history, so it must not have a `RecordDBArchive`.
+     *
+     * @param binaryFile Binary Record DB file.
+     * @param csvFile    Record DB `.csv` file to write.
+     * @return           Amount of converted entries.
+     * @throws IOException In case of reading or writing errors.
+     */
+    public static int exportCsv(File binaryFile, File csvFile) throws IOException {
+        if (!binaryFile.exists()) {
+            throw new IOException("No binary Record DB file: " + binaryFile);
+        }
+
+        // Archived entries would be counted twice
+        if (RecordDBArchive.getArchiveFile(csvFile).exists()) {
+            throw new IOException("Record DB file has an archive: " + csvFile);
+        }
+
+        File tempFile = new File(csvFile.getPath() + ".tmp");
+        int  size;
+
+        try (
+            MappedRecordDB recordDB = open(binaryFile);
+            Writer writer = new BufferedWriter(
+                new OutputStreamWriter(
+                    new FileOutputStream(tempFile),
+                    StandardCharsets.UTF_8
+                ),
+                1 << 16
+            )
+        ) {
+            size = recordDB.size();
+
+            writer.write(RecordDB.HEADER);
+            writer.write("\r\n");
+
+            for (int i = 0; i < size; i++) {
+                writer.write(recordDB.getEntry(i).toString());
+                writer.write("\r\n");
+            }
+        }
+
+        Files.move(
+            tempFile.toPath(),
+            csvFile.toPath(),
+            StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING
+        );
+
+        return size;
+    }
+
+    /**
+     * Usage: `java sample.MappedRecordDB import <.csv file>
+     * <binary file>` or `java sample.MappedRecordDB export
+     * <binary file> <.csv file>`.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 || !(args[0].equals("import") || args[0].equals("export"))) {
+            System.err.println(
+                "Usage: java sample.MappedRecordDB import|export <source file> <target file>"
+            );
+            System.exit(1);
+        }
+
+        File source = new File(args[1]);
+        File target = new File(args[2]);
+
+        int entryAmount = args[0].equals("import")
+            ? importCsv(source, target)
+            : exportCsv(source, target);
+
+        System.out.println(entryAmount + " entries written to " + target);
+    }
+}
@@ -0,0 +1,199 @@
+package sample;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * `NutrientAggregator` class sums the nutrients actually eaten,
+ * i.e. `nutrient * mass / 100` over Record DB entries, and
+ * converts the sums into one unit (grams).
+ *
+ * Unit conversion factors are derived once from the Source DB
+ * headers: "(mg)" is divided by 1000, "(mcg)" by 1000000, "(IU)"
+ * is converted as `IU / 1000000 * 0.3`, columns without a unit
+ * are treated as grams, and "Calories" is not a mass at all.
+ *
+ * The hot path works on primitive arrays only, without boxing,
+ * string parsing or exceptions. An aggregator reuses its own
+ * totals array, so it is not thread safe; `accumulate()` into
+ * a caller owned array may be used from any thread.
+ * */
+public class NutrientAggregator {
+    // -- Unit conversion factors section --
+    private static final double GRAMS_PER_MILLIGRAM  = 1.0 / 1000;
+    private static final double GRAMS_PER_MICROGRAM  = 1.0 / 1000000;
+    private static final double GRAMS_PER_IU         = 1.0 / 1000000 * 0.3;
+
+    /**
+     * Factor of columns, that are not a mass
+     * */
+    private static final double NOT_A_MASS = Double.NaN;
+
+    private final SourceDB sourceDB;
+
+    /**
+     * Row-major copy of the `sourceDB` nutrient columns, all
+     * nutrients of a food option are adjacent in memory, so
+     * accumulating an entry touches a few cache lines instead
+     * of one per nutrient column
+     * */
+    private final double[] nutrientRows;
+
+    /**
+     * Factor converting every nutrient into grams,
+     * `NOT_A_MASS` for the other nutrients
+     * */
+    private final double[] unitFactors;
+
+    /**
+     * Reused totals of `reset()` / `add()`
+     * */
+    private final double[] totals = new double[SourceDB.NUTRIENT_AMOUNT];
+
+    private int entryAmount = 0;
+
+    public NutrientAggregator(SourceDB sourceDB) {
+        this.sourceDB     = sourceDB;
+        this.nutrientRows = new double[sourceDB.size() * SourceDB.NUTRIENT_AMOUNT];
+        this.unitFactors  = new double[SourceDB.NUTRIENT_AMOUNT];
+
+        List<String> headers = sourceDB.getHeaders();
+
+        for (int i = 0; i < SourceDB.NUTRIENT_AMOUNT; i++) {
+            double[] column = sourceDB.getNutrientColumn(i);
+
+            for (int row = 0; row < sourceDB.size(); row++)
+                nutrientRows[row * SourceDB.NUTRIENT_AMOUNT + i] = column[row];
+
+            unitFactors[i] = unitFactorOf(
+                headers.get(SourceDB.FIRST_NUTRIENT_COLUMN + i)
+            );
+        }
+    }
+
+    /**
+     * @param header Nutrient column header.
+     * @return       Factor converting the column values into
+     *               grams, or `NaN`, if it is not a mass.
+     */
+    static double unitFactorOf(String header) {
+        if (header.contains("(mg)")) {
+            return GRAMS_PER_MILLIGRAM;
+        } else if (header.contains("(mcg)")) {
+            return GRAMS_PER_MICROGRAM;
+        } else if (header.contains("(IU)")) {
+            return GRAMS_PER_IU;
+        } else if (
+            header.trim().equalsIgnoreCase("Calories")
+            || header.contains("(kcal)")
+            || header.contains("(kJ)")
+        ) {
+            return NOT_A_MASS;
+        }
+
+        return 1; // Grams and columns without a unit
+    }
+
+    public SourceDB getSourceDB() {
+        return sourceDB;
+    }
+
+    /**
+     * @param nutrient Nutrient index.
+     * @return         `true`, if the nutrient is a mass, that
+     *                 can be converted into grams.
+     */
+    public boolean isMass(int nutrient) {
+        return !Double.isNaN(unitFactors[nutrient]);
+    }
+
+    /**
+     * @param nutrient Nutrient index.
+     * @return         Factor converting the nutrient into grams,
+     *                 `NaN`, if it is not a mass.
+     */
+    public double getUnitFactor(int nutrient) {
+        return unitFactors[nutrient];
+    }
+
+    /**
+     * Adds the nutrients of `mass` grams of a food option
+     * to `target`.
+     *
+     * @param target Nutrient totals in Source DB units.
+     * @param row    Source DB row of the food option.
+     * @param mass   Eaten mass in grams.
+     */
+    public void accumulate(double[] target, int row, double mass) {
+        double factor = mass / 100.0;
+        int    offset = row * SourceDB.NUTRIENT_AMOUNT;
+
+        for (int i = 0; i < SourceDB.NUTRIENT_AMOUNT; i++)
+            target[i] += nutrientRows[offset + i] * factor;
+    }
+
+    /**
+     * Clears the totals.
+     */
+    public void reset() {
+        Arrays.fill(totals, 0);
+        entryAmount = 0;
+    }
+
+    /**
+     * Adds an entry to the totals. Entries of food options,
+     * that are no longer in the Source DB, are skipped.
+     *
+     * @param entry Record DB entry.
+     * @return      `false`, if the entry was skipped.
+     */
+    public boolean add(RecordEntry entry) {
+        int row = sourceDB.indexOfId(entry.getFoodId());
+
+        if (row < 0) {
+            return false;
+        }
+
+        accumulate(totals, row, entry.getMass());
+        entryAmount++;
+
+        return true;
+    }
+
+    /**
+     * Adds all `entries` to the totals.
+     *
+     * @param entries Record DB entries.
+     */
+    public void addAll(List<RecordEntry> entries) {
+        for (int i = 0, size = entries.size(); i < size; i++)
+            add(entries.get(i));
+    }
+
+    /**
+     * @return Totals in Source DB units. The array is reused
+     *         by the aggregator and must not be modified.
+     */
+    public double[] getTotals() {
+        return totals;
+    }
+
+    public int getEntryAmount() {
+        return entryAmount;
+    }
+
+    /**
+     * Converts `totals` into grams. Nutrients, that are not
+     * a mass, are set to `0`.
+     *
+     * @param totals Nutrient totals in Source DB units.
+     * @param grams  Array to write to, may be `totals`.
+     * @return       `grams`.
+     */
+    public double[] toGrams(double[] totals, double[] grams) {
+        for (int i = 0; i < totals.length; i++)
+            grams[i] = isMass(i) ? totals[i] * unitFactors[i] : 0;
+
+        return grams;
+    }
+}
@@ -0,0 +1,424 @@
+package sample;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+
+/**
+ * `ParallelCsvLoader` class is responsible for loading `.csv`
+ * DB files on all available cores.
+ *
+ * The file is memory-mapped with `FileChannel.map()`, split into
+ * line aligned chunks and every chunk is tokenized by its own
+ * `CsvTokenizer` in a fork-join pool. Chunk results are returned
+ * in file order.
+ *
+ * When a chunk boundary happens to fall inside of a quoted field
+ * (a quoted line break), the whole file is re-read sequentially,
+ * so the result is always the same as the sequential one.
+ * */
+public class ParallelCsvLoader {
+    /**
+     * Files smaller than this are read sequentially
+     * */
+    static final long MIN_PARALLEL_FILE_SIZE = 1L << 20;
+
+    /**
+     * Smallest chunk worth a separate task
+     * */
+    static final long MIN_CHUNK_SIZE = 1L << 18;
+
+    /**
+     * Largest chunk, that fits into one mapping
+     * */
+    static final long MAX_CHUNK_SIZE = 1L << 30;
+
+    /**
+     * Size of the character buffer chunks are decoded into
+     * */
+    private static final int DECODE_BUFFER_SIZE = 1 << 16;
+
+    private ParallelCsvLoader() {}
+
+    /**
+     * Tokenizes `file` in parallel on the common fork-join pool.
+     *
+     * @param file        `.csv` file to load.
+     * @param sinkFactory Creates a `FieldSink` for the chunk with
+     *                    the given index. Chunk `0` is the one
+     *                    starting at the beginning of the file.
+     * @param <S>         `FieldSink` type.
+     * @return            Chunk sinks in file order.
+     * @throws IOException In case of reading errors.
+     */
+    public static <S extends CsvTokenizer.FieldSink> List<S> load(
+        File           file,
+        IntFunction<S> sinkFactory
+    ) throws IOException {
+        return load(file, sinkFactory, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Tokenizes `file` in parallel on `pool`.
+     *
+     * @param file        `.csv` file to load.
+     * @param sinkFactory Creates a `FieldSink` for the chunk with
+     *                    the given index.
+     * @param pool        Pool to run chunk tasks in.
+     * @param <S>         `FieldSink` type.
+     * @return            Chunk sinks in file order.
+     * @throws IOException In case of reading errors.
+     */
+    public static <S extends CsvTokenizer.FieldSink> List<S> load(
+        File           file,
+        IntFunction<S> sinkFactory,
+        ForkJoinPool   pool
+    ) throws IOException {
+        return loadRange(file, 0, file.length(), sinkFactory, pool);
+    }
+
+    /**
+     * Tokenizes bytes `[start, end)` of `file` in parallel on
+     * the common fork-join pool. Both `start` and `end` must be
+     * line boundaries.
+     *
+     * @param file        `.csv` file to load.
+     * @param start       Offset of the first byte.
+     * @param end         Offset after the last byte.
+     * @param sinkFactory Creates a `FieldSink` for the chunk with
+     *                    the given index.
+     * @param <S>         `FieldSink` type.
+     * @return            Chunk sinks in file order.
+     * @throws IOException In case of reading errors.
+     */
+    public static <S extends CsvTokenizer.FieldSink> List<S> load(
+        File           file,
+        long           start,
+        long           end,
+        IntFunction<S> sinkFactory
+    ) throws IOException {
+        return loadRange(file, start, end, sinkFactory, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Tokenizes bytes `[start, end)` of `file` in parallel on
+     * `pool`. Both `start` and `end` must be line boundaries.
+     *
+     * @param file        `.csv` file to load.
+     * @param start       Offset of the first byte.
+     * @param end         Offset after the last byte.
+     * @param sinkFactory Creates a `FieldSink` for the chunk with
+     *                    the given index. Chunk `0` is the one
+     *                    starting at `start`.
+     * @param pool        Pool to run chunk tasks in.
+     * @param <S>         `FieldSink` type.
+     * @return            Chunk sinks in file order.
+     * @throws IOException In case of reading errors.
+     */
+    public static <S extends CsvTokenizer.FieldSink> List<S> loadRange(
+        File           file,
+        long           start,
+        long           end,
+        IntFunction<S> sinkFactory,
+        ForkJoinPool   pool
+    ) throws IOException {
+        try (
+            FileChannel channel = FileChannel.open(
+                file.toPath(),
+                StandardOpenOption.READ
+            )
+        ) {
+            long size = end - start;
+
+            int chunkAmount = (int) Math.min(
+                pool.getParallelism(),
+                size / MIN_CHUNK_SIZE
+            );
+
+            // A single mapping can not exceed 2 GiB
+            chunkAmount = (int) Math.max(
+                chunkAmount,
+                size / MAX_CHUNK_SIZE + 1
+            );
+
+            // Handling small files and single core machines
+            if (size < MIN_PARALLEL_FILE_SIZE || chunkAmount < 2) {
+                return tokenizeSequentially(channel, start, end, sinkFactory);
+            }
+
+            long[] boundaries = findChunkBoundaries(
+                channel,
+                start,
+                end,
+                chunkAmount
+            );
+
+            List<ChunkTask<S>> tasks = new ArrayList<>();
+
+            for (int i = 0; i + 1 < boundaries.length; i++) {
+                // Skipping chunks, that collapsed into one line
+                if (boundaries[i] < boundaries[i + 1]) {
+                    tasks.add(new ChunkTask<>(
+                        channel,
+                        boundaries[i],
+                        boundaries[i + 1],
+                        sinkFactory.apply(tasks.size())
+                    ));
+                }
+            }
+
+            pool.invoke(new ChunkTasks(tasks));
+
+            List<S> sinks = new ArrayList<>(tasks.size());
+
+            for (ChunkTask<S> task : tasks) {
+                if (task.ioException != null) {
+                    throw task.ioException;
+                }
+
+                /*
+                 * Handling quoted line breaks on chunk
+                 * boundaries
+                 * */
+                if (task.endedInsideQuotes) {
+                    return tokenizeSequentially(channel, start, end, sinkFactory);
+                }
+
+                sinks.add(task.sink);
+            }
+
+            return sinks;
+        }
+    }
+
+    /**
+     * Tokenizes `file` on the calling thread into a single sink.
+     *
+     * @param file        `.csv` file to load.
+     * @param sinkFactory Creates the `FieldSink` for chunk `0`.
+     * @param <S>         `FieldSink` type.
+     * @return            Single element list with the sink.
+     * @throws IOException In case of reading errors.
+     */
+    public static <S extends CsvTokenizer.FieldSink> List<S> loadSequentially(
+        File           file,
+        IntFunction<S> sinkFactory
+    ) throws IOException {
+        try (
+            FileChannel channel = FileChannel.open(
+                file.toPath(),
+                StandardOpenOption.READ
+            )
+        ) {
+            return tokenizeSequentially(channel, 0, channel.size(), sinkFactory);
+        }
+    }
+
+    /**
+     * Tokenizes bytes `[start, end)` of `channel` on the calling
+     * thread into a single sink, reading them block by block.
+     */
+    private static <S extends CsvTokenizer.FieldSink> List<S> tokenizeSequentially(
+        FileChannel    channel,
+        long           start,
+        long           end,
+        IntFunction<S> sinkFactory
+    ) throws IOException {
+        S            sink      = sinkFactory.apply(0);
+        CsvTokenizer tokenizer = new CsvTokenizer(sink);
+
+        CharsetDecoder decoder = StandardCharsets.UTF_8
+            .newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        ByteBuffer bytes = ByteBuffer.allocate(DECODE_BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(DECODE_BUFFER_SIZE);
+
+        long position = start;
+
+        while (position < end) {
+            bytes.limit((int) Math.min(bytes.capacity(), bytes.position() + end - position));
+
+            int read = channel.read(bytes, position);
+
+            if (read <= 0) {
+                break;
+            }
+
+            position += read;
+
+            bytes.flip();
+
+            /*
+             * A multi-byte character split between two blocks
+             * stays in `bytes` until the next block is read
+             * */
+            decoder.decode(bytes, chars, position >= end);
+            bytes.compact();
+
+            chars.flip();
+            tokenizer.feed(chars.array(), 0, chars.limit());
+            chars.clear();
+        }
+
+        decoder.flush(chars);
+        chars.flip();
+        tokenizer.feed(chars.array(), 0, chars.limit());
+
+        tokenizer.finish();
+
+        return Collections.singletonList(sink);
+    }
+
+    /**
+     * Splits `[start, end)` into `chunkAmount` ranges, moving
+     * every inner boundary right after the next line feed.
+     *
+     * @return Boundary offsets, starting with `start` and ending
+     *         with `end`.
+     */
+    private static long[] findChunkBoundaries(
+        FileChannel channel,
+        long        start,
+        long        end,
+        int         chunkAmount
+    ) throws IOException {
+        long[]     boundaries = new long[chunkAmount + 1];
+        ByteBuffer probe      = ByteBuffer.allocate(4096);
+
+        boundaries[0]           = start;
+        boundaries[chunkAmount] = end;
+
+        for (int i = 1; i < chunkAmount; i++) {
+            long position = Math.max(
+                start + (end - start) / chunkAmount * i,
+                boundaries[i - 1]
+            );
+
+            boundaries[i] = end;
+
+            search:
+            while (position < end) {
+                probe.clear();
+
+                probe.limit((int) Math.min(probe.capacity(), end - position));
+
+                int read = channel.read(probe, position);
+
+                if (read <= 0) {
+                    break;
+                }
+
+                for (int j = 0; j < read; j++) {
+                    if (probe.get(j) == '\n') {
+                        boundaries[i] = position + j + 1;
+                        break search;
+                    }
+                }
+
+                position += read;
+            }
+        }
+
+        return boundaries;
+    }
+
+    /**
+     * Fork-join task running all the chunk tasks inside of the
+     * pool, so the calling thread only waits for them
+     * */
+    private static class ChunkTasks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<? extends ChunkTask<?>> tasks;
+
+        private ChunkTasks(List<? extends ChunkTask<?>> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected void compute() {
+            ForkJoinTask.invokeAll(tasks);
+        }
+    }
+
+    /**
+     * Fork-join task tokenizing one memory-mapped chunk
+     * */
+    private static class ChunkTask<S extends CsvTokenizer.FieldSink>
+        extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long        start;
+        private final long        end;
+        private final S           sink;
+
+        private boolean     endedInsideQuotes;
+        private IOException ioException;
+
+        private ChunkTask(FileChannel channel, long start, long end, S sink) {
+            this.channel = channel;
+            this.start   = start;
+            this.end     = end;
+            this.sink    = sink;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                MappedByteBuffer bytes = channel.map(
+                    FileChannel.MapMode.READ_ONLY,
+                    start,
+                    end - start
+                );
+
+                CsvTokenizer tokenizer = new CsvTokenizer(sink);
+
+                CharsetDecoder decoder = StandardCharsets.UTF_8
+                    .newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+                CharBuffer chars = CharBuffer.allocate(DECODE_BUFFER_SIZE);
+
+                /*
+                 * Chunks end on line feeds, so no multi-byte
+                 * character is ever split between two chunks
+                 * */
+                while (bytes.hasRemaining()) {
+                    decoder.decode(bytes, chars, true);
+
+                    chars.flip();
+                    tokenizer.feed(chars.array(), 0, chars.limit());
+                    chars.clear();
+                }
+
+                decoder.flush(chars);
+                chars.flip();
+                tokenizer.feed(chars.array(), 0, chars.limit());
+
+                endedInsideQuotes = tokenizer.isInsideQuotes();
+
+                tokenizer.finish();
+            } catch (IOException e) {
+                ioException = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package sample;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * `QueryCache` class keeps results of recent Record DB queries,
+ * so repeated record and statistics views are answered without
+ * reading or aggregating anything.
+ *
+ * Results are keyed by view, date range and grouping, and evicted
+ * in least recently used order beyond the capacity. Every
+ * invalidation increments the Record DB version of the cache:
+ * appends invalidate only the results, whose date ranges overlap
+ * the appended days, while a Record DB file changed behind the
+ * cache's back, see `validate()`, invalidates all of them.
+ *
+ * A result is only cached, if the version did not change while
+ * it was computed, so results racing with an append are never
+ * kept. Cached results are shared and must not be modified.
+ *
+ * The cache is thread safe.
+ * */
+public class QueryCache {
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * Query of a view over a date range
+     * */
+    public static final class Key {
+        private final String view;
+        private final int    fromDay;
+        private final int    toDay;
+        private final String grouping;
+
+        /**
+         * @param view     View name, e.g. "statistics".
+         * @param fromDay  First epoch day, inclusive.
+         * @param toDay    Last epoch day, inclusive.
+         * @param grouping Grouping of the result, e.g. "day".
+         */
+        public Key(String view, int fromDay, int toDay, String grouping) {
+            this.view     = view;
+            this.fromDay  = fromDay;
+            this.toDay    = toDay;
+            this.grouping = grouping;
+        }
+
+        public String getView() {
+            return view;
+        }
+
+        public int getFromDay() {
+            return fromDay;
+        }
+
+        public int getToDay() {
+            return toDay;
+        }
+
+        public String getGrouping() {
+            return grouping;
+        }
+
+        private boolean overlaps(int fromDay, int toDay) {
+            return this.fromDay <= toDay && fromDay <= this.toDay;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) o;
+
+            return fromDay == key.fromDay
+                && toDay == key.toDay
+                && view.equals(key.view)
+                && grouping.equals(key.grouping);
+        }
+
+        @Override
+        public int hashCode() {
+            return ((view.hashCode() * 31 + fromDay) * 31 + toDay) * 31 + grouping.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return view + "[" + fromDay + ", " + toDay + "] by " + grouping;
+        }
+    }
+
+    /**
+     * Results in access order, the eldest first, evicting the
+     * eldest one beyond the capacity
+     * */
+    private static final class LruMap extends LinkedHashMap<Key, Object> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        private long evictionAmount = 0;
+
+        private LruMap(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+            if (size() > capacity) {
+                evictionAmount++;
+                return true;
+            }
+
+            return false;
+        }
+    }
+
+    private final LruMap results;
+
+    /**
+     * Record DB version, incremented on every invalidation
+     * */
+    private long version = 0;
+
+    /**
+     * Record DB file length and modification time, the
+     * cached results are consistent with
+     * */
+    private long stampLength       = -1;
+    private long stampLastModified = -1;
+
+    // -- Counters section --
+    private long hitAmount  = 0;
+    private long missAmount = 0;
+
+    public QueryCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Maximal amount of cached results.
+     */
+    public QueryCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+
+        this.results = new LruMap(capacity);
+    }
+
+    /**
+     * @param key Query.
+     * @return    Cached result, or `null`.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <V> V get(Key key) {
+        Object result = results.get(key);
+
+        if (result != null) {
+            hitAmount++;
+        } else {
+            missAmount++;
+        }
+
+        return (V) result;
+    }
+
+    /**
+     * Caches `result`, unless the cache was invalidated since
+     * `version`, i.e. `result` may be outdated.
+     *
+     * @param key     Query.
+     * @param result  Result of the query, not `null`.
+     * @param version `getVersion()` before the query was
+     *                computed.
+     * @return        `true`, if `result` was cached.
+     */
+    public synchronized boolean put(Key key, Object result, long version) {
+        if (version != this.version) {
+            return false;
+        }
+
+        results.put(key, result);
+
+        return true;
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    // -- Invalidation section --
+    /**
+     * Drops the results, whose ranges overlap `[fromDay, toDay]`,
+     * and restamps the cache with the Record DB file.
+     *
+     * @param fromDay      First appended epoch day, inclusive.
+     * @param toDay        Last appended epoch day, inclusive.
+     * @param length       Record DB file length after the append.
+     * @param lastModified Its modification time.
+     */
+    public synchronized void invalidate(int fromDay, int toDay, long length, long lastModified) {
+        Iterator<Key> keys = results.keySet().iterator();
+
+        while (keys.hasNext()) {
+            if (keys.next().overlaps(fromDay, toDay)) {
+                keys.remove();
+            }
+        }
+
+        version++;
+        stampLength       = length;
+        stampLastModified = lastModified;
+    }
+
+    /**
+     * Drops all the results, unless the cache is stamped
+     * with the given Record DB file state.
+     *
+     * @param length       Current Record DB file length.
+     * @param lastModified Its modification time.
+     */
+    public synchronized void validate(long length, long lastModified) {
+        if (length != stampLength || lastModified != stampLastModified) {
+            invalidateAll();
+
+            stampLength       = length;
+            stampLastModified = lastModified;
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        results.clear();
+        version++;
+    }
+
+    // -- Statistics section --
+    public synchronized long getHitAmount() {
+        return hitAmount;
+    }
+
+    public synchronized long getMissAmount() {
+        return missAmount;
+    }
+
+    public synchronized long getEvictionAmount() {
+        return results.evictionAmount;
+    }
+
+    public synchronized int size() {
+        return results.size();
+    }
+
+    public int getCapacity() {
+        return results.capacity;
+    }
+}
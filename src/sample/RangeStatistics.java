@@ -0,0 +1,427 @@
+package sample;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * `RangeStatistics` class holds nutrient statistics of the Record
+ * DB entries in a date range, e.g. a week, a month or a custom
+ * interval:
+ *
+ *  - nutrient totals and eaten mass of the whole range,
+ *  - daily averages over the days with records,
+ *  - daily minimum and maximum of every nutrient over the days
+ *    with records,
+ *  - nutrient totals, mass and entry amount per food group.
+ *
+ * Statistics are computed by `compute()`, which splits the entries
+ * into slices summed on a `ForkJoinPool` and merges the partial
+ * results. All nutrient values are in Source DB units, use
+ * `NutrientAggregator.toGrams()` to normalize them.
+ *
+ * Instances are immutable once computed.
+ * */
+public class RangeStatistics {
+    /**
+     * Maximal amount of entries summed by one fork-join task
+     * */
+    static final int SLICE_SIZE = 1 << 13;
+
+    private final int fromDay;
+    private final int toDay;
+
+    private final double[] totals;
+    private final double[] dailyMin;
+    private final double[] dailyMax;
+    private final double[] dailyAverages;
+
+    private final int    entryAmount;
+    private final int    recordedDayAmount;
+    private final double mass;
+
+    /**
+     * Nutrient totals per food group code, `null` for
+     * groups without entries
+     * */
+    private final double[][] groupTotals;
+    private final double[]   groupMasses;
+    private final int[]      groupEntryAmounts;
+
+    private RangeStatistics(int fromDay, int toDay, Partial result) {
+        this.fromDay           = fromDay;
+        this.toDay             = toDay;
+        this.totals            = result.totals;
+        this.entryAmount       = result.entryAmount;
+        this.mass              = result.mass;
+        this.groupTotals       = result.groupTotals;
+        this.groupMasses       = result.groupMasses;
+        this.groupEntryAmounts = result.groupEntryAmounts;
+        this.recordedDayAmount = result.days.size();
+
+        dailyMin      = new double[SourceDB.NUTRIENT_AMOUNT];
+        dailyMax      = new double[SourceDB.NUTRIENT_AMOUNT];
+        dailyAverages = new double[SourceDB.NUTRIENT_AMOUNT];
+
+        if (recordedDayAmount > 0) {
+            Arrays.fill(dailyMin, Double.POSITIVE_INFINITY);
+            Arrays.fill(dailyMax, Double.NEGATIVE_INFINITY);
+
+            for (double[] day : result.days.values()) {
+                for (int i = 0; i < day.length; i++) {
+                    dailyMin[i] = Math.min(dailyMin[i], day[i]);
+                    dailyMax[i] = Math.max(dailyMax[i], day[i]);
+                }
+            }
+
+            for (int i = 0; i < totals.length; i++)
+                dailyAverages[i] = totals[i] / recordedDayAmount;
+        }
+    }
+
+    /**
+     * Computes statistics of `entries` in `[fromDay, toDay]` on
+     * the common `ForkJoinPool`.
+     *
+     * @param sourceDB Source DB the entries refer to.
+     * @param entries  Record DB entries, entries outside of the
+     *                 range and of unknown food options are
+     *                 skipped.
+     * @param fromDay  First epoch day, inclusive.
+     * @param toDay    Last epoch day, inclusive.
+     * @return         Computed statistics.
+     */
+    public static RangeStatistics compute(
+        SourceDB          sourceDB,
+        List<RecordEntry> entries,
+        int               fromDay,
+        int               toDay
+    ) {
+        return compute(sourceDB, entries, fromDay, toDay, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes statistics of `entries` in `[fromDay, toDay]`
+     * on `pool`.
+     *
+     * @param sourceDB Source DB the entries refer to.
+     * @param entries  Record DB entries, must be random access.
+     * @param fromDay  First epoch day, inclusive.
+     * @param toDay    Last epoch day, inclusive.
+     * @param pool     Pool to sum the entry slices on.
+     * @return         Computed statistics.
+     */
+    public static RangeStatistics compute(
+        SourceDB          sourceDB,
+        List<RecordEntry> entries,
+        int               fromDay,
+        int               toDay,
+        ForkJoinPool      pool
+    ) {
+        return compute(new NutrientAggregator(sourceDB), entries, fromDay, toDay, pool);
+    }
+
+    /**
+     * Computes statistics of `entries` in `[fromDay, toDay]` on
+     * the common `ForkJoinPool`, reusing the nutrient matrix of
+     * `aggregator` instead of building one per call. The matrix
+     * is only read, so one aggregator may serve concurrent calls.
+     *
+     * @param aggregator Aggregator over the Source DB the
+     *                   entries refer to.
+     * @param entries    Record DB entries, must be random access.
+     * @param fromDay    First epoch day, inclusive.
+     * @param toDay      Last epoch day, inclusive.
+     * @return           Computed statistics.
+     */
+    public static RangeStatistics compute(
+        NutrientAggregator aggregator,
+        List<RecordEntry>  entries,
+        int                fromDay,
+        int                toDay
+    ) {
+        return compute(aggregator, entries, fromDay, toDay, ForkJoinPool.commonPool());
+    }
+
+    private static RangeStatistics compute(
+        NutrientAggregator aggregator,
+        List<RecordEntry>  entries,
+        int                fromDay,
+        int                toDay,
+        ForkJoinPool       pool
+    ) {
+        SliceTask task = new SliceTask(
+            aggregator.getSourceDB(),
+            aggregator,
+            entries,
+            0,
+            entries.size(),
+            fromDay,
+            toDay
+        );
+
+        return new RangeStatistics(fromDay, toDay, pool.invoke(task));
+    }
+
+    public int getFromDay() {
+        return fromDay;
+    }
+
+    public int getToDay() {
+        return toDay;
+    }
+
+    /**
+     * @return Amount of calendar days in the range.
+     */
+    public int getDayAmount() {
+        return toDay - fromDay + 1;
+    }
+
+    /**
+     * @return Amount of days with at least one entry.
+     */
+    public int getRecordedDayAmount() {
+        return recordedDayAmount;
+    }
+
+    public int getEntryAmount() {
+        return entryAmount;
+    }
+
+    /**
+     * @return Total eaten mass in grams.
+     */
+    public double getMass() {
+        return mass;
+    }
+
+    /**
+     * @return Nutrient totals of the range. The array
+     *         must not be modified.
+     */
+    public double[] getTotals() {
+        return totals;
+    }
+
+    /**
+     * @return Nutrient totals divided by the amount of days
+     *         with records. The array must not be modified.
+     */
+    public double[] getDailyAverages() {
+        return dailyAverages;
+    }
+
+    /**
+     * @return Smallest daily total of every nutrient over
+     *         the days with records. The array must not be
+     *         modified.
+     */
+    public double[] getDailyMin() {
+        return dailyMin;
+    }
+
+    /**
+     * @return Largest daily total of every nutrient over
+     *         the days with records. The array must not be
+     *         modified.
+     */
+    public double[] getDailyMax() {
+        return dailyMax;
+    }
+
+    /**
+     * @param groupCode Food group code, see
+     *                  `SourceDB.getGroupCode()`.
+     * @return          Nutrient totals of the group, or `null`,
+     *                  if there are no entries of the group.
+     *                  The array must not be modified.
+     */
+    public double[] getGroupTotals(int groupCode) {
+        return groupTotals[groupCode];
+    }
+
+    /**
+     * @param groupCode Food group code.
+     * @return          Eaten mass of the group in grams.
+     */
+    public double getGroupMass(int groupCode) {
+        return groupMasses[groupCode];
+    }
+
+    /**
+     * @param groupCode Food group code.
+     * @return          Amount of entries of the group.
+     */
+    public int getGroupEntryAmount(int groupCode) {
+        return groupEntryAmounts[groupCode];
+    }
+
+    /**
+     * Partial statistics of an entry slice
+     * */
+    private static class Partial {
+        private final double[]   totals      = new double[SourceDB.NUTRIENT_AMOUNT];
+        private final double[][] groupTotals;
+        private final double[]   groupMasses;
+        private final int[]      groupEntryAmounts;
+
+        /**
+         * Nutrient totals by epoch day
+         * */
+        private final Map<Integer, double[]> days = new HashMap<>();
+
+        private int    entryAmount = 0;
+        private double mass        = 0;
+
+        private Partial(int groupAmount) {
+            groupTotals       = new double[groupAmount][];
+            groupMasses       = new double[groupAmount];
+            groupEntryAmounts = new int[groupAmount];
+        }
+
+        /**
+         * Adds `other` into this partial.
+         */
+        private Partial merge(Partial other) {
+            add(totals, other.totals);
+
+            for (int g = 0; g < groupTotals.length; g++) {
+                if (other.groupTotals[g] == null) {
+                    continue;
+                }
+
+                if (groupTotals[g] == null) {
+                    groupTotals[g] = other.groupTotals[g];
+                } else {
+                    add(groupTotals[g], other.groupTotals[g]);
+                }
+
+                groupMasses[g]       += other.groupMasses[g];
+                groupEntryAmounts[g] += other.groupEntryAmounts[g];
+            }
+
+            for (Map.Entry<Integer, double[]> day : other.days.entrySet()) {
+                double[] existing = days.putIfAbsent(day.getKey(), day.getValue());
+
+                if (existing != null) {
+                    add(existing, day.getValue());
+                }
+            }
+
+            entryAmount += other.entryAmount;
+            mass        += other.mass;
+
+            return this;
+        }
+
+        private static void add(double[] target, double[] values) {
+            for (int i = 0; i < target.length; i++)
+                target[i] += values[i];
+        }
+    }
+
+    /**
+     * Fork-join task summing the entries in `[start, end)`
+     * */
+    private static class SliceTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final SourceDB           sourceDB;
+        private final NutrientAggregator aggregator;
+        private final List<RecordEntry>  entries;
+        private final int                start;
+        private final int                end;
+        private final int                fromDay;
+        private final int                toDay;
+
+        private SliceTask(
+            SourceDB           sourceDB,
+            NutrientAggregator aggregator,
+            List<RecordEntry>  entries,
+            int                start,
+            int                end,
+            int                fromDay,
+            int                toDay
+        ) {
+            this.sourceDB   = sourceDB;
+            this.aggregator = aggregator;
+            this.entries    = entries;
+            this.start      = start;
+            this.end        = end;
+            this.fromDay    = fromDay;
+            this.toDay      = toDay;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (end - start > SLICE_SIZE) {
+                int middle = (start + end) >>> 1;
+
+                SliceTask left = new SliceTask(
+                    sourceDB, aggregator, entries, start, middle, fromDay, toDay
+                );
+                SliceTask right = new SliceTask(
+                    sourceDB, aggregator, entries, middle, end, fromDay, toDay
+                );
+
+                left.fork();
+
+                Partial rightResult = right.compute();
+
+                return left.join().merge(rightResult);
+            }
+
+            Partial partial = new Partial(sourceDB.getGroupDictionary().size());
+
+            /*
+             * Entries are mostly sorted by day, so the
+             * day vector is looked up only on day change
+             * */
+            int      currentDay    = Integer.MIN_VALUE;
+            double[] currentTotals = null;
+
+            for (int i = start; i < end; i++) {
+                RecordEntry entry = entries.get(i);
+
+                int day = entry.getEpochDay();
+                int row = sourceDB.indexOfId(entry.getFoodId());
+
+                if (day < fromDay || day > toDay || row < 0) {
+                    continue;
+                }
+
+                if (day != currentDay || currentTotals == null) {
+                    currentDay    = day;
+                    currentTotals = partial.days.computeIfAbsent(
+                        day,
+                        d -> new double[SourceDB.NUTRIENT_AMOUNT]
+                    );
+                }
+
+                int group = sourceDB.getGroupCode(row);
+
+                if (partial.groupTotals[group] == null) {
+                    partial.groupTotals[group] = new double[SourceDB.NUTRIENT_AMOUNT];
+                }
+
+                aggregator.accumulate(currentTotals, row, entry.getMass());
+                aggregator.accumulate(partial.groupTotals[group], row, entry.getMass());
+
+                partial.groupMasses[group] += entry.getMass();
+                partial.groupEntryAmounts[group]++;
+                partial.entryAmount++;
+                partial.mass += entry.getMass();
+            }
+
+            // Range totals are the sum of the slice day totals
+            for (double[] dayTotals : partial.days.values())
+                Partial.add(partial.totals, dayTotals);
+
+            return partial;
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package sample;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * `RecordDB` class is responsible for reading and writing the
+ * `RecordDB.csv` file.
+ *
+ * Format:
+ *  Header row `HEADER`, then one row per eaten food option with
+ *  its "Database Number", mass in grams, entry date as epoch day
+ *  and optional entry time as second of day.
+ *
+ * Files in the old format, that repeated all the Source DB
+ * columns in every row, are migrated on the first read. The old
+ * file is kept with the `LEGACY_EXTENSION` appended to its name.
+ * */
+public class RecordDB {
+    public static final String HEADER =
+        "Database Number,Mass (g),Epoch Day,Time";
+
+    static final String LEGACY_EXTENSION = ".legacy";
+
+    // -- Record DB column layout section --
+    static final int ID_COLUMN            = 0;
+    static final int MASS_COLUMN          = 1;
+    static final int EPOCH_DAY_COLUMN     = 2;
+    static final int SECOND_OF_DAY_COLUMN = 3;
+
+    // -- Old Record DB column layout section --
+    static final int LEGACY_MASS_COLUMN = SourceDB.COLUMN_AMOUNT;
+    static final int LEGACY_DATE_COLUMN = SourceDB.COLUMN_AMOUNT + 1;
+
+    private RecordDB() {}
+
+    /**
+     * Reads all entries of `recordDBFile`, migrating it to the
+     * current format first, if needed. Entries sealed into its
+     * `RecordDBArchive` are not included, see `readAll()`.
+     *
+     * @param recordDBFile Record DB file to read.
+     * @return             Entries in file order, or `null`, if
+     *                     there is no file.
+     * @throws IOException In case of reading or migration errors.
+     */
+    public static List<RecordEntry> read(File recordDBFile) throws IOException {
+        if (!recordDBFile.exists()) {
+            return null; // No file was found return value
+        }
+
+        prepare(recordDBFile);
+
+        return parse(recordDBFile);
+    }
+
+    /**
+     * Reads the whole history of the Record DB: the entries
+     * sealed into the `RecordDBArchive` of `recordDBFile`, then
+     * the entries of the file itself.
+     *
+     * @param recordDBFile Record DB file to read.
+     * @return             Archived entries by day, then the
+     *                     entries of the file in file order, or
+     *                     `null`, if there is no file.
+     * @throws IOException In case of reading or migration errors,
+     *                     or if the archive is damaged.
+     */
+    public static List<RecordEntry> readAll(File recordDBFile) throws IOException {
+        List<RecordEntry> tail = read(recordDBFile);
+
+        if (tail == null) {
+            return null; // No file was found return value
+        }
+
+        List<RecordEntry> entries = RecordDBArchive.open(recordDBFile).readAll();
+        entries.addAll(tail);
+
+        return entries;
+    }
+
+    /**
+     * Reads all entries of `recordDBFile` as it is, without
+     * preparing it, see `prepare()`.
+     *
+     * @param recordDBFile Existing Record DB file to read.
+     * @return             Entries in file order.
+     * @throws IOException In case of reading errors.
+     */
+    static List<RecordEntry> parse(File recordDBFile) throws IOException {
+        List<EntryCollector> chunkCollectors = ParallelCsvLoader.load(
+            recordDBFile,
+            chunkIndex -> new EntryCollector()
+        );
+
+        int entryAmount = 0;
+
+        for (EntryCollector ec : chunkCollectors)
+            entryAmount += ec.size();
+
+        List<RecordEntry> entries = new ArrayList<>(entryAmount);
+
+        for (EntryCollector ec : chunkCollectors)
+            entries.addAll(ec.getEntries());
+
+        return entries;
+    }
+
+    /**
+     * Appends `entries` to `recordDBFile`, creating it with the
+     * header row, if it does not exist.
+     *
+     * @param recordDBFile Record DB file to append to.
+     * @param entries      Entries to append.
+     * @throws IOException In case of writing errors.
+     */
+    public static void append(
+        File              recordDBFile,
+        List<RecordEntry> entries
+    ) throws IOException {
+        boolean DBFileExists = recordDBFile.exists();
+
+        if (DBFileExists) {
+            prepare(recordDBFile);
+        }
+
+        try (
+            Writer writer = new BufferedWriter(
+                new OutputStreamWriter(
+                    new FileOutputStream(recordDBFile, DBFileExists),
+                    StandardCharsets.UTF_8
+                )
+            )
+        ) {
+            if (!DBFileExists) {
+                writer.write(HEADER);
+                writer.write("\r\n");
+            }
+
+            for (RecordEntry entry : entries) {
+                writer.write(entry.toString());
+                writer.write("\r\n");
+            }
+        }
+    }
+
+    /**
+     * Brings an existing `recordDBFile` into a consistent state
+     * in the current format, before it is read or appended to:
+     * finishes a `RecordDBArchive.seal()`, that was interrupted
+     * between its file moves, and migrates an old format file.
+     *
+     * @return `true`, if the file was rewritten.
+     */
+    static boolean prepare(File recordDBFile) throws IOException {
+        boolean sealFinished = RecordDBArchive.finishSeal(recordDBFile);
+
+        return migrateIfLegacy(recordDBFile) || sealFinished;
+    }
+
+    /**
+     * @return `true`, if `recordDBFile` starts with a header row
+     *         of the old format.
+     */
+    static boolean isLegacy(File recordDBFile) throws IOException {
+        try (
+            BufferedReader br = new BufferedReader(
+                new InputStreamReader(
+                    new FileInputStream(recordDBFile),
+                    StandardCharsets.UTF_8
+                )
+            )
+        ) {
+            String header = br.readLine();
+
+            if (header == null) {
+                return false;
+            }
+
+            // Skipping UTF-8 byte order mark
+            if (header.startsWith("\uFEFF")) {
+                header = header.substring(1);
+            }
+
+            return !header.startsWith(HEADER)
+                && header.startsWith("Database Number,Food Group");
+        }
+    }
+
+    /**
+     * Rewrites an old format `recordDBFile` in the current
+     * format, keeping the original next to it.
+     *
+     * @return `true`, if the file was migrated.
+     */
+    static boolean migrateIfLegacy(File recordDBFile) throws IOException {
+        if (!isLegacy(recordDBFile)) {
+            return false;
+        }
+
+        List<CsvTokenizer.RowCollector> chunkRowCollectors =
+            ParallelCsvLoader.load(
+                recordDBFile,
+                chunkIndex -> new CsvTokenizer.RowCollector()
+            );
+
+        File migratedFile = new File(recordDBFile.getPath() + ".tmp");
+        File legacyFile   = new File(recordDBFile.getPath() + LEGACY_EXTENSION);
+
+        List<RecordEntry> entries    = new ArrayList<>();
+        boolean           headersRow = true;
+
+        for (CsvTokenizer.RowCollector rc : chunkRowCollectors) {
+            for (LinkedList<String> row : rc.getRows()) {
+                if (headersRow) {
+                    headersRow = false;
+                    continue;
+                }
+
+                RecordEntry entry = parseLegacyRow(new ArrayList<>(row));
+
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+        }
+
+        // Dropping a temporary file left by an interrupted migration
+        Files.deleteIfExists(migratedFile.toPath());
+        append(migratedFile, entries);
+
+        /*
+         * Keeping a copy of the original and replacing it in one
+         * atomic move, so there always is a Record DB file
+         * */
+        Files.copy(
+            recordDBFile.toPath(),
+            legacyFile.toPath(),
+            StandardCopyOption.REPLACE_EXISTING
+        );
+        Files.move(
+            migratedFile.toPath(),
+            recordDBFile.toPath(),
+            StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING
+        );
+
+        return true;
+    }
+
+    /**
+     * Converts an old format row into an entry.
+     *
+     * @return Entry, or `null`, if the row is damaged.
+     */
+    private static RecordEntry parseLegacyRow(List<String> row) {
+        if (row.size() <= LEGACY_DATE_COLUMN) {
+            return null;
+        }
+
+        try {
+            return new RecordEntry(
+                Integer.parseInt(row.get(SourceDB.ID_COLUMN).trim()),
+                Integer.parseInt(row.get(LEGACY_MASS_COLUMN).trim()),
+                (int) LocalDate.parse(row.get(LEGACY_DATE_COLUMN).trim()).toEpochDay(),
+                RecordEntry.NO_TIME
+            );
+        } catch (NumberFormatException | DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * `FieldSink` parsing Record DB rows straight into parallel
+     * primitive columns, so no object is created per row, until
+     * `getEntries()` is called. The header row and damaged rows
+     * are skipped.
+     * */
+    static class EntryCollector implements CsvTokenizer.FieldSink {
+        private static final int INITIAL_CAPACITY = 1024;
+
+        // -- Collected columns section --
+        private int[] foodIds      = new int[INITIAL_CAPACITY];
+        private int[] masses       = new int[INITIAL_CAPACITY];
+        private int[] epochDays    = new int[INITIAL_CAPACITY];
+        private int[] secondsOfDay = new int[INITIAL_CAPACITY];
+        private int   size         = 0;
+
+        // -- Current row section --
+        private int     foodId;
+        private int     mass;
+        private int     epochDay;
+        private int     secondOfDay;
+        private boolean damaged;
+
+        EntryCollector() {
+            resetRow();
+        }
+
+        @Override
+        public void field(int column, String value) {
+            if (column > SECOND_OF_DAY_COLUMN || damaged) {
+                return;
+            }
+
+            if (column == SECOND_OF_DAY_COLUMN && value.isEmpty()) {
+                secondOfDay = RecordEntry.NO_TIME;
+                return;
+            }
+
+            try {
+                int number = Integer.parseInt(value.trim());
+
+                switch (column) {
+                    case ID_COLUMN:
+                        foodId = number;
+                        break;
+                    case MASS_COLUMN:
+                        mass = number;
+                        break;
+                    case EPOCH_DAY_COLUMN:
+                        epochDay = number;
+                        break;
+                    case SECOND_OF_DAY_COLUMN:
+                        secondOfDay = number;
+                        break;
+                }
+            } catch (NumberFormatException e) {
+                // Header row or damaged row
+                damaged = true;
+            }
+        }
+
+        @Override
+        public void endRow() {
+            if (!damaged && epochDay != Integer.MIN_VALUE) {
+                if (size == foodIds.length) {
+                    int capacity = size * 2;
+
+                    foodIds      = Arrays.copyOf(foodIds, capacity);
+                    masses       = Arrays.copyOf(masses, capacity);
+                    epochDays    = Arrays.copyOf(epochDays, capacity);
+                    secondsOfDay = Arrays.copyOf(secondsOfDay, capacity);
+                }
+
+                foodIds[size]      = foodId;
+                masses[size]       = mass;
+                epochDays[size]    = epochDay;
+                secondsOfDay[size] = secondOfDay;
+                size++;
+            }
+
+            resetRow();
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * @return New list of the collected entries.
+         */
+        List<RecordEntry> getEntries() {
+            List<RecordEntry> entries = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++)
+                entries.add(new RecordEntry(foodIds[i], masses[i], epochDays[i], secondsOfDay[i]));
+
+            return entries;
+        }
+
+        /**
+         * Appends the collected entries to `store` without
+         * creating `RecordEntry` objects.
+         */
+        void appendTo(RecordStore store) {
+            for (int i = 0; i < size; i++)
+                store.append(foodIds[i], masses[i], epochDays[i], secondsOfDay[i]);
+        }
+
+        private void resetRow() {
+            foodId      = 0;
+            mass        = 0;
+            epochDay    = Integer.MIN_VALUE;
+            secondOfDay = RecordEntry.NO_TIME;
+            damaged     = false;
+        }
+    }
+}
@@ -0,0 +1,720 @@
+package sample;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * `RecordDBArchive` class is the cold storage of old Record DB
+ * history: entries older than a cut-off day are sealed into
+ * compressed blocks of `blockDays` days, while the recent tail
+ * stays in the `.csv` file for fast appends.
+ *
+ * Archive file format (big-endian), `EXTENSION` appended to the
+ * Record DB file name:
+ *  Header - magic and version.
+ *  Blocks - entries of one block sorted by day, as food id,
+ *           mass, day offset from the first day and second of
+ *           day columns of `int`s, compressed with `Deflater`.
+ *  Index  - first and last day, entry amount, offset, compressed
+ *           size and CRC32 of every block.
+ *  Footer - index offset, block amount, seal marker and magic.
+ *
+ * Opening reads the footer and the index only; queries decompress
+ * only the blocks, whose day ranges overlap the query. Blocks of
+ * later seals may overlap earlier ones, e.g. for back-dated
+ * entries, so all overlapping blocks are read.
+ *
+ * `seal()` rewrites the archive and the `.csv` file, each through
+ * a temporary file, and must not run while the Record DB is in
+ * use, e.g. by a `DiaryEngine`. The readers of the Record DB
+ * reload both, as the `.csv` file was rewritten.
+ *
+ * The archive is replaced first, its seal marker holds the cut-off
+ * day, length and CRC32 of the sealed `.csv` file, and is cleared,
+ * once the `.csv` file was replaced too. If the seal is interrupted
+ * in between, the sealed `.csv` file is still in place, and
+ * `finishSeal()`, that runs before the Record DB is read or
+ * appended to, see `RecordDB.prepare()`, drops its sealed entries,
+ * so they are never counted twice.
+ * */
+public class RecordDBArchive {
+    /**
+     * "FDRA" in ASCII
+     * */
+    static final int MAGIC   = 0x46445241;
+    static final int VERSION = 2;
+
+    public static final String EXTENSION = ".archive";
+
+    public static final int DEFAULT_BLOCK_DAYS = 32;
+
+    // -- File layout section --
+    static final int HEADER_SIZE      = 8;
+    static final int INDEX_ENTRY_SIZE = 28;
+    static final int FOOTER_SIZE      = 32;
+
+    // -- Footer layout section --
+    static final int INDEX_OFFSET_FIELD    = 0;
+    static final int BLOCK_AMOUNT_FIELD    = 8;
+    static final int SEALED_BEFORE_FIELD   = 12;
+    static final int SOURCE_LENGTH_FIELD   = 16;
+    static final int SOURCE_CHECKSUM_FIELD = 24;
+    static final int FOOTER_MAGIC_FIELD    = 28;
+
+    /**
+     * Source length of a cleared seal marker
+     * */
+    static final long NO_SOURCE = -1;
+
+    /**
+     * Uncompressed bytes per entry
+     * */
+    static final int ENTRY_SIZE = 16;
+
+    private final File archiveFile;
+    private final long length;
+    private final long lastModified;
+
+    // -- Block index section --
+    private final int    blockAmount;
+    private final int[]  firstDays;
+    private final int[]  lastDays;
+    private final int[]  entryAmounts;
+    private final long[] offsets;
+    private final int[]  compressedSizes;
+    private final int[]  checksums;
+
+    private RecordDBArchive(File archiveFile, long length, long lastModified, int blockAmount) {
+        this.archiveFile     = archiveFile;
+        this.length          = length;
+        this.lastModified    = lastModified;
+        this.blockAmount     = blockAmount;
+        this.firstDays       = new int[blockAmount];
+        this.lastDays        = new int[blockAmount];
+        this.entryAmounts    = new int[blockAmount];
+        this.offsets         = new long[blockAmount];
+        this.compressedSizes = new int[blockAmount];
+        this.checksums       = new int[blockAmount];
+    }
+
+    public static File getArchiveFile(File recordDBFile) {
+        return new File(recordDBFile.getPath() + EXTENSION);
+    }
+
+    /**
+     * Reads the block index of the archive of `recordDBFile`.
+     *
+     * @param recordDBFile Record DB `.csv` file.
+     * @return             Archive, empty, if there is no
+     *                     archive file.
+     * @throws IOException If the archive is damaged, or in case
+     *                     of reading errors.
+     */
+    public static RecordDBArchive open(File recordDBFile) throws IOException {
+        File archiveFile = getArchiveFile(recordDBFile);
+
+        if (!archiveFile.exists()) {
+            return new RecordDBArchive(archiveFile, -1, -1, 0);
+        }
+
+        long lastModified = archiveFile.lastModified();
+
+        try (FileChannel channel = FileChannel.open(archiveFile.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+
+            if (length < HEADER_SIZE + FOOTER_SIZE) {
+                throw new IOException("Truncated Record DB archive: " + archiveFile);
+            }
+
+            ByteBuffer header = read(channel, 0, HEADER_SIZE);
+            ByteBuffer footer = read(channel, length - FOOTER_SIZE, FOOTER_SIZE);
+
+            long indexOffset = footer.getLong(INDEX_OFFSET_FIELD);
+            int  blockAmount = footer.getInt(BLOCK_AMOUNT_FIELD);
+
+            if (
+                header.getInt() != MAGIC
+                || header.getInt() != VERSION
+                || footer.getInt(FOOTER_MAGIC_FIELD) != MAGIC
+                || blockAmount < 0
+                || indexOffset != length - FOOTER_SIZE - (long) blockAmount * INDEX_ENTRY_SIZE
+            ) {
+                throw new IOException("Not a Record DB archive of version " + VERSION + ": " + archiveFile);
+            }
+
+            RecordDBArchive archive = new RecordDBArchive(archiveFile, length, lastModified, blockAmount);
+            ByteBuffer      index   = read(channel, indexOffset, blockAmount * INDEX_ENTRY_SIZE);
+
+            for (int i = 0; i < blockAmount; i++) {
+                archive.firstDays[i]       = index.getInt();
+                archive.lastDays[i]        = index.getInt();
+                archive.entryAmounts[i]    = index.getInt();
+                archive.offsets[i]         = index.getLong();
+                archive.compressedSizes[i] = index.getInt();
+                archive.checksums[i]       = index.getInt();
+            }
+
+            return archive;
+        }
+    }
+
+    /**
+     * @return `true`, if the archive file was changed or removed
+     *         since it was opened.
+     */
+    public boolean isOutdated() {
+        return archiveFile.exists()
+            ? archiveFile.length() != length || archiveFile.lastModified() != lastModified
+            : length != -1;
+    }
+
+    // -- Block index section --
+    public int getBlockAmount() {
+        return blockAmount;
+    }
+
+    public int getEntryAmount() {
+        int entryAmount = 0;
+
+        for (int i = 0; i < blockAmount; i++)
+            entryAmount += entryAmounts[i];
+
+        return entryAmount;
+    }
+
+    /**
+     * @return Last archived epoch day, or `Integer.MIN_VALUE`,
+     *         if the archive is empty.
+     */
+    public int getLastDay() {
+        int lastDay = Integer.MIN_VALUE;
+
+        for (int i = 0; i < blockAmount; i++)
+            lastDay = Math.max(lastDay, lastDays[i]);
+
+        return lastDay;
+    }
+
+    /**
+     * @return Archive file size in bytes, `0`, if there is
+     *         no file.
+     */
+    public long getFileSize() {
+        return Math.max(0, length);
+    }
+
+    /**
+     * @return Indexes of the blocks overlapping
+     *         `[fromDay, toDay]`, in file order.
+     */
+    public int[] findBlocks(int fromDay, int toDay) {
+        int[] blocks = new int[blockAmount];
+        int   amount = 0;
+
+        for (int i = 0; i < blockAmount; i++) {
+            if (firstDays[i] <= toDay && fromDay <= lastDays[i]) {
+                blocks[amount++] = i;
+            }
+        }
+
+        return Arrays.copyOf(blocks, amount);
+    }
+
+    // -- Reading section --
+    /**
+     * Decompresses the blocks overlapping `[fromDay, toDay]`.
+     *
+     * @param fromDay First epoch day, inclusive.
+     * @param toDay   Last epoch day, inclusive.
+     * @return        Entries of the range, by block and day.
+     * @throws IOException If a block is damaged, or in case of
+     *                     reading errors.
+     */
+    public List<RecordEntry> read(int fromDay, int toDay) throws IOException {
+        List<RecordEntry> entries = new ArrayList<>();
+        int[]             blocks  = findBlocks(fromDay, toDay);
+
+        if (blocks.length == 0) {
+            return entries;
+        }
+
+        try (FileChannel channel = FileChannel.open(archiveFile.toPath(), StandardOpenOption.READ)) {
+            for (int block : blocks) {
+                ByteBuffer data = readBlock(channel, block);
+                int        size = entryAmounts[block];
+
+                for (int i = 0; i < size; i++) {
+                    int epochDay = firstDays[block] + data.getInt((2 * size + i) * Integer.BYTES);
+
+                    if (epochDay >= fromDay && epochDay <= toDay) {
+                        entries.add(new RecordEntry(
+                            data.getInt(i * Integer.BYTES),
+                            data.getInt((size + i) * Integer.BYTES),
+                            epochDay,
+                            data.getInt((3 * size + i) * Integer.BYTES)
+                        ));
+                    }
+                }
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * Decompresses all the blocks into `store`.
+     *
+     * @throws IOException If a block is damaged, or in case of
+     *                     reading errors.
+     */
+    public void appendTo(RecordStore store) throws IOException {
+        if (blockAmount == 0) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(archiveFile.toPath(), StandardOpenOption.READ)) {
+            for (int block = 0; block < blockAmount; block++) {
+                ByteBuffer data = readBlock(channel, block);
+                int        size = entryAmounts[block];
+
+                for (int i = 0; i < size; i++)
+                    store.append(
+                        data.getInt(i * Integer.BYTES),
+                        data.getInt((size + i) * Integer.BYTES),
+                        firstDays[block] + data.getInt((2 * size + i) * Integer.BYTES),
+                        data.getInt((3 * size + i) * Integer.BYTES)
+                    );
+            }
+        }
+    }
+
+    /**
+     * @return All the archived entries, by block and day.
+     */
+    public List<RecordEntry> readAll() throws IOException {
+        return read(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return Uncompressed columns of `block`.
+     */
+    private ByteBuffer readBlock(FileChannel channel, int block) throws IOException {
+        byte[] compressed = read(channel, offsets[block], compressedSizes[block]).array();
+
+        CRC32 crc = new CRC32();
+        crc.update(compressed, 0, compressed.length);
+
+        if ((int) crc.getValue() != checksums[block]) {
+            throw new IOException("Damaged block " + block + " of " + archiveFile);
+        }
+
+        byte[]   data     = new byte[entryAmounts[block] * ENTRY_SIZE];
+        Inflater inflater = new Inflater();
+
+        try {
+            inflater.setInput(compressed);
+
+            int size = 0;
+
+            while (size < data.length && !inflater.finished()) {
+                int inflated = inflater.inflate(data, size, data.length - size);
+
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+
+                size += inflated;
+            }
+
+            if (size != data.length) {
+                throw new IOException("Truncated block " + block + " of " + archiveFile);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Damaged block " + block + " of " + archiveFile, e);
+        } finally {
+            inflater.end();
+        }
+
+        return ByteBuffer.wrap(data);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+
+        buffer.flip();
+
+        return buffer;
+    }
+
+    // -- Sealing section --
+    /**
+     * Moves the entries of `recordDBFile`, that are older than
+     * `beforeDay`, into compressed blocks of the archive, and
+     * rewrites the `.csv` file with the remaining entries in
+     * file order. The blocks of earlier seals are kept as they
+     * are. Must not run while the Record DB is in use.
+     *
+     * @param recordDBFile Record DB `.csv` file.
+     * @param beforeDay    First epoch day kept in the `.csv` file.
+     * @param blockDays    Days per block, blocks are aligned to
+     *                     multiples of `blockDays` epoch days.
+     * @return             Amount of sealed entries.
+     * @throws IOException In case of reading or writing errors.
+     */
+    public static int seal(File recordDBFile, int beforeDay, int blockDays) throws IOException {
+        if (blockDays <= 0) {
+            throw new IllegalArgumentException("Block days must be positive");
+        }
+
+        if (!recordDBFile.exists()) {
+            throw new IOException("No Record DB file: " + recordDBFile);
+        }
+
+        // Finishing an interrupted seal first, see the class comment
+        RecordDB.prepare(recordDBFile);
+
+        RecordDBPrefix source = new RecordDBPrefix(recordDBFile);
+        source.advance(recordDBFile.length());
+
+        List<RecordEntry> entries = RecordDB.parse(recordDBFile);
+
+        List<RecordEntry> sealed = new ArrayList<>();
+        List<RecordEntry> tail   = new ArrayList<>();
+
+        for (RecordEntry entry : entries)
+            (entry.getEpochDay() < beforeDay ? sealed : tail).add(entry);
+
+        if (sealed.isEmpty()) {
+            return 0;
+        }
+
+        // Stable, the entries of a day stay in file order
+        sealed.sort(Comparator.comparingInt(RecordEntry::getEpochDay));
+
+        RecordDBArchive archive     = open(recordDBFile);
+        File            archiveFile = archive.archiveFile;
+        File            archiveTemp = new File(archiveFile.getPath() + ".tmp");
+
+        archive.writeWith(sealed, blockDays, beforeDay, source, archiveTemp);
+
+        // The archive is replaced first, see the class comment
+        Files.move(
+            archiveTemp.toPath(),
+            archiveFile.toPath(),
+            StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING
+        );
+
+        replaceTail(recordDBFile, tail);
+        clearSealMarker(archiveFile);
+
+        return sealed.size();
+    }
+
+    /**
+     * Finishes a `seal()` of `recordDBFile`, that was interrupted
+     * after the archive was replaced: if the `.csv` file still is
+     * the sealed one, its sealed entries are dropped. Clears the
+     * seal marker of the archive.
+     *
+     * @param recordDBFile Record DB `.csv` file.
+     * @return             `true`, if the `.csv` file was rewritten.
+     * @throws IOException In case of reading or writing errors.
+     */
+    static boolean finishSeal(File recordDBFile) throws IOException {
+        File archiveFile = getArchiveFile(recordDBFile);
+
+        if (!archiveFile.exists()) {
+            return false;
+        }
+
+        ByteBuffer footer;
+
+        try (FileChannel channel = FileChannel.open(archiveFile.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+
+            if (length < HEADER_SIZE + FOOTER_SIZE) {
+                return false; // Damaged archives are reported by `open()`
+            }
+
+            footer = read(channel, length - FOOTER_SIZE, FOOTER_SIZE);
+        }
+
+        long sourceLength = footer.getLong(SOURCE_LENGTH_FIELD);
+
+        if (footer.getInt(FOOTER_MAGIC_FIELD) != MAGIC || sourceLength == NO_SOURCE) {
+            return false;
+        }
+
+        boolean sealedInPlace = false;
+
+        if (recordDBFile.length() == sourceLength) {
+            RecordDBPrefix source = new RecordDBPrefix(recordDBFile);
+            source.restore(sourceLength, footer.getInt(SOURCE_CHECKSUM_FIELD) & 0xFFFFFFFFL);
+
+            sealedInPlace = source.isIntact();
+        }
+
+        if (sealedInPlace) {
+            int               beforeDay = footer.getInt(SEALED_BEFORE_FIELD);
+            List<RecordEntry> tail      = new ArrayList<>();
+
+            for (RecordEntry entry : RecordDB.parse(recordDBFile)) {
+                if (entry.getEpochDay() >= beforeDay) {
+                    tail.add(entry);
+                }
+            }
+
+            replaceTail(recordDBFile, tail);
+        }
+
+        clearSealMarker(archiveFile);
+
+        return sealedInPlace;
+    }
+
+    /**
+     * Replaces `recordDBFile` with a new file of `tail` entries
+     * in one atomic move.
+     */
+    private static void replaceTail(File recordDBFile, List<RecordEntry> tail) throws IOException {
+        File tailTemp = new File(recordDBFile.getPath() + ".tmp");
+
+        Files.deleteIfExists(tailTemp.toPath());
+        RecordDB.append(tailTemp, tail);
+
+        Files.move(
+            tailTemp.toPath(),
+            recordDBFile.toPath(),
+            StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING
+        );
+    }
+
+    /**
+     * Marks the seal, the archive was written by, as finished.
+     */
+    private static void clearSealMarker(File archiveFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(archiveFile.toPath(), StandardOpenOption.WRITE)) {
+            ByteBuffer marker = ByteBuffer.allocate(Long.BYTES);
+            marker.putLong(0, NO_SOURCE);
+
+            channel.write(marker, channel.size() - FOOTER_SIZE + SOURCE_LENGTH_FIELD);
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Writes the blocks of this archive and new blocks of
+     * `sealed` entries, sorted by day, into `target`, with
+     * the seal marker of `source`.
+     */
+    private void writeWith(
+        List<RecordEntry> sealed,
+        int               blockDays,
+        int               beforeDay,
+        RecordDBPrefix    source,
+        File              target
+    ) throws IOException {
+        List<long[]> newIndex = new ArrayList<>();
+        long         offset   = HEADER_SIZE;
+
+        try (
+            FileOutputStream file = new FileOutputStream(target);
+            DataOutputStream out  = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))
+        ) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            // Copying the old blocks as they are
+            if (blockAmount > 0) {
+                long oldBlocksEnd = length - FOOTER_SIZE - (long) blockAmount * INDEX_ENTRY_SIZE;
+
+                out.flush();
+
+                try (FileChannel channel = FileChannel.open(archiveFile.toPath(), StandardOpenOption.READ)) {
+                    long position = HEADER_SIZE;
+
+                    while (position < oldBlocksEnd)
+                        position += channel.transferTo(position, oldBlocksEnd - position, file.getChannel());
+                }
+
+                offset = oldBlocksEnd;
+            }
+
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+
+            try {
+                int from = 0;
+
+                while (from < sealed.size()) {
+                    int window = Math.floorDiv(sealed.get(from).getEpochDay(), blockDays);
+                    int to     = from + 1;
+
+                    while (to < sealed.size() && Math.floorDiv(sealed.get(to).getEpochDay(), blockDays) == window)
+                        to++;
+
+                    List<RecordEntry> block      = sealed.subList(from, to);
+                    byte[]            compressed = compress(deflater, block);
+
+                    CRC32 crc = new CRC32();
+                    crc.update(compressed, 0, compressed.length);
+
+                    out.write(compressed);
+
+                    newIndex.add(new long[] {
+                        block.get(0).getEpochDay(),
+                        block.get(block.size() - 1).getEpochDay(),
+                        block.size(),
+                        offset,
+                        compressed.length,
+                        (int) crc.getValue()
+                    });
+
+                    offset += compressed.length;
+                    from    = to;
+                }
+            } finally {
+                deflater.end();
+            }
+
+            // -- Index and footer --
+            for (int i = 0; i < blockAmount; i++) {
+                out.writeInt(firstDays[i]);
+                out.writeInt(lastDays[i]);
+                out.writeInt(entryAmounts[i]);
+                out.writeLong(offsets[i]);
+                out.writeInt(compressedSizes[i]);
+                out.writeInt(checksums[i]);
+            }
+
+            for (long[] block : newIndex) {
+                out.writeInt((int) block[0]);
+                out.writeInt((int) block[1]);
+                out.writeInt((int) block[2]);
+                out.writeLong(block[3]);
+                out.writeInt((int) block[4]);
+                out.writeInt((int) block[5]);
+            }
+
+            out.writeLong(offset);
+            out.writeInt(blockAmount + newIndex.size());
+            out.writeInt(beforeDay);
+            out.writeLong(source.getLength());
+            out.writeInt((int) source.getChecksum());
+            out.writeInt(MAGIC);
+
+            out.flush();
+            file.getFD().sync();
+        }
+    }
+
+    /**
+     * Compresses the columns of `block`, whose entries are
+     * sorted by day.
+     */
+    private static byte[] compress(Deflater deflater, List<RecordEntry> block) {
+        int        size     = block.size();
+        int        firstDay = block.get(0).getEpochDay();
+        ByteBuffer data     = ByteBuffer.allocate(size * ENTRY_SIZE);
+
+        for (RecordEntry entry : block)
+            data.putInt(entry.getFoodId());
+
+        for (RecordEntry entry : block)
+            data.putInt(entry.getMass());
+
+        for (RecordEntry entry : block)
+            data.putInt(entry.getEpochDay() - firstDay);
+
+        for (RecordEntry entry : block)
+            data.putInt(entry.getSecondOfDay());
+
+        deflater.reset();
+        deflater.setInput(data.array());
+        deflater.finish();
+
+        byte[] buffer = new byte[Math.max(64, data.capacity() / 2)];
+        int    length = 0;
+
+        while (!deflater.finished()) {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Usage: `java sample.RecordDBArchive seal <.csv file>
+     * <kept days> [block days]`, sealing the entries older than
+     * the kept days before the last recorded day, or
+     * `java sample.RecordDBArchive info <.csv file>`.
+     */
+    public static void main(String[] args) throws IOException {
+        boolean seal = args.length >= 3 && args.length <= 4 && args[0].equals("seal");
+        boolean info = args.length == 2 && args[0].equals("info");
+
+        if (!seal && !info) {
+            System.err.println(
+                "Usage: java sample.RecordDBArchive seal <.csv file> <kept days> [block days]\n"
+                + "       java sample.RecordDBArchive info <.csv file>"
+            );
+            System.exit(1);
+        }
+
+        File recordDBFile = new File(args[1]);
+
+        if (seal) {
+            RecordDBDateIndex dateIndex = new RecordDBDateIndex(recordDBFile);
+
+            if (!dateIndex.update() || dateIndex.getRowAmount() == 0) {
+                System.err.println("No entries in " + recordDBFile);
+                System.exit(1);
+            }
+
+            int sealedAmount = seal(
+                recordDBFile,
+                dateIndex.getLastDay() - Integer.parseInt(args[2]) + 1,
+                (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_BLOCK_DAYS
+            );
+
+            System.out.println(sealedAmount + " entries sealed");
+        }
+
+        RecordDBArchive archive = open(recordDBFile);
+
+        System.out.printf(
+            "Archive: %d entries in %d blocks, %d bytes; tail: %d bytes%n",
+            archive.getEntryAmount(),
+            archive.getBlockAmount(),
+            archive.getFileSize(),
+            recordDBFile.length()
+        );
+    }
+}
@@ -0,0 +1,630 @@
+package sample;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * `RecordDBDateIndex` class is a sparse, persisted index from
+ * entry dates to their location in the Record DB file.
+ *
+ * Entries are appended in date order, so every run of rows with
+ * the same epoch day becomes one index entry: the day, the byte
+ * offset of its first line, its first row number and its row
+ * amount. A day or a range of days is located with a binary
+ * search and read without touching the rest of the file.
+ *
+ * The index is kept in a file with `EXTENSION` appended to the
+ * Record DB file name and is extended by `update()` after every
+ * append, scanning only the new lines. Only the new index entries
+ * and the last one, whose row amount may have grown, are written
+ * in place, then the header with the new counts. When the Record
+ * DB file was rewritten, the index is rebuilt and its file is
+ * replaced. An index file, whose header does not match its
+ * entries, e.g. after a torn write, is rebuilt as well.
+ *
+ * The index is not thread safe.
+ * */
+public class RecordDBDateIndex {
+    /**
+     * "FDDI" in ASCII
+     * */
+    static final int MAGIC   = 0x46444449;
+    static final int VERSION = 2;
+
+    static final String EXTENSION = ".idx";
+
+    private static final int SCAN_BUFFER_SIZE = 1 << 16;
+
+    // -- File layout section --
+    static final int HEADER_SIZE = 2 * Integer.BYTES + 2 * Long.BYTES + 2 * Integer.BYTES;
+    static final int ENTRY_SIZE  = 3 * Integer.BYTES + Long.BYTES;
+
+    /**
+     * Location of a run of Record DB rows
+     * */
+    public static class Range {
+        private final long startOffset;
+        private final long endOffset;
+        private final int  firstRow;
+        private final int  rowAmount;
+
+        Range(long startOffset, long endOffset, int firstRow, int rowAmount) {
+            this.startOffset = startOffset;
+            this.endOffset   = endOffset;
+            this.firstRow    = firstRow;
+            this.rowAmount   = rowAmount;
+        }
+
+        public long getStartOffset() {
+            return startOffset;
+        }
+
+        public long getEndOffset() {
+            return endOffset;
+        }
+
+        public int getFirstRow() {
+            return firstRow;
+        }
+
+        public int getRowAmount() {
+            return rowAmount;
+        }
+    }
+
+    private final File recordDBFile;
+    private final File indexFile;
+
+    // -- Index entries section --
+    private int    size      = 0;
+    private int[]  days      = new int[16];
+    private long[] offsets   = new long[16];
+    private int[]  firstRows = new int[16];
+    private int[]  rowCounts = new int[16];
+
+    /**
+     * `true`, while every entry has a larger day than the
+     * previous one, i.e. binary search is possible
+     * */
+    private boolean sorted = true;
+
+    /**
+     * Indexed prefix, up to the last indexed line feed
+     * */
+    private final RecordDBPrefix indexedPrefix;
+
+    /**
+     * Amount of indexed rows
+     * */
+    private int rowAmount = 0;
+
+    /**
+     * Amount of entries in the index file, or `-1`, if the
+     * file must be replaced
+     * */
+    private int savedSize = -1;
+
+    public RecordDBDateIndex(File recordDBFile) {
+        this(recordDBFile, new RecordDBPrefix.FileState(recordDBFile));
+    }
+
+    /**
+     * @param recordDBFile Record DB file to index.
+     * @param fileState    State of `recordDBFile`, shared with
+     *                     its writer, see `RecordDBPrefix`.
+     */
+    public RecordDBDateIndex(File recordDBFile, RecordDBPrefix.FileState fileState) {
+        this.recordDBFile  = recordDBFile;
+        this.indexFile     = new File(recordDBFile.getPath() + EXTENSION);
+        this.indexedPrefix = new RecordDBPrefix(recordDBFile, fileState);
+    }
+
+    /**
+     * Brings the index up to date with the Record DB file,
+     * loading it from its file first, if needed, and saves it.
+     *
+     * @return `false`, if there is no Record DB file.
+     * @throws IOException In case of reading or writing errors.
+     */
+    public boolean update() throws IOException {
+        if (!recordDBFile.exists()) {
+            clear();
+            return false;
+        }
+
+        RecordDB.prepare(recordDBFile);
+
+        if (indexedPrefix.getLength() == 0 && indexFile.exists()) {
+            try {
+                load();
+            } catch (IOException e) {
+                // Damaged index, rebuilding it below
+                clear();
+            }
+        }
+
+        long size = recordDBFile.length();
+
+        // Handling rewritten Record DB files
+        if (!indexedPrefix.isIntact()) {
+            clear();
+        }
+
+        if (size > indexedPrefix.getLength() && scan(size)) {
+            save();
+        }
+
+        return true;
+    }
+
+    /**
+     * @return Epoch day of the last appended row, or
+     *         `Integer.MIN_VALUE`, if there are no rows.
+     */
+    public int getLastDay() {
+        return (size > 0) ? days[size - 1] : Integer.MIN_VALUE;
+    }
+
+    public int getRowAmount() {
+        return rowAmount;
+    }
+
+    /**
+     * Locates all rows with epoch days in `[fromDay, toDay]`.
+     *
+     * @param fromDay First epoch day, inclusive.
+     * @param toDay   Last epoch day, inclusive.
+     * @return        Row ranges in file order, adjacent
+     *                ranges are merged.
+     */
+    public List<Range> find(int fromDay, int toDay) {
+        List<Range> ranges = new ArrayList<>();
+
+        int from = 0;
+        int to   = size;
+
+        if (sorted) {
+            from = lowerBound(fromDay);
+            to   = (toDay == Integer.MAX_VALUE) ? size : lowerBound(toDay + 1);
+        }
+
+        for (int i = from; i < to; i++) {
+            if (days[i] < fromDay || days[i] > toDay) {
+                continue;
+            }
+
+            long end = (i + 1 < size) ? offsets[i + 1] : indexedPrefix.getLength();
+
+            Range last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+
+            if (last != null && last.endOffset == offsets[i]) {
+                ranges.set(ranges.size() - 1, new Range(
+                    last.startOffset,
+                    end,
+                    last.firstRow,
+                    last.rowAmount + rowCounts[i]
+                ));
+            } else {
+                ranges.add(new Range(offsets[i], end, firstRows[i], rowCounts[i]));
+            }
+        }
+
+        return ranges;
+    }
+
+    /**
+     * Reads entries with epoch days in `[fromDay, toDay]`
+     * from the indexed part of the Record DB file.
+     *
+     * @param fromDay First epoch day, inclusive.
+     * @param toDay   Last epoch day, inclusive.
+     * @return        Entries in file order.
+     * @throws IOException In case of reading errors.
+     */
+    public List<RecordEntry> read(int fromDay, int toDay) throws IOException {
+        List<RecordEntry> entries = new ArrayList<>();
+
+        for (Range range : find(fromDay, toDay)) {
+            List<RecordDB.EntryCollector> chunkCollectors =
+                ParallelCsvLoader.load(
+                    recordDBFile,
+                    range.startOffset,
+                    range.endOffset,
+                    chunkIndex -> new RecordDB.EntryCollector()
+                );
+
+            for (RecordDB.EntryCollector ec : chunkCollectors)
+                entries.addAll(ec.getEntries());
+        }
+
+        return entries;
+    }
+
+    /**
+     * Index of the first entry with a day not smaller
+     * than `day`.
+     */
+    private int lowerBound(int day) {
+        int low  = 0;
+        int high = size;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (days[middle] < day) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Indexes complete lines after the indexed prefix, up to
+     * `size`, and extends the prefix over them. After a failure
+     * the index is cleared.
+     *
+     * @return `true`, if any line was indexed.
+     */
+    private boolean scan(long size) throws IOException {
+        long startLength   = indexedPrefix.getLength();
+        long indexedLength = startLength;
+
+        /*
+         * `indexLine()` extends the index before the prefix is
+         * advanced over the lines, so after a failure the index
+         * is dropped, instead of indexing the lines twice on the
+         * next scan
+         * */
+        try {
+            try (
+                FileChannel channel = FileChannel.open(
+                    recordDBFile.toPath(),
+                    StandardOpenOption.READ
+                )
+            ) {
+                ByteBuffer buffer    = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+                byte[]     line      = new byte[256];
+                int        lineSize  = 0;
+                long       lineStart = startLength;
+                long       position  = startLength;
+
+                while (position < size) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), size - position));
+
+                    int read = channel.read(buffer, position);
+
+                    if (read <= 0) {
+                        break;
+                    }
+
+                    for (int i = 0; i < read; i++) {
+                        byte b = buffer.get(i);
+
+                        if (b == '\n') {
+                            indexLine(line, lineSize, lineStart);
+
+                            lineSize      = 0;
+                            lineStart     = position + i + 1;
+                            indexedLength = lineStart;
+                        } else {
+                            if (lineSize == line.length) {
+                                line = Arrays.copyOf(line, lineSize * 2);
+                            }
+
+                            line[lineSize++] = b;
+                        }
+                    }
+
+                    position += read;
+                }
+            }
+
+            indexedPrefix.advance(indexedLength);
+        } catch (IOException | RuntimeException e) {
+            clear();
+            throw e;
+        }
+
+        return indexedLength > startLength;
+    }
+
+    /**
+     * Adds one Record DB line to the index. The header row
+     * and damaged rows are skipped, the same way
+     * `RecordDB.EntryCollector` skips them.
+     */
+    private void indexLine(byte[] line, int lineSize, long lineStart) {
+        // Dropping "\r" of "\r\n" line breaks
+        if (lineSize > 0 && line[lineSize - 1] == '\r') {
+            lineSize--;
+        }
+
+        int epochDay   = 0;
+        int field      = 0;
+        int fieldStart = 0;
+
+        for (int i = 0; i <= lineSize && field <= RecordDB.SECOND_OF_DAY_COLUMN; i++) {
+            if (i < lineSize && line[i] != ',') {
+                continue;
+            }
+
+            boolean optional = (field == RecordDB.SECOND_OF_DAY_COLUMN);
+            long    value    = parseField(line, fieldStart, i, optional);
+
+            if (value == Long.MIN_VALUE) {
+                return; // Header or damaged row
+            } else if (field == RecordDB.EPOCH_DAY_COLUMN) {
+                epochDay = (int) value;
+            }
+
+            field++;
+            fieldStart = i + 1;
+        }
+
+        if (field <= RecordDB.EPOCH_DAY_COLUMN) {
+            return; // Too few fields
+        }
+
+        if (size > 0 && days[size - 1] == epochDay) {
+            rowCounts[size - 1]++;
+        } else {
+            if (size == days.length) {
+                days      = Arrays.copyOf(days, size * 2);
+                offsets   = Arrays.copyOf(offsets, size * 2);
+                firstRows = Arrays.copyOf(firstRows, size * 2);
+                rowCounts = Arrays.copyOf(rowCounts, size * 2);
+            }
+
+            if (size > 0 && days[size - 1] > epochDay) {
+                sorted = false; // Clock was moved back
+            }
+
+            days[size]      = epochDay;
+            offsets[size]   = lineStart;
+            firstRows[size] = rowAmount;
+            rowCounts[size] = 1;
+            size++;
+        }
+
+        rowAmount++;
+    }
+
+    /**
+     * Parses an `int` field of `line[start, end)` the way
+     * `Integer.parseInt(value.trim())` would.
+     *
+     * @return Parsed value, `0` for an empty `optional` field,
+     *         or `Long.MIN_VALUE`, if the field is invalid.
+     */
+    private static long parseField(byte[] line, int start, int end, boolean optional) {
+        while (start < end && line[start] <= ' ')
+            start++;
+
+        while (end > start && line[end - 1] <= ' ')
+            end--;
+
+        if (start == end) {
+            return optional ? 0 : Long.MIN_VALUE;
+        }
+
+        boolean negative = (line[start] == '-');
+        long    value    = 0;
+
+        if (negative || line[start] == '+') {
+            start++;
+        }
+
+        if (start == end || end - start > 10) {
+            return Long.MIN_VALUE;
+        }
+
+        for (int i = start; i < end; i++) {
+            if (line[i] < '0' || line[i] > '9') {
+                return Long.MIN_VALUE;
+            }
+
+            value = value * 10 + (line[i] - '0');
+        }
+
+        value = negative ? -value : value;
+
+        return (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+            ? Long.MIN_VALUE
+            : value;
+    }
+
+    private void clear() {
+        size      = 0;
+        sorted    = true;
+        rowAmount = 0;
+        savedSize = -1;
+
+        indexedPrefix.reset();
+    }
+
+    /**
+     * Reads the index file. Counts, that do not match the file
+     * length or the entries, are reported as a damaged index.
+     *
+     * @throws IOException If the index is damaged, or in case
+     *                     of reading errors.
+     */
+    private void load() throws IOException {
+        long fileLength = indexFile.length();
+
+        try (
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(indexFile))
+            )
+        ) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return; // Unknown index, rebuilding it
+            }
+
+            long length   = in.readLong();
+            long checksum = in.readLong();
+            int  rows     = in.readInt();
+            int  entries  = in.readInt();
+
+            if (
+                length < 0
+                || rows < 0
+                || entries < 0
+                || entries > rows
+                || entries > (fileLength - HEADER_SIZE) / ENTRY_SIZE
+            ) {
+                throw new IOException("Damaged date index: " + indexFile);
+            }
+
+            int[]  loadedDays      = new int[Math.max(entries, 16)];
+            long[] loadedOffsets   = new long[loadedDays.length];
+            int[]  loadedFirstRows = new int[loadedDays.length];
+            int[]  loadedRowCounts = new int[loadedDays.length];
+
+            boolean loadedSorted = true;
+            int     nextRow      = 0;
+
+            for (int i = 0; i < entries; i++) {
+                loadedDays[i]      = in.readInt();
+                loadedOffsets[i]   = in.readLong();
+                loadedFirstRows[i] = in.readInt();
+                loadedRowCounts[i] = in.readInt();
+
+                // Entries must cover the rows one after another
+                if (
+                    loadedFirstRows[i] != nextRow
+                    || loadedRowCounts[i] <= 0
+                    || loadedOffsets[i] >= length
+                    || (i > 0 && loadedOffsets[i - 1] >= loadedOffsets[i])
+                ) {
+                    throw new IOException("Damaged date index: " + indexFile);
+                }
+
+                nextRow += loadedRowCounts[i];
+
+                if (i > 0 && loadedDays[i - 1] > loadedDays[i]) {
+                    loadedSorted = false;
+                }
+            }
+
+            if (nextRow != rows) {
+                throw new IOException("Damaged date index: " + indexFile);
+            }
+
+            days      = loadedDays;
+            offsets   = loadedOffsets;
+            firstRows = loadedFirstRows;
+            rowCounts = loadedRowCounts;
+            size      = entries;
+            sorted    = loadedSorted;
+            rowAmount = rows;
+            savedSize = entries;
+
+            indexedPrefix.restore(length, checksum);
+        }
+    }
+
+    /**
+     * Writes the entries added since the last save, and the
+     * last saved entry, whose row amount may have grown, in
+     * place, then the header. A rebuilt index replaces the
+     * file atomically, via a temporary file in the same
+     * directory.
+     */
+    private void save() throws IOException {
+        if (savedSize < 0 || !indexFile.exists()) {
+            replace();
+        } else {
+            int from = Math.max(savedSize - 1, 0);
+
+            try (
+                FileChannel channel = FileChannel.open(
+                    indexFile.toPath(),
+                    StandardOpenOption.WRITE
+                )
+            ) {
+                write(channel, entries(from), HEADER_SIZE + (long) from * ENTRY_SIZE);
+
+                // Header last, `load()` checks it against the entries
+                write(channel, header(), 0);
+            }
+        }
+
+        savedSize = size;
+    }
+
+    private void replace() throws IOException {
+        File tempFile = new File(indexFile.getPath() + ".tmp");
+
+        try (
+            FileChannel channel = FileChannel.open(
+                tempFile.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING
+            )
+        ) {
+            write(channel, header(), 0);
+            write(channel, entries(0), HEADER_SIZE);
+        }
+
+        Files.move(
+            tempFile.toPath(),
+            indexFile.toPath(),
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE
+        );
+    }
+
+    private ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        header.putInt(MAGIC)
+            .putInt(VERSION)
+            .putLong(indexedPrefix.getLength())
+            .putLong(indexedPrefix.getChecksum())
+            .putInt(rowAmount)
+            .putInt(size)
+            .flip();
+
+        return header;
+    }
+
+    /**
+     * @return Entries `[from, size)` in the file layout.
+     */
+    private ByteBuffer entries(int from) {
+        ByteBuffer entries = ByteBuffer.allocate((size - from) * ENTRY_SIZE);
+
+        for (int i = from; i < size; i++) {
+            entries.putInt(days[i])
+                .putLong(offsets[i])
+                .putInt(firstRows[i])
+                .putInt(rowCounts[i]);
+        }
+
+        entries.flip();
+
+        return entries;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer, position + buffer.position());
+    }
+}
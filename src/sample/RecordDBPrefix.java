@@ -0,0 +1,306 @@
+package sample;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * `RecordDBPrefix` class tracks the already consumed prefix of an
+ * append-only Record DB file, i.e. its length and a CRC32 of all
+ * its bytes, so readers only parse what was appended since, and
+ * notice, when the file was rewritten.
+ *
+ * The checksum is kept running: `advance()` only hashes the new
+ * bytes. `isIntact()` trusts the prefix while the file did not
+ * shrink and is in the `FileState` generation, the prefix was
+ * last verified in; otherwise the whole prefix is hashed again, so
+ * truncations, rewrites and in-place edits of any row are
+ * detected.
+ *
+ * Prefixes of one Record DB file may share a `FileState` with its
+ * `RecordDBWriter`, as in `DiaryEngine`: appends of the writer then
+ * keep the generation, and only changes made by anyone else cause
+ * a rehash. A prefix with a `FileState` of its own rehashes after
+ * every change of the file length or modification time.
+ *
+ * The prefix is not thread safe.
+ * */
+public class RecordDBPrefix {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Generation of a Record DB file, shared by the prefixes of
+     * the file and its writer: it is kept, while the file length
+     * and modification time are the ones left by the last check,
+     * or by an append reported by the writer, and incremented on
+     * every other change.
+     *
+     * Changes made by someone else during a reported append are
+     * not detected. The state is thread safe.
+     * */
+    public static final class FileState {
+        private final File file;
+
+        private long    knownLength       = -1;
+        private long    knownLastModified = -1;
+        private long    generation        = 0;
+        private boolean appending         = false;
+
+        public FileState(File file) {
+            this.file = file;
+        }
+
+        /**
+         * @return Current generation of the file.
+         */
+        public synchronized long check() {
+            long lastModified = file.lastModified();
+            long length       = file.length();
+
+            boolean known = appending
+                ? length >= knownLength // Only the writer appends
+                : length == knownLength && lastModified == knownLastModified;
+
+            if (!known) {
+                generation++;
+                knownLength       = length;
+                knownLastModified = lastModified;
+            }
+
+            return generation;
+        }
+
+        /**
+         * Reports, that the writer starts appending to the file.
+         * Must be followed by `endAppend()`.
+         */
+        public synchronized void beginAppend() {
+            check();
+            appending = true;
+        }
+
+        /**
+         * Reports, that the writer stopped appending, keeping the
+         * generation with the new file length and modification
+         * time.
+         */
+        public synchronized void endAppend() {
+            appending         = false;
+            knownLength       = file.length();
+            knownLastModified = file.lastModified();
+        }
+    }
+
+    private final File      file;
+    private final FileState fileState;
+
+    private long length   = 0;
+    private long checksum = 0;
+
+    /**
+     * Running checksum of `[0, length)`, `null`, until a
+     * restored prefix is verified, or after a failed
+     * `advance()`
+     * */
+    private CRC32 crc = new CRC32();
+
+    /**
+     * `FileState` generation, the prefix was last verified
+     * in, or `-1`
+     * */
+    private long verifiedGeneration = -1;
+
+    public RecordDBPrefix(File file) {
+        this(file, new FileState(file));
+    }
+
+    /**
+     * @param file      Record DB file.
+     * @param fileState State of `file`, shared with its other
+     *                  prefixes and its writer.
+     */
+    public RecordDBPrefix(File file, FileState fileState) {
+        this.file      = file;
+        this.fileState = fileState;
+    }
+
+    /**
+     * @return Offset after the consumed prefix.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return CRC32 of the consumed prefix.
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    public void reset() {
+        length             = 0;
+        checksum           = 0;
+        crc                = new CRC32();
+        verifiedGeneration = -1;
+    }
+
+    /**
+     * Restores a persisted prefix, that is verified by the
+     * next `isIntact()`.
+     *
+     * @param length   Prefix length.
+     * @param checksum `getChecksum()` of the prefix.
+     */
+    public void restore(long length, long checksum) {
+        this.length             = length;
+        this.checksum           = checksum;
+        this.crc                = null;
+        this.verifiedGeneration = -1;
+    }
+
+    /**
+     * @return `true`, if the file still starts with the
+     *         consumed prefix.
+     * @throws IOException In case of reading errors.
+     */
+    public boolean isIntact() throws IOException {
+        if (length == 0) {
+            return true;
+        }
+
+        // Taken before hashing, so later changes are verified again
+        long generation = fileState.check();
+
+        if (file.length() < length) {
+            return false;
+        }
+
+        if (generation == verifiedGeneration && crc != null) {
+            return true;
+        }
+
+        CRC32 prefixCrc = new CRC32();
+
+        if (!update(prefixCrc, 0, length) || prefixCrc.getValue() != checksum) {
+            return false;
+        }
+
+        crc                = prefixCrc;
+        verifiedGeneration = generation;
+
+        return true;
+    }
+
+    /**
+     * Extends the prefix to `end`, hashing the new bytes.
+     *
+     * @param end New prefix length, e.g. `findLastLineEnd()`.
+     * @throws IOException In case of reading errors.
+     */
+    public void advance(long end) throws IOException {
+        if (end <= length) {
+            return;
+        }
+
+        long generation = fileState.check();
+
+        // A prefix hashed from the beginning is verified as well
+        if (length == 0) {
+            verifiedGeneration = generation;
+        }
+
+        // Rehashing a restored, not yet verified prefix
+        if (crc == null) {
+            crc = new CRC32();
+
+            if (!update(crc, 0, length)) {
+                throw new IOException("Record DB file was truncated: " + file);
+            }
+        }
+
+        boolean updated = false;
+
+        try {
+            updated = update(crc, length, end);
+        } finally {
+            // A partly updated checksum is rehashed by the next call
+            if (!updated) {
+                crc = null;
+            }
+        }
+
+        if (!updated) {
+            throw new IOException("Record DB file was truncated: " + file);
+        }
+
+        length   = end;
+        checksum = crc.getValue();
+    }
+
+    /**
+     * Finds the offset after the last line feed of the file, so
+     * a line, that is still being written, is not consumed.
+     *
+     * @param size Current file size.
+     * @return     Offset after the last line feed past the
+     *             prefix, or the prefix length.
+     * @throws IOException In case of reading errors.
+     */
+    public long findLastLineEnd(long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer probe = ByteBuffer.allocate(4096);
+            long       end   = size;
+
+            while (end > length) {
+                long start = Math.max(length, end - probe.capacity());
+
+                probe.clear();
+                probe.limit((int) (end - start));
+                channel.read(probe, start);
+
+                for (int i = probe.position() - 1; i >= 0; i--) {
+                    if (probe.get(i) == '\n') {
+                        return start + i + 1;
+                    }
+                }
+
+                end = start;
+            }
+
+            return length;
+        }
+    }
+
+    /**
+     * Hashes `[start, end)` of the file into `target`.
+     *
+     * @return `false`, if the file ends before `end`.
+     */
+    private boolean update(CRC32 target, long start, long end) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer   = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            long       position = start;
+
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+
+                int read = channel.read(buffer, position);
+
+                if (read <= 0) {
+                    return false;
+                }
+
+                buffer.flip();
+                target.update(buffer);
+                position += read;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,170 @@
+package sample;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * `RecordDBReader` class keeps the entries of a Record DB file in
+ * a compact `RecordStore` in memory and re-reads only what was
+ * appended to the file since the previous `refresh()`.
+ *
+ * The reader remembers the byte offset after the last parsed
+ * line and a checksum of the whole parsed prefix, see
+ * `RecordDBPrefix`. When the prefix changed (migration,
+ * truncation, editing by hand), the whole file is reloaded.
+ *
+ * Entries sealed into the `RecordDBArchive` are loaded before the
+ * file on every full load; sealing rewrites the file, so the
+ * archive is reloaded together with it.
+ *
+ * The reader is not thread safe.
+ * */
+public class RecordDBReader {
+    private final File recordDBFile;
+
+    /**
+     * Entries of all parsed lines in file order
+     * */
+    private final RecordStore entries;
+
+    /**
+     * Parsed prefix, up to the last parsed line feed
+     * */
+    private final RecordDBPrefix parsedPrefix;
+
+    /**
+     * Incremented on every full reload, so users of
+     * `getEntries()` know, when to drop derived data
+     * */
+    private int generation = 0;
+
+    /**
+     * @param recordDBFile Record DB file to read.
+     * @param sourceDB     Source DB, the food options of the
+     *                     entries are encoded with.
+     */
+    public RecordDBReader(File recordDBFile, SourceDB sourceDB) {
+        this(recordDBFile, sourceDB, false);
+    }
+
+    /**
+     * @param recordDBFile Record DB file to read.
+     * @param sourceDB     Source DB, the food options of the
+     *                     entries are encoded with.
+     * @param offHeap      `true` to keep the entries off
+     *                     the Java heap.
+     */
+    public RecordDBReader(File recordDBFile, SourceDB sourceDB, boolean offHeap) {
+        this(recordDBFile, sourceDB, offHeap, new RecordDBPrefix.FileState(recordDBFile));
+    }
+
+    /**
+     * @param recordDBFile Record DB file to read.
+     * @param sourceDB     Source DB, the food options of the
+     *                     entries are encoded with.
+     * @param offHeap      `true` to keep the entries off
+     *                     the Java heap.
+     * @param fileState    State of `recordDBFile`, shared with
+     *                     its writer, see `RecordDBPrefix`.
+     */
+    public RecordDBReader(
+        File                     recordDBFile,
+        SourceDB                 sourceDB,
+        boolean                  offHeap,
+        RecordDBPrefix.FileState fileState
+    ) {
+        this.recordDBFile = recordDBFile;
+        this.entries      = new RecordStore(sourceDB, offHeap);
+        this.parsedPrefix = new RecordDBPrefix(recordDBFile, fileState);
+    }
+
+    /**
+     * Brings the entries up to date with the file.
+     *
+     * @return Frozen snapshot of all entries, or `null`, if
+     *         there is no file.
+     * @throws IOException In case of reading errors.
+     */
+    public RecordStore refresh() throws IOException {
+        if (!recordDBFile.exists()) {
+            reset();
+            return null; // No file was found return value
+        }
+
+        RecordDB.prepare(recordDBFile);
+
+        long size = recordDBFile.length();
+
+        /*
+         * Handling truncated or rewritten files by reloading
+         * them from the beginning
+         * */
+        if (!parsedPrefix.isIntact()) {
+            reset();
+        }
+
+        long parsedLength = parsedPrefix.getLength();
+        long end          = parsedPrefix.findLastLineEnd(size);
+
+        if (end > parsedLength) {
+            List<RecordDB.EntryCollector> chunkCollectors =
+                ParallelCsvLoader.load(
+                    recordDBFile,
+                    parsedLength,
+                    end,
+                    chunkIndex -> new RecordDB.EntryCollector()
+                );
+
+            /*
+             * Appending only after the prefix was extended, and
+             * dropping everything, when that fails, so a failed
+             * (e.g. interrupted) refresh leaves no rows behind,
+             * that the next one would append again
+             * */
+            try {
+                parsedPrefix.advance(end);
+
+                if (parsedLength == 0) {
+                    RecordDBArchive.open(recordDBFile).appendTo(entries);
+                }
+
+                for (RecordDB.EntryCollector ec : chunkCollectors)
+                    ec.appendTo(entries);
+            } catch (IOException | RuntimeException e) {
+                reset();
+                throw e;
+            }
+        }
+
+        return getEntries();
+    }
+
+    /**
+     * @return Frozen snapshot of all entries as of the last
+     *         `refresh()`.
+     */
+    public RecordStore getEntries() {
+        return entries.snapshot();
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return Offset after the last parsed line.
+     */
+    public long getParsedLength() {
+        return parsedPrefix.getLength();
+    }
+
+    private void reset() {
+        if (parsedPrefix.getLength() > 0 || entries.size() > 0) {
+            generation++;
+        }
+
+        entries.clear();
+        parsedPrefix.reset();
+    }
+}
@@ -0,0 +1,477 @@
+package sample;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * `RecordDBWriter` class is the group commit ingestion pipeline
+ * of the Record DB file.
+ *
+ * Producers enqueue entries into a lock-free multi-producer,
+ * single-consumer queue and get a future. One writer thread
+ * drains everything enqueued so far into one batch, appends it
+ * to the file with a single write on a long-lived `FileChannel`
+ * and completes the futures of the batch, once the batch is
+ * durable according to the `FsyncPolicy`. Concurrent producers
+ * thus share writes and `fsync` calls, and rows of different
+ * producers are never interleaved.
+ *
+ * The file is created with the header row on the first batch,
+ * and migrated from the old format on the first write, like in
+ * `RecordDB.append()`. After a failed write the file is truncated
+ * back to its size before the batch, and the channel is reopened
+ * for the next batch.
+ * */
+public class RecordDBWriter implements AutoCloseable {
+    /**
+     * When written batches are forced to the storage device
+     * */
+    public static final class FsyncPolicy {
+        private final long intervalMillis;
+
+        private FsyncPolicy(long intervalMillis) {
+            this.intervalMillis = intervalMillis;
+        }
+
+        /**
+         * @return Policy forcing every batch before its futures
+         *         complete.
+         */
+        public static FsyncPolicy everyBatch() {
+            return new FsyncPolicy(0);
+        }
+
+        /**
+         * @param intervalMillis Maximal time between forces.
+         * @return               Policy forcing the written
+         *                       batches at most every
+         *                       `intervalMillis`; futures
+         *                       complete after the force.
+         */
+        public static FsyncPolicy every(long intervalMillis) {
+            if (intervalMillis <= 0) {
+                throw new IllegalArgumentException("Interval must be positive");
+            }
+
+            return new FsyncPolicy(intervalMillis);
+        }
+
+        /**
+         * @return Policy never forcing batches, futures complete
+         *         as soon as the batch is handed to the OS.
+         */
+        public static FsyncPolicy never() {
+            return new FsyncPolicy(-1);
+        }
+
+        /**
+         * @param value "batch", "never" or an interval in
+         *              milliseconds, e.g. "10" or "10ms".
+         * @return      Parsed policy.
+         * @throws IllegalArgumentException If `value` is invalid.
+         */
+        public static FsyncPolicy parse(String value) {
+            String policy = value.trim().toLowerCase();
+
+            if (policy.equals("batch")) {
+                return everyBatch();
+            } else if (policy.equals("never")) {
+                return never();
+            }
+
+            if (policy.endsWith("ms")) {
+                policy = policy.substring(0, policy.length() - 2);
+            }
+
+            try {
+                return every(Long.parseLong(policy.trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid fsync policy: " + value);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return (intervalMillis == 0)
+                ? "batch"
+                : (intervalMillis < 0) ? "never" : intervalMillis + "ms";
+        }
+    }
+
+    /**
+     * Maximal amount of entries written with one write
+     * */
+    private static final int MAX_BATCH_ENTRIES = 1 << 16;
+
+    /**
+     * Maximal time the writer thread parks, before checking
+     * whether it was closed
+     * */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final String CLOSED_MESSAGE = "Record DB writer is closed";
+
+    private static final byte[] LINE_BREAK = "\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Queued append request, a node of the MPSC queue
+     * */
+    private static final class Request {
+        private final List<RecordEntry>       entries;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private volatile Request next;
+
+        private Request(List<RecordEntry> entries) {
+            this.entries = entries;
+        }
+    }
+
+    private final File        recordDBFile;
+    private final FsyncPolicy fsyncPolicy;
+    private final Thread      writerThread;
+
+    /**
+     * State of `recordDBFile`, the appends are reported to
+     * */
+    private final RecordDBPrefix.FileState fileState;
+
+    // -- MPSC queue section --
+    /**
+     * Last enqueued request, swapped in by producers
+     * */
+    private final AtomicReference<Request> tail;
+
+    /**
+     * Last consumed request, only used by the writer thread
+     * */
+    private Request head;
+
+    private volatile boolean closed = false;
+
+    // -- Writer thread state section --
+    private FileChannel channel;
+
+    private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+    /**
+     * Written, but not yet forced requests of the
+     * interval policy
+     * */
+    private final List<Request> unforced = new ArrayList<>();
+
+    private long lastForceNanos = System.nanoTime();
+
+    /**
+     * Starts the writer thread of `recordDBFile`. The file is
+     * not opened until the first append.
+     *
+     * @param recordDBFile Record DB file to append to.
+     * @param fsyncPolicy  Durability of completed appends.
+     */
+    public RecordDBWriter(File recordDBFile, FsyncPolicy fsyncPolicy) {
+        this(recordDBFile, fsyncPolicy, new RecordDBPrefix.FileState(recordDBFile));
+    }
+
+    /**
+     * Starts the writer thread of `recordDBFile`, reporting its
+     * appends to `fileState`, so prefixes sharing it do not
+     * rehash the file after them.
+     *
+     * @param recordDBFile Record DB file to append to.
+     * @param fsyncPolicy  Durability of completed appends.
+     * @param fileState    State of `recordDBFile`.
+     */
+    public RecordDBWriter(
+        File                     recordDBFile,
+        FsyncPolicy              fsyncPolicy,
+        RecordDBPrefix.FileState fileState
+    ) {
+        this.recordDBFile = recordDBFile;
+        this.fsyncPolicy  = fsyncPolicy;
+        this.fileState    = fileState;
+
+        // Stub node, the queue is empty, when `head == tail`
+        this.head = new Request(null);
+        this.tail = new AtomicReference<>(head);
+
+        this.writerThread = new Thread(this::run, "record-db-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    /**
+     * Enqueues `entries` for appending. Only blocks, when
+     * racing with `close()`.
+     *
+     * @param entries Entries to append, not modified afterwards.
+     * @return        Future, completing when all the entries are
+     *                written and durable, or exceptionally with
+     *                the `IOException` of the write.
+     */
+    public CompletableFuture<Void> append(List<RecordEntry> entries) {
+        Request request = new Request(entries);
+
+        if (closed) {
+            request.future.completeExceptionally(new IOException(CLOSED_MESSAGE));
+
+            return request.future;
+        }
+
+        // Linking the request after the previous tail
+        Request previous = tail.getAndSet(request);
+        previous.next = request;
+
+        LockSupport.unpark(writerThread);
+
+        /*
+         * Failing the request, if it raced with `close()` and
+         * the writer thread may have stopped before seeing it.
+         * A request, that was written, is already completed
+         * */
+        if (closed) {
+            awaitWriterThread();
+            request.future.completeExceptionally(new IOException(CLOSED_MESSAGE));
+        }
+
+        return request.future;
+    }
+
+    /**
+     * Writes and forces all the enqueued entries and stops the
+     * writer thread. Later appends fail.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writerThread);
+
+        awaitWriterThread();
+    }
+
+    private void awaitWriterThread() {
+        boolean interrupted = false;
+
+        while (writerThread.isAlive()) {
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // -- Writer thread section --
+    private void run() {
+        List<Request> batch = new ArrayList<>();
+
+        while (true) {
+            boolean closing = closed;
+
+            drain(batch);
+
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            } else if (closing) {
+                break;
+            } else if (unforced.isEmpty()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+
+            // Forcing batches of the interval policy
+            if (!unforced.isEmpty()) {
+                long untilForce = lastForceNanos
+                    + TimeUnit.MILLISECONDS.toNanos(fsyncPolicy.intervalMillis)
+                    - System.nanoTime();
+
+                if (untilForce <= 0) {
+                    force();
+                } else if (tail.get() == head) {
+                    LockSupport.parkNanos(this, untilForce);
+                }
+            }
+        }
+
+        if (!unforced.isEmpty()) {
+            force();
+        }
+
+        closeChannel();
+    }
+
+    /**
+     * Moves enqueued requests into `batch`, up to
+     * `MAX_BATCH_ENTRIES` entries.
+     */
+    private void drain(List<Request> batch) {
+        int entryAmount = 0;
+
+        Request next;
+
+        while (entryAmount < MAX_BATCH_ENTRIES && (next = head.next) != null) {
+            batch.add(next);
+            entryAmount += next.entries.size();
+
+            // `next` becomes the stub node
+            head = next;
+        }
+    }
+
+    private void commit(List<Request> batch) {
+        try {
+            if (channel == null) {
+                open();
+            }
+
+            // Keeping the generation of the prefixes sharing `fileState`
+            fileState.beginAppend();
+
+            try {
+                write(batch);
+            } finally {
+                fileState.endAppend();
+            }
+        } catch (IOException e) {
+            closeChannel();
+
+            for (Request request : batch)
+                request.future.completeExceptionally(e);
+
+            return;
+        }
+
+        if (fsyncPolicy.intervalMillis > 0) {
+            unforced.addAll(batch);
+        } else {
+            for (Request request : batch)
+                request.future.complete(null);
+        }
+    }
+
+    /**
+     * Writes `batch` with a single write. On failure the file is
+     * truncated back to its size before the batch.
+     */
+    private void write(List<Request> batch) throws IOException {
+        long committedSize = channel.size();
+
+        try {
+            buffer.clear();
+
+            if (committedSize == 0) {
+                put(RecordDB.HEADER.getBytes(StandardCharsets.US_ASCII));
+                put(LINE_BREAK);
+            }
+
+            for (Request request : batch) {
+                for (RecordEntry entry : request.entries) {
+                    put(entry.toString().getBytes(StandardCharsets.US_ASCII));
+                    put(LINE_BREAK);
+                }
+            }
+
+            buffer.flip();
+
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+
+            if (fsyncPolicy.intervalMillis == 0) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            /*
+             * Cutting off the torn batch, so its partial line is
+             * not glued to the first line of the next batch
+             * */
+            try {
+                channel.truncate(committedSize);
+            } catch (IOException truncateError) {
+                e.addSuppressed(truncateError);
+            }
+
+            throw e;
+        }
+    }
+
+    private void force() {
+        IOException error = null;
+
+        try {
+            if (channel != null) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            error = e;
+            closeChannel();
+        }
+
+        for (Request request : unforced) {
+            if (error == null) {
+                request.future.complete(null);
+            } else {
+                request.future.completeExceptionally(error);
+            }
+        }
+
+        unforced.clear();
+        lastForceNanos = System.nanoTime();
+    }
+
+    private void open() throws IOException {
+        if (recordDBFile.exists()) {
+            RecordDB.prepare(recordDBFile);
+        }
+
+        channel = FileChannel.open(
+            recordDBFile.toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND
+        );
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+
+            channel = null;
+        }
+    }
+
+    private void put(byte[] bytes) {
+        if (buffer.remaining() < bytes.length) {
+            ByteBuffer grown = ByteBuffer.allocate(
+                Math.max(buffer.capacity() * 2, buffer.position() + bytes.length)
+            );
+
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+
+        buffer.put(bytes);
+    }
+}
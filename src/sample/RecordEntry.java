@@ -0,0 +1,94 @@
+package sample;
+
+import java.time.LocalDate;
+
+/**
+ * `RecordEntry` class represents one eaten food option in the
+ * Record DB: which food option, how much of it and when.
+ *
+ * All the nutrient data is joined from the `SourceDB` by
+ * `foodId` when needed, so entries stay small.
+ * */
+public final class RecordEntry {
+    /**
+     * Value of `secondOfDay` for entries without entry time
+     * */
+    public static final int NO_TIME = -1;
+
+    /**
+     * "Database Number" of the food option
+     * */
+    private final int foodId;
+
+    /**
+     * Eaten mass in grams
+     * */
+    private final int mass;
+
+    /**
+     * Entry date as days since 1970-01-01
+     * */
+    private final int epochDay;
+
+    /**
+     * Entry time as seconds since midnight, or `NO_TIME`
+     * */
+    private final int secondOfDay;
+
+    public RecordEntry(int foodId, int mass, int epochDay, int secondOfDay) {
+        this.foodId      = foodId;
+        this.mass        = mass;
+        this.epochDay    = epochDay;
+        this.secondOfDay = secondOfDay;
+    }
+
+    public int getFoodId() {
+        return foodId;
+    }
+
+    public int getMass() {
+        return mass;
+    }
+
+    public int getEpochDay() {
+        return epochDay;
+    }
+
+    public int getSecondOfDay() {
+        return secondOfDay;
+    }
+
+    /**
+     * @return Entry date in "YYYY-MM-DD" format.
+     */
+    public String getDate() {
+        return LocalDate.ofEpochDay(epochDay).toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        } else if (!(o instanceof RecordEntry)) {
+            return false;
+        }
+
+        RecordEntry other = (RecordEntry) o;
+
+        return foodId == other.foodId
+            && mass == other.mass
+            && epochDay == other.epochDay
+            && secondOfDay == other.secondOfDay;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((foodId * 31 + mass) * 31 + epochDay) * 31 + secondOfDay;
+    }
+
+    @Override
+    public String toString() {
+        return foodId + "," + mass + "," + epochDay + "," +
+            ((secondOfDay == NO_TIME) ? "" : Integer.toString(secondOfDay));
+    }
+}
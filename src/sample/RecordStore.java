@@ -0,0 +1,435 @@
+package sample;
+
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * `RecordStore` class is a compact, column oriented in-memory
+ * Record DB: every record is kept as four `int`s in parallel
+ * primitive arrays, i.e. 16 bytes per record, instead of an
+ * object per record or per cell.
+ *
+ * Food options are dictionary encoded with the Source DB as the
+ * dictionary: the food column holds the Source DB row of the
+ * food option, so its name, group and nutrients are resolved
+ * through `SourceDB` without hashing. Ids, that are not in the
+ * Source DB, get codes past the Source DB rows from a small
+ * overflow dictionary, so no record is lost.
+ *
+ * Columns grow in fixed size chunks, so appends never copy
+ * records. Records are read by index or scanned chunk by chunk
+ * with `scan()`.
+ *
+ * The store is append-only. `snapshot()` returns a frozen view,
+ * that shares the chunks and may be read by another thread,
+ * while new records are appended to the store: appends only
+ * write past the snapshot size or into new chunks.
+ *
+ * An off-heap store keeps the records as 16 byte structs in
+ * direct `StructBuffer` chunks instead, so millions of records
+ * neither enlarge the Java heap nor lengthen garbage collection
+ * pauses.
+ * */
+public class RecordStore {
+    // -- Record DB data column layout section --
+    public static final int MASS_COLUMN   = SourceDB.COLUMN_AMOUNT;
+    public static final int DATE_COLUMN   = SourceDB.COLUMN_AMOUNT + 1;
+    public static final int COLUMN_AMOUNT = SourceDB.COLUMN_AMOUNT + 2;
+
+    // -- Chunk layout section --
+    static final int CHUNK_SHIFT = 14;
+    static final int CHUNK_SIZE  = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK  = CHUNK_SIZE - 1;
+
+    private static final int INITIAL_CHUNK_AMOUNT = 4;
+
+    // -- Off-heap record struct layout section --
+    static final int FOOD_CODE_FIELD     = 0;
+    static final int MASS_FIELD          = 4;
+    static final int EPOCH_DAY_FIELD     = 8;
+    static final int SECOND_OF_DAY_FIELD = 12;
+    static final int RECORD_SIZE         = 16;
+
+    /**
+     * Receiver of scanned records
+     * */
+    public interface Visitor {
+        /**
+         * @param index       Record index.
+         * @param sourceRow   Source DB row of the food option,
+         *                    or `-1`, if it is not in the
+         *                    Source DB.
+         * @param mass        Eaten mass in grams.
+         * @param epochDay    Entry date as epoch day.
+         * @param secondOfDay Entry time or `RecordEntry.NO_TIME`.
+         */
+        void visit(int index, int sourceRow, int mass, int epochDay, int secondOfDay);
+    }
+
+    private final SourceDB sourceDB;
+
+    /**
+     * Codes of food options, i.e. Source DB rows, or
+     * `sourceDB.size() + i` for `unknownIds[i]`
+     * */
+    private int[][] foodCodes;
+    private int[][] masses;
+    private int[][] epochDays;
+    private int[][] secondsOfDay;
+
+    /**
+     * Record structs of an off-heap store, `null`
+     * for a heap store
+     * */
+    private StructBuffer records;
+
+    /**
+     * Overflow dictionary of food ids, that are not
+     * in the Source DB
+     * */
+    private int[] unknownIds;
+    private int   unknownIdAmount;
+
+    private int size;
+
+    public RecordStore(SourceDB sourceDB) {
+        this(sourceDB, false);
+    }
+
+    /**
+     * @param sourceDB Source DB, the dictionary of food options.
+     * @param offHeap  `true` to keep the records off
+     *                 the Java heap.
+     */
+    public RecordStore(SourceDB sourceDB, boolean offHeap) {
+        this.sourceDB = sourceDB;
+
+        if (offHeap) {
+            records = new StructBuffer(RECORD_SIZE, CHUNK_SHIFT, true);
+        }
+
+        clear();
+    }
+
+    private RecordStore(RecordStore other) {
+        this.sourceDB        = other.sourceDB;
+        this.foodCodes       = other.foodCodes;
+        this.masses          = other.masses;
+        this.epochDays       = other.epochDays;
+        this.secondsOfDay    = other.secondsOfDay;
+        this.records         = (other.records != null) ? other.records.snapshot() : null;
+        this.unknownIds      = other.unknownIds;
+        this.unknownIdAmount = other.unknownIdAmount;
+        this.size            = other.size;
+    }
+
+    public SourceDB getSourceDB() {
+        return sourceDB;
+    }
+
+    public boolean isOffHeap() {
+        return records != null;
+    }
+
+    // -- Appending section --
+    /**
+     * Appends one record.
+     *
+     * @param foodId      "Database Number" of the food option.
+     * @param mass        Eaten mass in grams.
+     * @param epochDay    Entry date as epoch day.
+     * @param secondOfDay Entry time or `RecordEntry.NO_TIME`.
+     */
+    public void append(int foodId, int mass, int epochDay, int secondOfDay) {
+        if (records != null) {
+            int index = records.add();
+
+            records.putInt(index, FOOD_CODE_FIELD, encode(foodId));
+            records.putInt(index, MASS_FIELD, mass);
+            records.putInt(index, EPOCH_DAY_FIELD, epochDay);
+            records.putInt(index, SECOND_OF_DAY_FIELD, secondOfDay);
+            size++;
+
+            return;
+        }
+
+        int chunk  = size >>> CHUNK_SHIFT;
+        int offset = size & CHUNK_MASK;
+
+        if (offset == 0) {
+            addChunk(chunk);
+        }
+
+        foodCodes[chunk][offset]    = encode(foodId);
+        masses[chunk][offset]       = mass;
+        epochDays[chunk][offset]    = epochDay;
+        secondsOfDay[chunk][offset] = secondOfDay;
+        size++;
+    }
+
+    public void append(RecordEntry entry) {
+        append(
+            entry.getFoodId(),
+            entry.getMass(),
+            entry.getEpochDay(),
+            entry.getSecondOfDay()
+        );
+    }
+
+    public void appendAll(List<RecordEntry> entries) {
+        for (RecordEntry entry : entries)
+            append(entry);
+    }
+
+    /**
+     * Removes all the records. Snapshots taken before
+     * are not affected.
+     */
+    public void clear() {
+        if (records != null) {
+            records.clear();
+        } else {
+            foodCodes    = new int[INITIAL_CHUNK_AMOUNT][];
+            masses       = new int[INITIAL_CHUNK_AMOUNT][];
+            epochDays    = new int[INITIAL_CHUNK_AMOUNT][];
+            secondsOfDay = new int[INITIAL_CHUNK_AMOUNT][];
+        }
+
+        unknownIds      = new int[0];
+        unknownIdAmount = 0;
+        size            = 0;
+    }
+
+    /**
+     * @return Frozen view of the current records.
+     */
+    public RecordStore snapshot() {
+        return new RecordStore(this);
+    }
+
+    private void addChunk(int chunk) {
+        // Growing the chunk directories, chunks are not copied
+        if (chunk == foodCodes.length) {
+            int chunkAmount = chunk * 2;
+
+            foodCodes    = Arrays.copyOf(foodCodes, chunkAmount);
+            masses       = Arrays.copyOf(masses, chunkAmount);
+            epochDays    = Arrays.copyOf(epochDays, chunkAmount);
+            secondsOfDay = Arrays.copyOf(secondsOfDay, chunkAmount);
+        }
+
+        foodCodes[chunk]    = new int[CHUNK_SIZE];
+        masses[chunk]       = new int[CHUNK_SIZE];
+        epochDays[chunk]    = new int[CHUNK_SIZE];
+        secondsOfDay[chunk] = new int[CHUNK_SIZE];
+    }
+
+    private int encode(int foodId) {
+        int row = sourceDB.indexOfId(foodId);
+
+        if (row >= 0) {
+            return row;
+        }
+
+        for (int i = 0; i < unknownIdAmount; i++) {
+            if (unknownIds[i] == foodId) {
+                return sourceDB.size() + i;
+            }
+        }
+
+        // Copying on growth, snapshots keep the old array
+        if (unknownIdAmount == unknownIds.length) {
+            unknownIds = Arrays.copyOf(unknownIds, Math.max(4, unknownIdAmount * 2));
+        }
+
+        unknownIds[unknownIdAmount] = foodId;
+
+        return sourceDB.size() + unknownIdAmount++;
+    }
+
+    // -- Random access section --
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index Record index.
+     * @return      "Database Number" of the food option.
+     */
+    public int getFoodId(int index) {
+        int code = getFoodCode(index);
+
+        return (code < sourceDB.size())
+            ? sourceDB.getId(code)
+            : unknownIds[code - sourceDB.size()];
+    }
+
+    /**
+     * @param index Record index.
+     * @return      Source DB row of the food option, or `-1`,
+     *              if it is not in the Source DB.
+     */
+    public int getSourceRow(int index) {
+        int code = getFoodCode(index);
+
+        return (code < sourceDB.size()) ? code : -1;
+    }
+
+    public int getMass(int index) {
+        return (records != null)
+            ? records.getInt(checkIndex(index), MASS_FIELD)
+            : masses[checkIndex(index) >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    public int getEpochDay(int index) {
+        return (records != null)
+            ? records.getInt(checkIndex(index), EPOCH_DAY_FIELD)
+            : epochDays[checkIndex(index) >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    public int getSecondOfDay(int index) {
+        return (records != null)
+            ? records.getInt(checkIndex(index), SECOND_OF_DAY_FIELD)
+            : secondsOfDay[checkIndex(index) >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    private int getFoodCode(int index) {
+        return (records != null)
+            ? records.getInt(checkIndex(index), FOOD_CODE_FIELD)
+            : foodCodes[checkIndex(index) >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    /**
+     * @param index Record index.
+     * @return      New `RecordEntry` of the record.
+     */
+    public RecordEntry getEntry(int index) {
+        return new RecordEntry(
+            getFoodId(index),
+            getMass(index),
+            getEpochDay(index),
+            getSecondOfDay(index)
+        );
+    }
+
+    /**
+     * @param index  Record index.
+     * @param column Record DB data column index.
+     * @return       Cell value as `String`. Source DB cells
+     *               of food options, that are not in the
+     *               Source DB, are "NULL".
+     */
+    public String getCell(int index, int column) {
+        switch (column) {
+            case MASS_COLUMN:
+                return Integer.toString(getMass(index));
+            case DATE_COLUMN:
+                return LocalDate.ofEpochDay(getEpochDay(index)).toString();
+            case SourceDB.ID_COLUMN:
+                return Integer.toString(getFoodId(index));
+            default:
+                int row = getSourceRow(index);
+
+                return (row >= 0)
+                    ? sourceDB.getCell(row, column)
+                    : SourceDB.NULL_VALUE;
+        }
+    }
+
+    /**
+     * @return Read-only, random access view of the records
+     *         as `RecordEntry`s, created on access.
+     */
+    public List<RecordEntry> asList() {
+        return new EntryList();
+    }
+
+    // -- Scanning section --
+    /**
+     * Visits records `[from, to)` in order, reading the
+     * columns chunk by chunk.
+     *
+     * @param from    First record index, inclusive.
+     * @param to      Last record index, exclusive.
+     * @param visitor Receiver of the records.
+     */
+    public void scan(int from, int to, Visitor visitor) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException(
+                "Range: [" + from + ", " + to + "), size: " + size
+            );
+        }
+
+        int sourceDBSize = sourceDB.size();
+        int index        = from;
+
+        if (records != null) {
+            for (; index < to; index++) {
+                int code = records.getInt(index, FOOD_CODE_FIELD);
+
+                visitor.visit(
+                    index,
+                    (code < sourceDBSize) ? code : -1,
+                    records.getInt(index, MASS_FIELD),
+                    records.getInt(index, EPOCH_DAY_FIELD),
+                    records.getInt(index, SECOND_OF_DAY_FIELD)
+                );
+            }
+
+            return;
+        }
+
+        while (index < to) {
+            int chunk  = index >>> CHUNK_SHIFT;
+            int offset = index & CHUNK_MASK;
+            int end    = Math.min(CHUNK_SIZE, offset + (to - index));
+
+            int[] chunkFoodCodes    = foodCodes[chunk];
+            int[] chunkMasses       = masses[chunk];
+            int[] chunkEpochDays    = epochDays[chunk];
+            int[] chunkSecondsOfDay = secondsOfDay[chunk];
+
+            for (int i = offset; i < end; i++, index++) {
+                int code = chunkFoodCodes[i];
+
+                visitor.visit(
+                    index,
+                    (code < sourceDBSize) ? code : -1,
+                    chunkMasses[i],
+                    chunkEpochDays[i],
+                    chunkSecondsOfDay[i]
+                );
+            }
+        }
+    }
+
+    public void scan(Visitor visitor) {
+        scan(0, size, visitor);
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+
+        return index;
+    }
+
+    /**
+     * `RecordEntry` view of the store
+     * */
+    private class EntryList extends AbstractList<RecordEntry> implements RandomAccess {
+        @Override
+        public RecordEntry get(int index) {
+            return getEntry(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,629 @@
+package sample;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.zip.CRC32;
+
+/**
+ * `SourceDB` class is a read-only, column oriented in-memory
+ * representation of all food options, that are fetched from
+ * the `SourceDB.csv` file.
+ *
+ * Instead of keeping every cell as a `String`, every nutrient
+ * column is stored in its own `double[]`, "NULL" cells are
+ * marked in a per-column bitmap, food ids are kept as `int`s
+ * and food groups are dictionary encoded. Every value is
+ * accessible by row index in O(1).
+ * */
+public class SourceDB {
+    // -- Source DB column layout section --
+    public static final int COLUMN_AMOUNT         = 56;
+    public static final int ID_COLUMN             = 0;
+    public static final int GROUP_COLUMN          = 1;
+    public static final int NAME_COLUMN           = 2;
+    public static final int FIRST_NUTRIENT_COLUMN = 3;
+    public static final int NUTRIENT_AMOUNT       =
+        COLUMN_AMOUNT - FIRST_NUTRIENT_COLUMN;
+
+    /**
+     * Literal used in the `SourceDB.csv` file for
+     * missing nutrient values
+     * */
+    public static final String NULL_VALUE = "NULL";
+
+    // -- Table data section --
+    /**
+     * Source DB column headers
+     * */
+    private final String[] headers;
+
+    /**
+     * Amount of food option rows, excluding headers
+     * */
+    private final int size;
+
+    /**
+     * "Database Number" column
+     * */
+    private final int[] ids;
+
+    /**
+     * "Food Name" column
+     * */
+    private final String[] names;
+
+    /**
+     * "Food Group" column, encoded as indexes
+     * into `groupDictionary`
+     * */
+    private final int[] groupCodes;
+
+    /**
+     * Distinct "Food Group" values in order
+     * of their first appearance
+     * */
+    private final String[] groupDictionary;
+
+    /**
+     * Nutrient columns, one `double[]` per column.
+     *
+     * "NULL" cells are stored as `0.0` and are
+     * marked in `nullBitmaps`.
+     * */
+    private final double[][] nutrientColumns;
+
+    /**
+     * One bitmap per nutrient column, bit `row`
+     * is set, when the cell is "NULL"
+     * */
+    private final long[][] nullBitmaps;
+
+    /**
+     * Open addressing hash table from food id to row index.
+     *
+     * Slot holds `row + 1`, `0` marks an empty slot.
+     * */
+    private final int[] rowsById;
+
+    /**
+     * Lazily computed `getFingerprint()` value,
+     * `-1` until computed
+     * */
+    private long fingerprint = -1;
+
+    /**
+     * Shared `FoodOption` flyweights by row, created on
+     * first use, guarded by `this`
+     * */
+    private FoodOption[] foodOptions;
+
+    SourceDB(
+        String[]   headers,
+        int        size,
+        int[]      ids,
+        String[]   names,
+        int[]      groupCodes,
+        String[]   groupDictionary,
+        double[][] nutrientColumns,
+        long[][]   nullBitmaps
+    ) {
+        this.headers         = headers;
+        this.size            = size;
+        this.ids             = ids;
+        this.names           = names;
+        this.groupCodes      = groupCodes;
+        this.groupDictionary = groupDictionary;
+        this.nutrientColumns = nutrientColumns;
+        this.nullBitmaps     = nullBitmaps;
+        this.rowsById        = buildRowsById(ids, size);
+    }
+
+    /**
+     * Streams `sourceDBFile` through `ParallelCsvLoader`
+     * straight into the column arrays, without keeping any
+     * intermediate rows.
+     *
+     * Every file chunk is tokenized into its own `Builder`,
+     * the builders are then merged in file order.
+     *
+     * @param sourceDBFile Source DB `.csv` file.
+     * @return             Built `SourceDB`.
+     * @throws IOException In case of reading errors.
+     */
+    public static SourceDB load(File sourceDBFile) throws IOException {
+        List<Builder> chunkBuilders = ParallelCsvLoader.load(
+            sourceDBFile,
+            chunkIndex -> new Builder(chunkIndex > 0)
+        );
+
+        Builder builder = chunkBuilders.get(0);
+
+        for (int i = 1; i < chunkBuilders.size(); i++)
+            builder.append(chunkBuilders.get(i));
+
+        return builder.build();
+    }
+
+    /**
+     * Builds a `SourceDB` from fetched DB rows.
+     *
+     * @param rows Fetched Source DB rows, first row
+     *             contains column headers.
+     * @return     Built `SourceDB`.
+     */
+    public static SourceDB fromRows(List<? extends List<String>> rows) {
+        Builder builder = new Builder();
+
+        boolean headersRow = true;
+
+        for (List<String> row : rows) {
+            if (headersRow) {
+                builder.setHeaders(row);
+                headersRow = false;
+            } else {
+                builder.addRow(row);
+            }
+        }
+
+        return builder.build();
+    }
+
+    // -- Accessors section --
+    public int size() {
+        return size;
+    }
+
+    public int getId(int row) {
+        return ids[row];
+    }
+
+    /**
+     * Finds the row of the food option with the given
+     * "Database Number" in O(1).
+     *
+     * @param id Food id.
+     * @return   Row index, or `-1`, if there is no such id.
+     */
+    public int indexOfId(int id) {
+        int mask = rowsById.length - 1;
+
+        for (int slot = mix(id) & mask; ; slot = (slot + 1) & mask) {
+            int entry = rowsById[slot];
+
+            if (entry == 0) {
+                return -1; // "No such id" value
+            } else if (ids[entry - 1] == id) {
+                return entry - 1;
+            }
+        }
+    }
+
+    public String getName(int row) {
+        return names[row];
+    }
+
+    public int getGroupCode(int row) {
+        return groupCodes[row];
+    }
+
+    public String getGroup(int row) {
+        return groupDictionary[groupCodes[row]];
+    }
+
+    /**
+     * @return Distinct food groups, indexed by
+     *         group code.
+     */
+    public List<String> getGroupDictionary() {
+        return Collections.unmodifiableList(
+            Arrays.asList(groupDictionary)
+        );
+    }
+
+    /**
+     * @return Read-only view of all food names,
+     *         indexed by row.
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(
+            Arrays.asList(names)
+        );
+    }
+
+    /**
+     * @return Read-only view of Source DB column
+     *         headers.
+     */
+    public List<String> getHeaders() {
+        return Collections.unmodifiableList(
+            Arrays.asList(headers)
+        );
+    }
+
+    /**
+     * @param nutrient Nutrient index, starting from 0 for
+     *                 the column `FIRST_NUTRIENT_COLUMN`.
+     * @param row      Food option row index.
+     * @return         Nutrient value per 100 g, or `0.0`,
+     *                 if the cell is "NULL".
+     */
+    public double getNutrient(int row, int nutrient) {
+        return nutrientColumns[nutrient][row];
+    }
+
+    public boolean isNull(int row, int nutrient) {
+        return (nullBitmaps[nutrient][row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * Direct access to a nutrient column for sequential
+     * scans. The returned array must not be modified.
+     *
+     * @param nutrient Nutrient index.
+     * @return         Backing nutrient column.
+     */
+    double[] getNutrientColumn(int nutrient) {
+        return nutrientColumns[nutrient];
+    }
+
+    /**
+     * Direct access to a "NULL" bitmap for serialization.
+     * The returned array must not be modified.
+     *
+     * @param nutrient Nutrient index.
+     * @return         Backing "NULL" bitmap.
+     */
+    long[] getNullBitmap(int nutrient) {
+        return nullBitmaps[nutrient];
+    }
+
+    /**
+     * Fingerprint of food ids and nutrient values, used to
+     * detect, that data derived from the Source DB, e.g.
+     * `DailyRollups`, is outdated.
+     *
+     * @return CRC32 of ids and nutrient columns.
+     */
+    public long getFingerprint() {
+        if (fingerprint == -1) {
+            CRC32      crc    = new CRC32();
+            ByteBuffer buffer = ByteBuffer.allocate(size * Double.BYTES);
+
+            buffer.asIntBuffer().put(ids, 0, size);
+            crc.update(buffer.array(), 0, size * Integer.BYTES);
+
+            for (double[] column : nutrientColumns) {
+                buffer.clear();
+                buffer.asDoubleBuffer().put(column, 0, size);
+                crc.update(buffer.array(), 0, size * Double.BYTES);
+            }
+
+            fingerprint = crc.getValue();
+        }
+
+        return fingerprint;
+    }
+
+    /**
+     * Returns cell value in the original Source DB text
+     * format.
+     *
+     * @param row    Food option row index.
+     * @param column Source DB column index.
+     * @return       Cell value as `String`.
+     */
+    public String getCell(int row, int column) {
+        switch (column) {
+            case ID_COLUMN:
+                return Integer.toString(ids[row]);
+            case GROUP_COLUMN:
+                return getGroup(row);
+            case NAME_COLUMN:
+                return names[row];
+            default:
+                int nutrient = column - FIRST_NUTRIENT_COLUMN;
+
+                return isNull(row, nutrient)
+                    ? NULL_VALUE
+                    : formatValue(nutrientColumns[nutrient][row]);
+        }
+    }
+
+    /**
+     * @param row Food option row index.
+     * @return    Shared, immutable flyweight of the row.
+     */
+    public synchronized FoodOption getFoodOption(int row) {
+        if (foodOptions == null) {
+            foodOptions = new FoodOption[size];
+        }
+
+        FoodOption foodOption = foodOptions[row];
+
+        if (foodOption == null) {
+            foodOption       = new FoodOption(this, row);
+            foodOptions[row] = foodOption;
+        }
+
+        return foodOption;
+    }
+
+    /**
+     * Formats a nutrient value the way it is written in
+     * the `SourceDB.csv` file, e.g. `717` instead of `717.0`.
+     *
+     * @param value Value to format.
+     * @return      Formatted value.
+     */
+    static String formatValue(double value) {
+        if (value == 0) {
+            return "0";
+        }
+
+        return BigDecimal
+            .valueOf(value)
+            .stripTrailingZeros()
+            .toPlainString();
+    }
+
+    private static int[] buildRowsById(int[] ids, int size) {
+        // Power of 2 capacity with load factor at most 0.5
+        int capacity = Integer.highestOneBit(Math.max(size, 1) * 2) * 2;
+        int mask     = capacity - 1;
+
+        int[] table = new int[capacity];
+
+        for (int row = 0; row < size; row++) {
+            int slot = mix(ids[row]) & mask;
+
+            while (table[slot] != 0) {
+                // First row wins on duplicate ids
+                if (ids[table[slot] - 1] == ids[row]) {
+                    break;
+                }
+
+                slot = (slot + 1) & mask;
+            }
+
+            if (table[slot] == 0) {
+                table[slot] = row + 1;
+            }
+        }
+
+        return table;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Parses a nutrient cell.
+     *
+     * @param cell Cell text.
+     * @return     Parsed value, or `Double.NaN`, if the cell
+     *             is "NULL", empty or not a number.
+     */
+    static double parseValue(String cell) {
+        if (
+            cell == null
+            || cell.isEmpty()
+            || cell.equals(NULL_VALUE)
+        ) {
+            return Double.NaN;
+        }
+
+        try {
+            return Double.parseDouble(cell);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Incremental `SourceDB` builder, that accepts Source DB
+     * rows one at a time and grows its columns in chunks.
+     * */
+    static class Builder implements CsvTokenizer.FieldSink {
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private String[]   headers         = new String[0];
+        private int        size            = 0;
+        private int        capacity        = INITIAL_CAPACITY;
+        private int[]      ids             = new int[INITIAL_CAPACITY];
+        private String[]   names           = new String[INITIAL_CAPACITY];
+        private int[]      groupCodes      = new int[INITIAL_CAPACITY];
+        private double[][] nutrientColumns =
+            new double[NUTRIENT_AMOUNT][INITIAL_CAPACITY];
+        private long[][]   nullBitmaps     =
+            new long[NUTRIENT_AMOUNT][INITIAL_CAPACITY >>> 6];
+
+        /**
+         * Food group value to group code mapping
+         * */
+        private final HashMap<String, Integer> groupCodesByName =
+            new HashMap<>();
+
+        /**
+         * Food group dictionary in order of first
+         * appearance
+         * */
+        private final ArrayList<String> groupDictionary =
+            new ArrayList<>();
+
+        /**
+         * Reusable cell buffer of the row being tokenized
+         * */
+        private final ArrayList<String> pendingRow = new ArrayList<>();
+
+        private boolean headersSet;
+
+        Builder() {
+            this(false);
+        }
+
+        /**
+         * @param headerless `true` for builders of file chunks,
+         *                   that do not start with the headers
+         *                   row.
+         */
+        Builder(boolean headerless) {
+            headersSet = headerless;
+        }
+
+        @Override
+        public void field(int column, String value) {
+            pendingRow.add(value);
+        }
+
+        @Override
+        public void endRow() {
+            if (headersSet) {
+                addRow(pendingRow);
+            } else {
+                setHeaders(pendingRow);
+            }
+
+            pendingRow.clear();
+        }
+
+        void setHeaders(List<String> headerRow) {
+            headersSet = true;
+
+            headers = new String[COLUMN_AMOUNT];
+
+            for (int i = 0; i < COLUMN_AMOUNT; i++)
+                headers[i] = (i < headerRow.size()) ? headerRow.get(i) : "";
+        }
+
+        void addRow(List<String> row) {
+            // Avoiding O(n) cell access on linked rows
+            if (!(row instanceof RandomAccess)) {
+                row = new ArrayList<>(row);
+            }
+
+            if (size == capacity) {
+                grow();
+            }
+
+            ids[size]        = parseId(cellAt(row, ID_COLUMN));
+            names[size]      = cellAt(row, NAME_COLUMN);
+            groupCodes[size] = encodeGroup(cellAt(row, GROUP_COLUMN));
+
+            for (int i = 0; i < NUTRIENT_AMOUNT; i++) {
+                double value = parseValue(
+                    cellAt(row, FIRST_NUTRIENT_COLUMN + i)
+                );
+
+                if (Double.isNaN(value)) {
+                    nullBitmaps[i][size >>> 6] |= 1L << size;
+                    value = 0.0;
+                }
+
+                nutrientColumns[i][size] = value;
+            }
+
+            size++;
+        }
+
+        /**
+         * Appends all the rows of `other`, re-encoding its
+         * food groups into this builder's dictionary.
+         *
+         * @param other Builder of the following file chunk.
+         */
+        void append(Builder other) {
+            for (int row = 0; row < other.size; row++) {
+                if (size == capacity) {
+                    grow();
+                }
+
+                ids[size]        = other.ids[row];
+                names[size]      = other.names[row];
+                groupCodes[size] = encodeGroup(
+                    other.groupDictionary.get(other.groupCodes[row])
+                );
+
+                for (int i = 0; i < NUTRIENT_AMOUNT; i++) {
+                    nutrientColumns[i][size] = other.nutrientColumns[i][row];
+
+                    if ((other.nullBitmaps[i][row >>> 6] & (1L << row)) != 0) {
+                        nullBitmaps[i][size >>> 6] |= 1L << size;
+                    }
+                }
+
+                size++;
+            }
+        }
+
+        SourceDB build() {
+            double[][] trimmedColumns = new double[NUTRIENT_AMOUNT][];
+            long[][]   trimmedBitmaps = new long[NUTRIENT_AMOUNT][];
+
+            for (int i = 0; i < NUTRIENT_AMOUNT; i++) {
+                trimmedColumns[i] = Arrays.copyOf(nutrientColumns[i], size);
+                trimmedBitmaps[i] = Arrays.copyOf(
+                    nullBitmaps[i],
+                    (size + 63) >>> 6
+                );
+            }
+
+            return new SourceDB(
+                headers,
+                size,
+                Arrays.copyOf(ids, size),
+                Arrays.copyOf(names, size),
+                Arrays.copyOf(groupCodes, size),
+                groupDictionary.toArray(new String[0]),
+                trimmedColumns,
+                trimmedBitmaps
+            );
+        }
+
+        private void grow() {
+            capacity *= 2;
+
+            ids        = Arrays.copyOf(ids, capacity);
+            names      = Arrays.copyOf(names, capacity);
+            groupCodes = Arrays.copyOf(groupCodes, capacity);
+
+            for (int i = 0; i < NUTRIENT_AMOUNT; i++) {
+                nutrientColumns[i] = Arrays.copyOf(nutrientColumns[i], capacity);
+                nullBitmaps[i]     = Arrays.copyOf(nullBitmaps[i], capacity >>> 6);
+            }
+        }
+
+        private int encodeGroup(String group) {
+            Integer code = groupCodesByName.get(group);
+
+            if (code == null) {
+                code = groupDictionary.size();
+                groupDictionary.add(group);
+                groupCodesByName.put(group, code);
+            }
+
+            return code;
+        }
+
+        private static String cellAt(List<String> row, int column) {
+            return (column < row.size()) ? row.get(column) : "";
+        }
+
+        private static int parseId(String cell) {
+            try {
+                return Integer.parseInt(cell.trim());
+            } catch (NumberFormatException e) {
+                return -1; // "Invalid id" value
+            }
+        }
+    }
+}
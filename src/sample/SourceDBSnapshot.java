@@ -0,0 +1,314 @@
+package sample;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * `SourceDBSnapshot` class is responsible for keeping a binary,
+ * pre-parsed copy of the Source DB next to the `SourceDB.csv`
+ * file, so that the text file is parsed only once.
+ *
+ * Snapshot file format (big-endian):
+ *  Header     - magic, version, `.csv` file size, modification
+ *               time and CRC32 of its content, row amount.
+ *  String pool - all headers, food group names and food names
+ *               as one UTF-8 byte block with offsets.
+ *  Columns    - food ids, group codes, then every nutrient
+ *               column and its "NULL" bitmap, column by column.
+ *
+ * The snapshot is reused as long as the `.csv` file size,
+ * modification time and content hash are unchanged, otherwise
+ * it is rebuilt.
+ * */
+public class SourceDBSnapshot {
+    /**
+     * "FDSB" in ASCII
+     * */
+    static final int MAGIC   = 0x46445342;
+    static final int VERSION = 1;
+
+    /**
+     * Extension appended to the `.csv` file name
+     * */
+    static final String EXTENSION = ".snapshot";
+
+    private SourceDBSnapshot() {}
+
+    /**
+     * Loads the Source DB from its snapshot, or parses
+     * `sourceDBFile` and writes a fresh snapshot, when there
+     * is no valid one.
+     *
+     * @param sourceDBFile Source DB `.csv` file.
+     * @return             Loaded `SourceDB`.
+     * @throws IOException In case of `.csv` reading errors.
+     */
+    public static SourceDB load(File sourceDBFile) throws IOException {
+        File snapshotFile = getSnapshotFile(sourceDBFile);
+
+        long size         = sourceDBFile.length();
+        long lastModified = sourceDBFile.lastModified();
+        long contentHash  = hashContent(sourceDBFile);
+
+        if (snapshotFile.exists()) {
+            try {
+                SourceDB sourceDB = read(
+                    snapshotFile,
+                    size,
+                    lastModified,
+                    contentHash
+                );
+
+                if (sourceDB != null) {
+                    return sourceDB;
+                }
+            } catch (IOException | RuntimeException e) {
+                // Damaged snapshot, rebuilding it below
+                e.printStackTrace();
+            }
+        }
+
+        SourceDB sourceDB = SourceDB.load(sourceDBFile);
+
+        try {
+            write(sourceDB, snapshotFile, size, lastModified, contentHash);
+        } catch (IOException e) {
+            // Snapshot is an optimization only, parsed data is valid
+            e.printStackTrace();
+        }
+
+        return sourceDB;
+    }
+
+    static File getSnapshotFile(File sourceDBFile) {
+        return new File(sourceDBFile.getPath() + EXTENSION);
+    }
+
+    /**
+     * Writes `sourceDB` into `snapshotFile` atomically, via a
+     * temporary file in the same directory.
+     */
+    static void write(
+        SourceDB sourceDB,
+        File     snapshotFile,
+        long     size,
+        long     lastModified,
+        long     contentHash
+    ) throws IOException {
+        File tempFile = new File(snapshotFile.getPath() + ".tmp");
+
+        int rows      = sourceDB.size();
+        int groups    = sourceDB.getGroupDictionary().size();
+        int poolSize  = SourceDB.COLUMN_AMOUNT + groups + rows;
+
+        // -- String pool composition --
+        byte[][] poolStrings = new byte[poolSize][];
+        int      p           = 0;
+
+        for (String header : sourceDB.getHeaders())
+            poolStrings[p++] = header.getBytes(StandardCharsets.UTF_8);
+
+        for (String group : sourceDB.getGroupDictionary())
+            poolStrings[p++] = group.getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 0; i < rows; i++)
+            poolStrings[p++] = sourceDB.getName(i).getBytes(StandardCharsets.UTF_8);
+
+        try (
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(
+                    new FileOutputStream(tempFile),
+                    1 << 16
+                )
+            )
+        ) {
+            // -- Header --
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(size);
+            out.writeLong(lastModified);
+            out.writeLong(contentHash);
+            out.writeInt(rows);
+            out.writeInt(groups);
+
+            // -- String pool --
+            int offset = 0;
+
+            out.writeInt(poolSize);
+
+            for (byte[] s : poolStrings) {
+                out.writeInt(offset);
+                offset += s.length;
+            }
+
+            out.writeInt(offset);
+
+            for (byte[] s : poolStrings)
+                out.write(s);
+
+            // -- Columns --
+            for (int i = 0; i < rows; i++)
+                out.writeInt(sourceDB.getId(i));
+
+            for (int i = 0; i < rows; i++)
+                out.writeInt(sourceDB.getGroupCode(i));
+
+            for (int n = 0; n < SourceDB.NUTRIENT_AMOUNT; n++) {
+                for (double value : sourceDB.getNutrientColumn(n))
+                    out.writeDouble(value);
+
+                for (long word : sourceDB.getNullBitmap(n))
+                    out.writeLong(word);
+            }
+        }
+
+        Files.move(
+            tempFile.toPath(),
+            snapshotFile.toPath(),
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE
+        );
+    }
+
+    /**
+     * Reads a `SourceDB` from a memory-mapped snapshot.
+     *
+     * @return Read `SourceDB`, or `null`, if the snapshot
+     *         is of another version or does not match the
+     *         `.csv` file stamp.
+     */
+    static SourceDB read(
+        File snapshotFile,
+        long size,
+        long lastModified,
+        long contentHash
+    ) throws IOException {
+        try (
+            FileChannel channel = FileChannel.open(
+                snapshotFile.toPath(),
+                StandardOpenOption.READ
+            )
+        ) {
+            MappedByteBuffer in = channel.map(
+                FileChannel.MapMode.READ_ONLY,
+                0,
+                channel.size()
+            );
+
+            // -- Header --
+            if (
+                in.getInt()  != MAGIC
+                || in.getInt()  != VERSION
+                || in.getLong() != size
+                || in.getLong() != lastModified
+                || in.getLong() != contentHash
+            ) {
+                return null; // Outdated snapshot
+            }
+
+            int rows   = in.getInt();
+            int groups = in.getInt();
+
+            // -- String pool --
+            int   poolSize = in.getInt();
+            int[] offsets  = new int[poolSize + 1];
+
+            in.asIntBuffer().get(offsets);
+            in.position(in.position() + offsets.length * Integer.BYTES);
+
+            byte[] pool = new byte[offsets[poolSize]];
+            in.get(pool);
+
+            String[] headers         = new String[SourceDB.COLUMN_AMOUNT];
+            String[] groupDictionary = new String[groups];
+            String[] names           = new String[rows];
+            int      p               = 0;
+
+            for (int i = 0; i < headers.length; i++, p++)
+                headers[i] = poolString(pool, offsets, p);
+
+            for (int i = 0; i < groups; i++, p++)
+                groupDictionary[i] = poolString(pool, offsets, p);
+
+            for (int i = 0; i < rows; i++, p++)
+                names[i] = poolString(pool, offsets, p);
+
+            // -- Columns --
+            int[] ids        = new int[rows];
+            int[] groupCodes = new int[rows];
+
+            in.asIntBuffer().get(ids);
+            in.position(in.position() + rows * Integer.BYTES);
+
+            in.asIntBuffer().get(groupCodes);
+            in.position(in.position() + rows * Integer.BYTES);
+
+            double[][] nutrientColumns = new double[SourceDB.NUTRIENT_AMOUNT][rows];
+            long[][]   nullBitmaps     =
+                new long[SourceDB.NUTRIENT_AMOUNT][(rows + 63) >>> 6];
+
+            for (int n = 0; n < SourceDB.NUTRIENT_AMOUNT; n++) {
+                in.asDoubleBuffer().get(nutrientColumns[n]);
+                in.position(in.position() + rows * Double.BYTES);
+
+                in.asLongBuffer().get(nullBitmaps[n]);
+                in.position(in.position() + nullBitmaps[n].length * Long.BYTES);
+            }
+
+            return new SourceDB(
+                headers,
+                rows,
+                ids,
+                names,
+                groupCodes,
+                groupDictionary,
+                nutrientColumns,
+                nullBitmaps
+            );
+        }
+    }
+
+    /**
+     * Computes CRC32 of the whole `file` content.
+     */
+    static long hashContent(File file) throws IOException {
+        CRC32 crc = new CRC32();
+
+        try (
+            FileChannel channel = FileChannel.open(
+                file.toPath(),
+                StandardOpenOption.READ
+            )
+        ) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        return crc.getValue();
+    }
+
+    private static String poolString(byte[] pool, int[] offsets, int index) {
+        return new String(
+            pool,
+            offsets[index],
+            offsets[index + 1] - offsets[index],
+            StandardCharsets.UTF_8
+        );
+    }
+}
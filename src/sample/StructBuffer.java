@@ -0,0 +1,179 @@
+package sample;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * `StructBuffer` class is a growable array of fixed layout structs
+ * in `ByteBuffer` chunks, off the Java heap, when created `direct`.
+ *
+ * A struct is `structSize` bytes; its fields are addressed by
+ * byte offset and read and written with bounds checked
+ * accessors: the struct index must be below `size()` and the
+ * field must lie inside of the struct. However many structs are
+ * stored, the heap only holds the chunk directory and one small
+ * `ByteBuffer` object per chunk, so the garbage collector has
+ * nothing to trace or copy.
+ *
+ * Structs are zeroed, when added. Chunks are never moved, so
+ * `snapshot()` returns a frozen view, that shares the chunks and
+ * may be read by another thread, while structs are added: adds
+ * only write past the snapshot size or into new chunks. Direct
+ * chunks are freed, when the buffer and all its snapshots are
+ * garbage collected.
+ * */
+public class StructBuffer {
+    private static final int INITIAL_CHUNK_AMOUNT = 4;
+
+    private final int     structSize;
+    private final int     chunkShift;
+    private final int     chunkMask;
+    private final boolean direct;
+
+    private ByteBuffer[] chunks;
+    private int          size;
+
+    /**
+     * @param structSize Struct size in bytes.
+     * @param chunkShift Binary logarithm of the amount of
+     *                   structs per chunk.
+     * @param direct     `true` to allocate the chunks off
+     *                   the Java heap.
+     */
+    public StructBuffer(int structSize, int chunkShift, boolean direct) {
+        if (structSize <= 0 || chunkShift < 0 || ((long) structSize << chunkShift) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                "Invalid struct layout: " + structSize + " bytes, 2^" + chunkShift + " per chunk"
+            );
+        }
+
+        this.structSize = structSize;
+        this.chunkShift = chunkShift;
+        this.chunkMask  = (1 << chunkShift) - 1;
+        this.direct     = direct;
+        this.chunks     = new ByteBuffer[INITIAL_CHUNK_AMOUNT];
+        this.size       = 0;
+    }
+
+    private StructBuffer(StructBuffer other) {
+        this.structSize = other.structSize;
+        this.chunkShift = other.chunkShift;
+        this.chunkMask  = other.chunkMask;
+        this.direct     = other.direct;
+        this.chunks     = other.chunks;
+        this.size       = other.size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getStructSize() {
+        return structSize;
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * @return Bytes allocated for the chunks.
+     */
+    public long getAllocatedBytes() {
+        long chunkAmount = ((long) size + chunkMask) >>> chunkShift;
+
+        return chunkAmount * structSize << chunkShift;
+    }
+
+    /**
+     * Adds a zeroed struct.
+     *
+     * @return Index of the new struct.
+     */
+    public int add() {
+        int chunk  = size >>> chunkShift;
+        int offset = size & chunkMask;
+
+        if (offset == 0) {
+            // Growing the chunk directory, chunks are not copied
+            if (chunk == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunk * 2);
+            }
+
+            int chunkBytes = structSize << chunkShift;
+
+            chunks[chunk] = (direct
+                ? ByteBuffer.allocateDirect(chunkBytes)
+                : ByteBuffer.allocate(chunkBytes)
+            ).order(ByteOrder.nativeOrder());
+        }
+
+        return size++;
+    }
+
+    /**
+     * Removes all the structs. Snapshots taken before
+     * are not affected.
+     */
+    public void clear() {
+        chunks = new ByteBuffer[INITIAL_CHUNK_AMOUNT];
+        size   = 0;
+    }
+
+    /**
+     * @return Frozen view of the current structs.
+     */
+    public StructBuffer snapshot() {
+        return new StructBuffer(this);
+    }
+
+    // -- Field accessors section --
+    public int getInt(int index, int field) {
+        return chunk(index).getInt(position(index, field, Integer.BYTES));
+    }
+
+    public void putInt(int index, int field, int value) {
+        chunk(index).putInt(position(index, field, Integer.BYTES), value);
+    }
+
+    public double getDouble(int index, int field) {
+        return chunk(index).getDouble(position(index, field, Double.BYTES));
+    }
+
+    public void putDouble(int index, int field, double value) {
+        chunk(index).putDouble(position(index, field, Double.BYTES), value);
+    }
+
+    /**
+     * Adds `value` to a `double` field.
+     */
+    public void addDouble(int index, int field, double value) {
+        ByteBuffer chunk    = chunk(index);
+        int        position = position(index, field, Double.BYTES);
+
+        chunk.putDouble(position, chunk.getDouble(position) + value);
+    }
+
+    private ByteBuffer chunk(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Struct: " + index + ", size: " + size);
+        }
+
+        return chunks[index >>> chunkShift];
+    }
+
+    /**
+     * @return Position of the field in the chunk of
+     *         struct `index`.
+     */
+    private int position(int index, int field, int width) {
+        if (field < 0 || field > structSize - width) {
+            throw new IndexOutOfBoundsException(
+                "Field: " + field + " (" + width + " bytes), struct size: " + structSize
+            );
+        }
+
+        return (index & chunkMask) * structSize + field;
+    }
+}